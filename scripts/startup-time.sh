@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# Time from JVM launch to the first successful HTTP response, for each startup mode.
+#
+#   ./gradlew cdsArchive && scripts/startup-time.sh [runs]
+#
+# Modes: plain jar, jar with AOT bean definitions, AOT + AppCDS archive (all from build/cds).
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-5055}
+DIR="$(cd "$(dirname "$0")/.." && pwd)/build/cds"
+JAR=$(cd "$DIR" && ls *.jar | head -1)
+
+export OPENAI_API_KEY=${OPENAI_API_KEY:-startup-test}
+export AWS_REGION=${AWS_REGION:-us-east-1}
+
+measure() {
+    local name=$1; shift
+    local total=0
+
+    for _ in $(seq "$RUNS"); do
+        local start=$(date +%s%N)
+        (cd "$DIR" && exec java "$@" -Dserver.port="$PORT" -jar "$JAR" >/dev/null 2>&1) &
+        local pid=$!
+
+        until curl -sf -o /dev/null "http://localhost:$PORT/"; do sleep 0.02; done
+        local ms=$(( ($(date +%s%N) - start) / 1000000 ))
+        total=$((total + ms))
+
+        kill "$pid"; wait "$pid" 2>/dev/null || true
+    done
+
+    printf "%-10s %6d ms (mean of %d)\n" "$name" $((total / RUNS)) "$RUNS"
+}
+
+measure plain
+measure aot -Dspring.aot.enabled=true
+measure aot+cds -Dspring.aot.enabled=true -XX:SharedArchiveFile=application.jsa
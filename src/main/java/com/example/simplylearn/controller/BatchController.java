@@ -0,0 +1,137 @@
+package com.example.simplylearn.controller;
+
+import com.example.simplylearn.service.AdmissionControl;
+import com.example.simplylearn.service.BulkIngestService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@Controller
+public class BatchController {
+
+    private final BulkIngestService bulkIngest;
+    private final AdmissionControl admission;
+
+    public BatchController(BulkIngestService bulkIngest, AdmissionControl admission) {
+        this.bulkIngest = bulkIngest;
+        this.admission = admission;
+    }
+
+    // ======================
+    // BULK UPLOAD (raw ZIP body, not multipart: nothing is buffered before it is stored)
+    //
+    //   curl -X POST --data-binary @course.zip -H "Content-Type: application/zip" \
+    //        "http://host/bulk?conversion=summary&conversion=podcast&group=folder"
+    // ======================
+
+    @PostMapping(value = "/bulk", consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> bulk(@RequestParam("conversion") List<String> conversions,
+                                                    @RequestParam(value = "group", defaultValue = "entry") String group,
+                                                    HttpServletRequest request) throws Exception {
+
+        Set<String> requested = FileController.requestedTypes(conversions);
+        if (requested.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "No valid conversion type", null);
+        }
+
+        BulkIngestService.Grouping grouping;
+        try {
+            grouping = BulkIngestService.Grouping.valueOf(group.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, "group must be entry or folder", null);
+        }
+
+        // Compressed size: a low estimate, but enough to turn a busy or full server away up front
+        AdmissionControl.Decision decision = admission.admit(List.copyOf(requested),
+                Math.max(0, request.getContentLengthLong()));
+        if (!decision.accepted()) {
+            return error(HttpStatus.valueOf(decision.status()), decision.reason(), decision);
+        }
+
+        BulkIngestService.Result result;
+        try (InputStream in = request.getInputStream()) {
+            result = bulkIngest.ingest(in, List.copyOf(requested), grouping, FileController.clientId(request));
+        } catch (BulkIngestService.BatchFailedException e) {
+            // Not a ZIP, truncated, or over the size limits; jobs queued from it were cancelled
+            boolean badArchive = e.getCause() instanceof IllegalArgumentException || e.getCause() instanceof IOException;
+            if (!badArchive) e.printStackTrace();
+
+            ResponseEntity<Map<String, Object>> refused = error(
+                    badArchive ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Could not read the archive: " + e.getMessage(), null);
+            refused.getBody().put("batchId", e.batchId());
+            refused.getBody().put("cancelledJobs", e.cancelledJobs());
+            if (e.cancelledJobs() > 0) refused.getBody().put("status", "/batches/" + e.batchId());
+            return refused;
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("batchId", result.batchId());
+        body.put("jobs", result.jobs());
+        body.put("files", result.files());
+        body.put("skipped", result.skipped());
+        body.put("status", "/batches/" + result.batchId());
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/batches/" + result.batchId())
+                .body(body);
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message,
+                                                             AdmissionControl.Decision decision) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (decision != null && decision.retryAfter() != null) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter().toSeconds()));
+        }
+        return response.body(body);
+    }
+
+    // ======================
+    // BATCH STATUS
+    // ======================
+
+    @GetMapping(value = "/batches/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<BulkIngestService.BatchStatus> status(@PathVariable UUID id) {
+
+        BulkIngestService.BatchStatus status = bulkIngest.status(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/batches/{id}/view")
+    public String statusView(@PathVariable UUID id, Model model) {
+
+        BulkIngestService.BatchStatus status = bulkIngest.status(id);
+        if (status == null) {
+            return "redirect:/";
+        }
+
+        model.addAttribute("batch", status);
+        return "batch";
+    }
+}
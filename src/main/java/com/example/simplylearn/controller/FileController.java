@@ -2,34 +2,60 @@ package com.example.simplylearn.controller;
 
 import com.example.simplylearn.model.FileUpload;
 import com.example.simplylearn.repository.FileUploadRepository;
-import com.example.simplylearn.service.ConversionService;
+import com.example.simplylearn.service.AdmissionControl;
+import com.example.simplylearn.service.AudioVariants;
+import com.example.simplylearn.service.JobScheduler;
 import com.example.simplylearn.service.StorageService;
-import java.util.ArrayList;
-
-
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Controller
 public class FileController {
 
+    private static final Set<String> CONVERSION_TYPES =
+            Set.of("summary", "podcast", "slideshow", "video");
+
     private final StorageService storageService;
     private final FileUploadRepository repo;
-    private final ConversionService conversionService;
+    private final JobScheduler jobScheduler;
+    private final AdmissionControl admission;
+    private final AudioVariants audioVariants;
 
-    public FileController(StorageService storageService, FileUploadRepository repo, ConversionService conversionService) {
+    private final int storeParallelism;
+    private final Duration variantWait;
+
+    public FileController(StorageService storageService, FileUploadRepository repo,
+                          JobScheduler jobScheduler, AdmissionControl admission, AudioVariants audioVariants,
+                          @Value("${upload.store-parallelism:4}") int storeParallelism,
+                          @Value("${audio.variant.wait:10s}") Duration variantWait) {
         this.storageService = storageService;
         this.repo = repo;
-        this.conversionService = conversionService;
+        this.jobScheduler = jobScheduler;
+        this.admission = admission;
+        this.audioVariants = audioVariants;
+        this.storeParallelism = storeParallelism;
+        this.variantWait = variantWait;
     }
 
     @GetMapping("/")
@@ -44,51 +70,182 @@ public class FileController {
         return "new";
     }
 
+    // Browser form: back to the job list, where the new job shows up
     @PostMapping("/upload")
     public String upload(@RequestParam("files") MultipartFile[] files,
-                         @RequestParam("conversion") String conversion) throws Exception {
+                         @RequestParam("conversion") List<String> conversions,
+                         HttpServletRequest request,
+                         HttpServletResponse response,
+                         Model model) throws Exception {
+
+        Set<String> requested = requestedTypes(conversions);
 
-        if (files == null || files.length == 0) {
+        if (files == null || files.length == 0 || requested.isEmpty()) {
             return "redirect:/new";
         }
 
-        // Store all files, keep their stored filenames
-        List<String> storedFilenames = new ArrayList<>();
-        List<String> originalFilenames = new ArrayList<>();
+        // Turned away before anything is stored: busy → 503 + Retry-After, too big → 413 / 507
+        AdmissionControl.Decision decision = admission.admit(List.copyOf(requested), totalSize(files));
+        if (!decision.accepted()) {
+            response.setStatus(decision.status());
+            if (decision.retryAfter() != null) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter().toSeconds()));
+            }
+            model.addAttribute("admission", decision);
+            return "new";
+        }
+
+        accept(files, requested, request);
 
-        for (MultipartFile f : files) {
-            String stored = storageService.store(f);
-            storedFilenames.add(stored);
-            originalFilenames.add(f.getOriginalFilename());
+        return "redirect:/";
+    }
+
+    // API clients: 202 with the job id as soon as the files are stored; poll /jobs/{id} for progress
+    @PostMapping(value = "/upload", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadApi(@RequestParam("files") MultipartFile[] files,
+                                                         @RequestParam("conversion") List<String> conversions,
+                                                         HttpServletRequest request) throws Exception {
+
+        Set<String> requested = requestedTypes(conversions);
+
+        if (files == null || files.length == 0 || requested.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No files or no valid conversion type"));
+        }
+
+        AdmissionControl.Decision decision = admission.admit(List.copyOf(requested), totalSize(files));
+        if (!decision.accepted()) {
+            ResponseEntity.BodyBuilder refused = ResponseEntity.status(decision.status());
+            if (decision.retryAfter() != null) {
+                refused.header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter().toSeconds()));
+            }
+            return refused.body(Map.of("error", decision.reason()));
         }
 
+        FileUpload upload = accept(files, requested, request);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", upload.getId());
+        body.put("status", upload.getStatus());
+        body.put("location", "/jobs/" + upload.getId());
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/jobs/" + upload.getId())
+                .body(body);
+    }
+
+    /**
+     * Stores the files in parallel and records the job. Returns once the bytes and the row are
+     * durable; queueing (cost estimate, dispatch) happens after the response.
+     */
+    private FileUpload accept(MultipartFile[] files, Set<String> requested, HttpServletRequest request) throws Exception {
+
+        // Multipart temp files are deleted when the request ends, so storing must finish first
+        List<String> storedFilenames = storageService.storeAll(List.of(files), storeParallelism);
+        List<String> originalFilenames = Arrays.stream(files).map(MultipartFile::getOriginalFilename).toList();
+
         FileUpload upload = new FileUpload();
         upload.setOriginalFilename(String.join(", ", originalFilenames)); // simple display
         upload.setStoredFilename(String.join("|", storedFilenames));      // pipe-separated list
-        upload.setConversionType(conversion);
+        upload.setConversionType(String.join("|", requested));
         upload.setStatus("UPLOADED");
         upload.setUploadedAt(Instant.now());
+        upload.setInputBytes(totalSize(files));
+        upload.setOwner(clientId(request));
 
         upload = repo.save(upload);
 
-        conversionService.convert(upload.getId());
+        jobScheduler.submitLater(upload);
 
-        return "redirect:/";
+        return upload;
+    }
+
+    private static long totalSize(MultipartFile[] files) {
+        long bytes = 0;
+        for (MultipartFile f : files) {
+            bytes += f.getSize();
+        }
+        return bytes;
     }
 
+    // Several outputs per upload; duplicates and unknown types are dropped
+    static Set<String> requestedTypes(List<String> conversions) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String c : conversions) {
+            String type = c.trim().toLowerCase();
+            if (CONVERSION_TYPES.contains(type)) requested.add(type);
+        }
+        return requested;
+    }
 
+    // No accounts yet: the client address (first hop behind the load balancer) identifies a user
+    static String clientId(HttpServletRequest request) {
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded != null && !forwarded.isBlank()) {
+            return forwarded.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
+    }
 
     @GetMapping("/download/{id}")
-    public ResponseEntity<FileSystemResource> download(@PathVariable UUID id) {
+    public ResponseEntity<FileSystemResource> download(@PathVariable UUID id,
+                                                       @RequestParam(value = "type", required = false) String type,
+                                                       @RequestParam(value = "variant", required = false) String variantName,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                       @RequestHeader(value = "Save-Data", required = false) String saveData) throws Exception {
 
         FileUpload upload = repo.findById(id).orElseThrow();
 
-        var file = storageService.resolveConverted(upload.getConvertedFilename());
+        // Default to the first requested output
+        if (type == null || type.isBlank()) {
+            type = upload.getConversionTypes().get(0);
+        }
+
+        String convertedFilename = upload.getConvertedFilename(type);
+        if (convertedFilename == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Audio only: ?variant=low|opus, else Accept (Ogg/Opus) or Save-Data decide
+        AudioVariants.Variant variant = null;
+        if (type.equalsIgnoreCase("podcast")) {
+            variant = variantName == null
+                    ? audioVariants.negotiate(accept, saveData)
+                    : audioVariants.variant(variantName);
+            if (variantName != null && !variantName.equalsIgnoreCase("original") && variant == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        } else if (variantName != null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (variant != null) {
+            // First request transcodes (others for the same variant wait on it), later ones are served from storage.
+            // A transcode outlasting the wait keeps running; the client is told to come back instead of holding a thread
+            var file = audioVariants.fetch(convertedFilename, variant)
+                    .timeout(variantWait, Mono.empty())
+                    .block();
+            if (file == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, variantWait.toSeconds())))
+                        .header(HttpHeaders.VARY, "Accept, Save-Data")
+                        .build();
+            }
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + AudioVariants.variantFilename("podcast.mp3", variant) + "\"")
+                    .header(HttpHeaders.CONTENT_TYPE, variant.contentType())
+                    .header(HttpHeaders.VARY, "Accept, Save-Data")
+                    .body(new FileSystemResource(file));
+        }
+
+        var file = storageService.fetchConverted(convertedFilename);
 
         String filename;
         String contentType;
 
-        switch (upload.getConversionType().toLowerCase()) {
+        switch (type.toLowerCase()) {
             case "podcast" -> {
                 filename = "podcast.mp3";
                 contentType = "audio/mpeg";
@@ -101,17 +258,25 @@ public class FileController {
                 filename = "summary.txt";
                 contentType = "text/plain";
             }
+            case "video" -> {
+                filename = "video.mp4";
+                contentType = "video/mp4";
+            }
             default -> {
-                filename = upload.getConvertedFilename();
+                filename = convertedFilename;
                 contentType = "application/octet-stream";
             }
         }
 
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=\"" + filename + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .body(new FileSystemResource(file));
+                .header(HttpHeaders.CONTENT_TYPE, contentType);
+
+        // The podcast body depends on the negotiation headers
+        if (type.equalsIgnoreCase("podcast")) response.header(HttpHeaders.VARY, "Accept, Save-Data");
+
+        return response.body(new FileSystemResource(file));
     }
 
 
@@ -0,0 +1,157 @@
+package com.example.simplylearn.controller;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.service.ConversionService;
+import com.example.simplylearn.service.JobScheduler;
+import com.example.simplylearn.service.JobTrace;
+import com.example.simplylearn.service.StorageService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Controller
+public class JobController {
+
+    private final FileUploadRepository repo;
+    private final ConversionService conversionService;
+    private final JobScheduler jobScheduler;
+    private final StorageService storageService;
+
+    public JobController(FileUploadRepository repo, ConversionService conversionService,
+                         JobScheduler jobScheduler, StorageService storageService) {
+        this.repo = repo;
+        this.conversionService = conversionService;
+        this.jobScheduler = jobScheduler;
+        this.storageService = storageService;
+    }
+
+    // ======================
+    // STATUS (where the 202 from /upload points)
+    // ======================
+
+    @GetMapping(value = "/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> status(@PathVariable UUID id) {
+
+        FileUpload upload = repo.findById(id).orElse(null);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", upload.getId());
+        body.put("status", upload.getStatus());
+        body.put("types", upload.getConversionTypes());
+
+        if ("COMPLETED".equals(upload.getStatus())) {
+            Map<String, String> downloads = new LinkedHashMap<>();
+            upload.getConversionTypes().forEach(type -> downloads.put(type, "/download/" + id + "?type=" + type));
+            body.put("downloads", downloads);
+
+            String hls = StreamController.hlsDirectory(upload);
+            if (hls != null && hasConverted(hls + "/index.m3u8")) {
+                body.put("stream", "/stream/" + id + "/index.m3u8");
+            }
+        }
+
+        return ResponseEntity.ok(body);
+    }
+
+    private boolean hasConverted(String filename) {
+        try {
+            return storageService.hasConverted(filename);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // ======================
+    // CANCEL
+    // ======================
+
+    @PostMapping("/jobs/{id}/cancel")
+    public String cancel(@PathVariable UUID id) {
+        jobScheduler.cancel(id);
+        return "redirect:/";
+    }
+
+    // ======================
+    // FLIGHT RECORDING (JFR, see JobRecordings)
+    // ======================
+
+    // Running here: starts now; queued: starts with the job (wherever it runs)
+    @PostMapping("/jobs/{id}/record")
+    public String record(@PathVariable UUID id) {
+        if (!conversionService.startRecording(id)) {
+            repo.requestRecording(id);
+        }
+        return "redirect:/";
+    }
+
+    @GetMapping("/jobs/{id}/recording")
+    public ResponseEntity<FileSystemResource> recording(@PathVariable UUID id) throws Exception {
+
+        FileUpload upload = repo.findById(id).orElseThrow();
+        if (upload.getRecordingFilename() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        var file = storageService.fetchConverted(upload.getRecordingFilename());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"job-" + id + ".jfr\"")
+                .header(HttpHeaders.CONTENT_TYPE, "application/octet-stream")
+                .body(new FileSystemResource(file));
+    }
+
+    // ======================
+    // TRACE (span tree of one job)
+    // ======================
+
+    @GetMapping(value = "/jobs/{id}/trace", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> trace(@PathVariable UUID id) {
+
+        String json = traceJson(id);
+        if (json == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(json);
+    }
+
+    @GetMapping("/jobs/{id}/trace/view")
+    public String traceView(@PathVariable UUID id, Model model) {
+
+        FileUpload upload = repo.findById(id).orElseThrow();
+        String json = traceJson(id);
+
+        List<JobTrace.Row> rows = json == null ? List.of() : JobTrace.waterfall(JobTrace.fromJson(json));
+
+        model.addAttribute("upload", upload);
+        model.addAttribute("rows", rows);
+        return "trace";
+    }
+
+    // Running here: the live trace; otherwise what the last run stored
+    private String traceJson(UUID id) {
+        String live = conversionService.liveTrace(id);
+        if (live != null) return live;
+
+        return repo.findById(id).map(FileUpload::getTraceJson).orElse(null);
+    }
+}
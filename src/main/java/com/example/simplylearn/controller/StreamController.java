@@ -0,0 +1,70 @@
+package com.example.simplylearn.controller;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.service.StorageService;
+import com.example.simplylearn.service.VideoService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * HLS playback of a generated video: /stream/{id}/index.m3u8 and the segments it lists
+ * (relative URIs, so they resolve to /stream/{id}/scene-000-000.ts and so on).
+ * Only present when video.hls.enabled was on while the video was made.
+ */
+@Controller
+public class StreamController {
+
+    // Nothing but the playlist and segment names VideoService writes
+    private static final Pattern HLS_FILE = Pattern.compile("index\\.m3u8|scene-\\d{3}-\\d{3}\\.ts");
+
+    private final FileUploadRepository repo;
+    private final StorageService storageService;
+
+    public StreamController(FileUploadRepository repo, StorageService storageService) {
+        this.repo = repo;
+        this.storageService = storageService;
+    }
+
+    @GetMapping("/stream/{id}/{file:.+}")
+    public ResponseEntity<FileSystemResource> stream(@PathVariable UUID id, @PathVariable String file) throws Exception {
+
+        if (!HLS_FILE.matcher(file).matches()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String hlsDirectory = hlsDirectory(repo.findById(id).orElse(null));
+        if (hlsDirectory == null || !storageService.hasConverted(hlsDirectory + "/" + file)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        var local = storageService.fetchConverted(hlsDirectory + "/" + file);
+        boolean playlist = file.endsWith(".m3u8");
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, playlist ? "application/vnd.apple.mpegurl" : "video/mp2t")
+                // A finished VOD never changes; segments can be cached by anything in between
+                .cacheControl(playlist
+                        ? CacheControl.maxAge(Duration.ofMinutes(5))
+                        : CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .body(new FileSystemResource(local));
+    }
+
+    // The HLS directory of the upload's video, or null when it has no finished video
+    static String hlsDirectory(FileUpload upload) {
+        if (upload == null || !"COMPLETED".equals(upload.getStatus())) return null;
+
+        String video = upload.getConvertedFilename("video");
+        return video == null ? null : VideoService.hlsDirectory(Path.of(video)).toString();
+    }
+}
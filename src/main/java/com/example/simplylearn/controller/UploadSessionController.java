@@ -0,0 +1,139 @@
+package com.example.simplylearn.controller;
+
+import com.example.simplylearn.service.AdmissionControl;
+import com.example.simplylearn.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resumable upload protocol (see ResumableUploadService):
+ *
+ *   POST /uploads?filename=deck.pdf&size=N&conversion=video[&sha256=…]  → 201, Location /uploads/{id}
+ *   PUT  /uploads/{id}?offset=K   (raw bytes)                           → 200, Upload-Offset: new offset
+ *   GET  /uploads/{id}                                                  → 200, Upload-Offset: committed offset
+ *   POST /uploads/{id}/complete                                         → 202, the conversion job id
+ *
+ * A PUT at the wrong offset gets 409 with the offset to resume at.
+ */
+@RestController
+public class UploadSessionController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final ResumableUploadService uploads;
+    private final AdmissionControl admission;
+
+    public UploadSessionController(ResumableUploadService uploads, AdmissionControl admission) {
+        this.uploads = uploads;
+        this.admission = admission;
+    }
+
+    @PostMapping("/uploads")
+    public ResponseEntity<?> create(@RequestParam("filename") String filename,
+                                    @RequestParam("size") long size,
+                                    @RequestParam("conversion") List<String> conversions,
+                                    @RequestParam(value = "sha256", required = false) String sha256,
+                                    HttpServletRequest request) throws Exception {
+
+        Set<String> requested = FileController.requestedTypes(conversions);
+        if (requested.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "No valid conversion type");
+        }
+
+        // Turned away before a single chunk is sent
+        AdmissionControl.Decision decision = admission.admit(List.copyOf(requested), size);
+        if (!decision.accepted()) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(decision.status());
+            if (decision.retryAfter() != null) {
+                response.header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter().toSeconds()));
+            }
+            return response.body(Map.of("error", decision.reason()));
+        }
+
+        try {
+            ResumableUploadService.Status status = uploads.create(filename, size, List.copyOf(requested),
+                    FileController.clientId(request), sha256);
+
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, "/uploads/" + status.id())
+                    .header(UPLOAD_OFFSET, "0")
+                    .body(status);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.CONTENT_TOO_LARGE, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/uploads/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> status(@PathVariable UUID id) {
+        try {
+            ResumableUploadService.Status status = uploads.status(id);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(status.offset()))
+                    .body(status);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PutMapping("/uploads/{id}")
+    public ResponseEntity<?> chunk(@PathVariable UUID id,
+                                   @RequestParam("offset") long offset,
+                                   HttpServletRequest request) throws Exception {
+        try (InputStream in = request.getInputStream()) {
+
+            long committed = uploads.writeChunk(id, offset, in);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(committed))
+                    .body(Map.of("offset", committed));
+
+        } catch (ResumableUploadService.OffsetConflictException e) {
+            return conflict(e);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.CONTENT_TOO_LARGE, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @PostMapping("/uploads/{id}/complete")
+    public ResponseEntity<?> complete(@PathVariable UUID id) throws Exception {
+        try {
+            ResumableUploadService.Status status = uploads.complete(id);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (ResumableUploadService.OffsetConflictException e) {
+            return conflict(e);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.UNPROCESSABLE_CONTENT, e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<?> conflict(ResumableUploadService.OffsetConflictException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", e.getMessage());
+        body.put("offset", e.offset());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(UPLOAD_OFFSET, String.valueOf(e.offset()))
+                .body(body);
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", message));
+    }
+}
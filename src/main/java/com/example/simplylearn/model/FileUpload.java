@@ -2,6 +2,8 @@ package com.example.simplylearn.model;
 
 import jakarta.persistence.*;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -15,10 +17,52 @@ public class FileUpload {
     private String storedFilename;
     private String convertedFilename;
 
-    private String conversionType; // VIDEO, PODCAST, TEXT, etc.
-    private String status; // UPLOADED, PROCESSING, DONE
+    private String conversionType; // "summary|podcast|slideshow|video" (one or more, pipe-separated)
+    private String status; // QUEUED, PROCESSING, COMPLETED, FAILED, CANCELLED
     private Instant uploadedAt;
 
+    // Scheduling (see JobScheduler)
+    private String owner;
+    private Long inputBytes;
+    private Double estimatedCostSeconds;
+    private Double scheduleKey;
+
+    // Set when the job came from a bulk ZIP upload (see BulkIngestService)
+    private UUID batchId;
+
+    // Worker lease (see JobLeaseService): which node runs the job and until when
+    private String leaseOwner;
+    private Instant leaseExpiresAt;
+    private Integer attempts;
+    private Boolean cancelRequested; // set when the job runs on another node (see JobScheduler.cancel)
+
+    // Cross-file near-duplicate removal (multi-file uploads)
+    private Long inputChars;
+    private Long duplicateCharsRemoved;
+
+    // SHA-256 of the text the last run read (after dedup): same content, same voices (polly.voices.by-content)
+    private String contentSha256;
+
+    // OpenAI usage: local pre-send estimate vs what the provider billed
+    private Long estimatedPromptTokens;
+    private Long promptTokens;
+    private Long completionTokens;
+
+    // Most text the last run held in memory at once, estimated (see TextBudget)
+    private Long peakTextBytes;
+
+    // Polly requests sent, and how many fewer than one per line and pause (see SsmlPacker)
+    private Long ttsRequests;
+    private Long ttsRequestsSaved;
+
+    // On-demand flight recording (see JobRecordings): requested before the job starts, file once it ends
+    private Boolean recordRequested;
+    private String recordingFilename;
+
+    // Span tree of the last run as JSON (see JobTrace)
+    @Lob
+    private String traceJson;
+
     public UUID getId() { return id; }
 
     public String getOriginalFilename() { return originalFilename; }
@@ -33,9 +77,88 @@ public class FileUpload {
     public String getConversionType() { return conversionType; }
     public void setConversionType(String conversionType) { this.conversionType = conversionType; }
 
+    // Requested outputs in order; convertedFilename holds one file per type, same order
+    public List<String> getConversionTypes() {
+        if (conversionType == null || conversionType.isBlank()) return List.of();
+        return Arrays.stream(conversionType.split("\\|"))
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .toList();
+    }
+
+    public String getConvertedFilename(String type) {
+        int index = getConversionTypes().indexOf(type.toLowerCase());
+        if (index < 0 || convertedFilename == null) return null;
+        String[] names = convertedFilename.split("\\|");
+        return index < names.length ? names[index] : null;
+    }
+
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
     public Instant getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(Instant uploadedAt) { this.uploadedAt = uploadedAt; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public long getInputBytes() { return inputBytes == null ? 0 : inputBytes; }
+    public void setInputBytes(long inputBytes) { this.inputBytes = inputBytes; }
+
+    public Double getEstimatedCostSeconds() { return estimatedCostSeconds; }
+    public void setEstimatedCostSeconds(Double estimatedCostSeconds) { this.estimatedCostSeconds = estimatedCostSeconds; }
+
+    public Double getScheduleKey() { return scheduleKey; }
+    public void setScheduleKey(Double scheduleKey) { this.scheduleKey = scheduleKey; }
+
+    public UUID getBatchId() { return batchId; }
+    public void setBatchId(UUID batchId) { this.batchId = batchId; }
+
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+
+    public Instant getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(Instant leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+
+    public int getAttempts() { return attempts == null ? 0 : attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public boolean isCancelRequested() { return Boolean.TRUE.equals(cancelRequested); }
+    public void setCancelRequested(boolean cancelRequested) { this.cancelRequested = cancelRequested; }
+
+    public Long getInputChars() { return inputChars; }
+    public void setInputChars(Long inputChars) { this.inputChars = inputChars; }
+
+    public Long getDuplicateCharsRemoved() { return duplicateCharsRemoved; }
+    public void setDuplicateCharsRemoved(Long duplicateCharsRemoved) { this.duplicateCharsRemoved = duplicateCharsRemoved; }
+
+    public Long getEstimatedPromptTokens() { return estimatedPromptTokens; }
+    public void setEstimatedPromptTokens(Long estimatedPromptTokens) { this.estimatedPromptTokens = estimatedPromptTokens; }
+
+    public Long getPromptTokens() { return promptTokens; }
+    public void setPromptTokens(Long promptTokens) { this.promptTokens = promptTokens; }
+
+    public Long getCompletionTokens() { return completionTokens; }
+    public void setCompletionTokens(Long completionTokens) { this.completionTokens = completionTokens; }
+
+    public String getContentSha256() { return contentSha256; }
+    public void setContentSha256(String contentSha256) { this.contentSha256 = contentSha256; }
+
+    public Long getPeakTextBytes() { return peakTextBytes; }
+    public void setPeakTextBytes(Long peakTextBytes) { this.peakTextBytes = peakTextBytes; }
+
+    public Long getTtsRequests() { return ttsRequests; }
+    public void setTtsRequests(Long ttsRequests) { this.ttsRequests = ttsRequests; }
+
+    public Long getTtsRequestsSaved() { return ttsRequestsSaved; }
+    public void setTtsRequestsSaved(Long ttsRequestsSaved) { this.ttsRequestsSaved = ttsRequestsSaved; }
+
+    public boolean isRecordRequested() { return Boolean.TRUE.equals(recordRequested); }
+    public void setRecordRequested(boolean recordRequested) { this.recordRequested = recordRequested; }
+
+    public String getRecordingFilename() { return recordingFilename; }
+    public void setRecordingFilename(String recordingFilename) { this.recordingFilename = recordingFilename; }
+
+    public String getTraceJson() { return traceJson; }
+    public void setTraceJson(String traceJson) { this.traceJson = traceJson; }
 }
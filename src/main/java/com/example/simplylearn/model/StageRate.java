@@ -0,0 +1,37 @@
+package com.example.simplylearn.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * The learned seconds-per-KB of one pipeline stage (see JobCostModel). Shared by every node:
+ * workers learn it from finished jobs, web nodes score new jobs with it.
+ */
+@Entity
+public class StageRate {
+
+    @Id
+    private String stage;
+
+    private Double secondsPerKb;
+    private Long samples;
+    private Instant updatedAt;
+
+    protected StageRate() {
+    }
+
+    public StageRate(String stage, double secondsPerKb, Instant updatedAt) {
+        this.stage = stage;
+        this.secondsPerKb = secondsPerKb;
+        this.samples = 1L;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getStage() { return stage; }
+
+    public double getSecondsPerKb() { return secondsPerKb; }
+
+    public long getSamples() { return samples == null ? 0 : samples; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,64 @@
+package com.example.simplylearn.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One resumable upload in progress (see ResumableUploadService). The bytes live in a partial
+ * file under storage.root; this row tracks how much of it is committed.
+ */
+@Entity
+public class UploadSession {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    private String originalFilename;
+    private String conversionType; // same format as FileUpload.conversionType
+    private String owner;
+
+    private Long totalBytes;
+    private Long committedBytes; // every byte before this offset is written and hashed
+    private String expectedSha256; // optional, checked when the upload is finalized
+    private String sha256;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // The conversion job, once finalized
+    private UUID uploadId;
+
+    public UUID getId() { return id; }
+
+    public String getOriginalFilename() { return originalFilename; }
+    public void setOriginalFilename(String originalFilename) { this.originalFilename = originalFilename; }
+
+    public String getConversionType() { return conversionType; }
+    public void setConversionType(String conversionType) { this.conversionType = conversionType; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public long getTotalBytes() { return totalBytes == null ? 0 : totalBytes; }
+    public void setTotalBytes(long totalBytes) { this.totalBytes = totalBytes; }
+
+    public long getCommittedBytes() { return committedBytes == null ? 0 : committedBytes; }
+    public void setCommittedBytes(long committedBytes) { this.committedBytes = committedBytes; }
+
+    public String getExpectedSha256() { return expectedSha256; }
+    public void setExpectedSha256(String expectedSha256) { this.expectedSha256 = expectedSha256; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    public UUID getUploadId() { return uploadId; }
+    public void setUploadId(UUID uploadId) { this.uploadId = uploadId; }
+}
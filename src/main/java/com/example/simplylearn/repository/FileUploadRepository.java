@@ -1,9 +1,100 @@
 package com.example.simplylearn.repository;
 
 import com.example.simplylearn.model.FileUpload;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface FileUploadRepository extends JpaRepository<FileUpload, UUID> {
+
+    // ======================
+    // JOB QUEUE (shared by every node)
+    // ======================
+
+    // Step 1 of a claim: lowest schedule keys first, no locks taken
+    @Query("""
+            select u.id from FileUpload u
+            where u.status = 'QUEUED'
+               or (u.status = 'PROCESSING' and u.leaseExpiresAt < :now)
+            order by u.scheduleKey
+            """)
+    List<UUID> findClaimCandidates(@Param("now") Instant now, Pageable page);
+
+    // Step 2: lock just those rows; rows another node holds are skipped, not waited on
+    @Query(value = """
+            SELECT * FROM file_upload
+            WHERE id IN (:ids)
+              AND (status = 'QUEUED' OR (status = 'PROCESSING' AND lease_expires_at < :now))
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<FileUpload> lockClaimable(@Param("ids") Collection<UUID> ids, @Param("now") Instant now);
+
+    // Queues a stored upload once: a second submission (another node, a stale copy) updates nothing
+    @Modifying
+    @Transactional
+    @Query("""
+            update FileUpload u set u.status = 'QUEUED', u.estimatedCostSeconds = :cost, u.scheduleKey = :key
+            where u.id = :id and u.status = 'UPLOADED'
+            """)
+    int queueIfUploaded(@Param("id") UUID id, @Param("cost") double cost, @Param("key") double key);
+
+    @Modifying
+    @Query("""
+            update FileUpload u set u.leaseExpiresAt = :until
+            where u.leaseOwner = :node and u.status = 'PROCESSING' and u.id in :ids
+            """)
+    int renewLeases(@Param("node") String node, @Param("ids") Collection<UUID> ids, @Param("until") Instant until);
+
+    // ======================
+    // CANCELLATION
+    // ======================
+
+    @Modifying
+    @Transactional
+    @Query("update FileUpload u set u.status = 'CANCELLED' where u.id = :id and u.status in ('UPLOADED', 'QUEUED')")
+    int cancelIfNotStarted(@Param("id") UUID id);
+
+    @Modifying
+    @Transactional
+    @Query("update FileUpload u set u.cancelRequested = true where u.id = :id and u.status = 'PROCESSING'")
+    int requestCancel(@Param("id") UUID id);
+
+    @Modifying
+    @Transactional
+    @Query("update FileUpload u set u.recordRequested = true where u.id = :id and u.status in ('UPLOADED', 'QUEUED')")
+    int requestRecording(@Param("id") UUID id);
+
+    @Query("select u.id from FileUpload u where u.cancelRequested = true and u.id in :ids")
+    List<UUID> findCancelRequested(@Param("ids") Collection<UUID> ids);
+
+    long countByStatus(String status);
+
+    long countByOwnerAndStatus(String owner, String status);
+
+    // Jobs of one owner a live worker holds; expired leases are a dead worker's, waiting to be re-leased
+    @Query("""
+            select count(u) from FileUpload u
+            where u.owner = :owner and u.status = 'PROCESSING' and u.leaseExpiresAt >= :now
+            """)
+    long countLiveLeases(@Param("owner") String owner, @Param("now") Instant now);
+
+    @Query("""
+            select coalesce(sum(u.estimatedCostSeconds), 0) from FileUpload u
+            where u.owner = :owner and u.status in ('QUEUED', 'PROCESSING')
+            """)
+    double backlogSeconds(@Param("owner") String owner);
+
+    List<FileUpload> findByStatusIn(Collection<String> statuses);
+
+    List<FileUpload> findByStatusAndUploadedAtBefore(String status, Instant cutoff);
+
+    List<FileUpload> findByBatchIdOrderByOriginalFilename(UUID batchId);
 }
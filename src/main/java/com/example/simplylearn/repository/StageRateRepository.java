@@ -0,0 +1,26 @@
+package com.example.simplylearn.repository;
+
+import com.example.simplylearn.model.StageRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface StageRateRepository extends JpaRepository<StageRate, String> {
+
+    // One EWMA step in the database, so workers finishing at the same time don't overwrite each other
+    @Modifying
+    @Transactional
+    @Query("""
+            update StageRate r
+            set r.secondsPerKb = :keep * r.secondsPerKb + :alpha * :observed,
+                r.samples = r.samples + 1,
+                r.updatedAt = :now
+            where r.stage = :stage
+            """)
+    int blend(@Param("stage") String stage, @Param("observed") double observed,
+              @Param("alpha") double alpha, @Param("keep") double keep, @Param("now") Instant now);
+}
@@ -0,0 +1,26 @@
+package com.example.simplylearn.repository;
+
+import com.example.simplylearn.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    // Moves the committed offset only if nobody else moved it first (chunks of one session may hit different nodes)
+    @Modifying
+    @Transactional
+    @Query("""
+            update UploadSession s set s.committedBytes = :to, s.updatedAt = :now
+            where s.id = :id and s.committedBytes = :from
+            """)
+    int advance(@Param("id") UUID id, @Param("from") long from, @Param("to") long to, @Param("now") Instant now);
+
+    List<UploadSession> findByUpdatedAtBefore(Instant cutoff);
+}
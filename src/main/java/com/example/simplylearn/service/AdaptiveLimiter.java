@@ -0,0 +1,267 @@
+package com.example.simplylearn.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Client-side limiter for one external provider, shared by every job.
+ *
+ * Two token buckets (requests per second, cost units per minute) cap the send rate,
+ * and an AIMD concurrency limit backs off when the provider throttles us:
+ * halved on a 429 / ThrottlingException, grown by ~1 per window of successes.
+ * A Retry-After hint pauses the whole limiter, not just the failing request.
+ */
+public class AdaptiveLimiter {
+
+    public enum Kind { THROTTLED, TRANSIENT, FATAL }
+
+    public record Failure(Kind kind, Duration retryAfter) {
+
+        public static Failure throttled(Duration retryAfter) {
+            return new Failure(Kind.THROTTLED, retryAfter);
+        }
+
+        public static Failure transientError() {
+            return new Failure(Kind.TRANSIENT, null);
+        }
+
+        public static Failure fatal() {
+            return new Failure(Kind.FATAL, null);
+        }
+    }
+
+    public record RetrySettings(int maxAttempts, Duration minBackoff, Duration maxBackoff) {}
+
+    private static final long CONCURRENCY_POLL_NANOS = Duration.ofMillis(25).toNanos();
+    private static final long DECREASE_COOLDOWN_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final String name;
+    private final double requestsPerSecond;
+    private final double unitsPerSecond;
+    private final double requestCapacity;
+    private final double unitCapacity;
+    private final int maxConcurrency;
+    private final RetrySettings retry;
+    private final Function<Throwable, Failure> classifier;
+    private final Scheduler scheduler;
+    private final LongSupplier nanoClock;
+
+    // ===== state (guarded by this) =====
+    private double requestTokens;
+    private double unitTokens;
+    private long lastRefill;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntil;
+    private long lastDecrease;
+
+    public AdaptiveLimiter(
+            String name,
+            double requestsPerSecond,
+            long unitsPerMinute,
+            int maxConcurrency,
+            RetrySettings retry,
+            Function<Throwable, Failure> classifier
+    ) {
+        this(name, requestsPerSecond, unitsPerMinute, maxConcurrency, retry, classifier,
+                Schedulers.parallel(), System::nanoTime);
+    }
+
+    /**
+     * Waits and backoffs run on {@code scheduler} and time is read from {@code nanoClock},
+     * so tests can drive the limiter with a virtual clock.
+     */
+    AdaptiveLimiter(
+            String name,
+            double requestsPerSecond,
+            long unitsPerMinute,
+            int maxConcurrency,
+            RetrySettings retry,
+            Function<Throwable, Failure> classifier,
+            Scheduler scheduler,
+            LongSupplier nanoClock
+    ) {
+        this.name = name;
+        this.requestsPerSecond = requestsPerSecond;
+        this.unitsPerSecond = unitsPerMinute / 60.0;
+        this.requestCapacity = Math.max(1.0, requestsPerSecond);
+        this.unitCapacity = unitsPerMinute;
+        this.maxConcurrency = maxConcurrency;
+        this.retry = retry;
+        this.classifier = classifier;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+
+        this.requestTokens = requestCapacity;
+        this.unitTokens = unitCapacity;
+        this.lastRefill = nanoClock.getAsLong();
+        this.concurrencyLimit = maxConcurrency;
+        this.pausedUntil = lastRefill;
+        this.lastDecrease = lastRefill - DECREASE_COOLDOWN_NANOS;
+    }
+
+    /**
+     * Runs ONE provider request (a chat chunk, a Polly line) under the limiter,
+     * retrying just that request with jittered backoff when it is throttled or fails transiently.
+     */
+    public <T> Mono<T> call(long cost, Supplier<Mono<T>> request) {
+
+        return Mono.defer(() -> acquire(cost)
+                        .then(Mono.defer(() -> {
+                            Permit permit = new Permit();
+                            return request.get()
+                                    .doOnSuccess(v -> permit.release(null))
+                                    .doOnError(permit::release)
+                                    .doOnCancel(() -> permit.release(null));
+                        })))
+                .retryWhen(retrySpec());
+    }
+
+    /**
+     * Corrects the unit bucket once the real cost is known (e.g. actual tokens used).
+     */
+    public synchronized void adjust(long unitsDelta) {
+        unitTokens = Math.min(unitCapacity, unitTokens - unitsDelta);
+    }
+
+    public synchronized int currentConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // ======================
+    // ACQUIRE / RELEASE
+    // ======================
+
+    private Mono<Void> acquire(long cost) {
+        return Mono.defer(() -> {
+                    long waitNanos = tryAcquire(cost);
+                    if (waitNanos <= 0) {
+                        return Mono.just(Boolean.TRUE);
+                    }
+                    return Mono.delay(Duration.ofNanos(waitNanos), scheduler).then(Mono.<Boolean>empty());
+                })
+                .repeatWhenEmpty(Integer.MAX_VALUE, repeats -> repeats)
+                .then();
+    }
+
+    private synchronized long tryAcquire(long cost) {
+
+        long now = nanoClock.getAsLong();
+        refill(now);
+
+        if (now < pausedUntil) {
+            return pausedUntil - now;
+        }
+
+        if (inFlight >= (int) concurrencyLimit) {
+            return CONCURRENCY_POLL_NANOS;
+        }
+
+        // A single request larger than the whole bucket still has to get through eventually
+        double units = Math.min(cost, unitCapacity);
+
+        double requestWait = requestTokens >= 1 ? 0 : (1 - requestTokens) / requestsPerSecond;
+        double unitWait = unitTokens >= units ? 0 : (units - unitTokens) / unitsPerSecond;
+        double waitSeconds = Math.max(requestWait, unitWait);
+
+        if (waitSeconds > 0) {
+            return Math.max(1, (long) (waitSeconds * 1_000_000_000L));
+        }
+
+        requestTokens -= 1;
+        unitTokens -= units;
+        inFlight++;
+        return 0;
+    }
+
+    private void refill(long now) {
+        double elapsed = (now - lastRefill) / 1_000_000_000.0;
+        lastRefill = now;
+        requestTokens = Math.min(requestCapacity, requestTokens + elapsed * requestsPerSecond);
+        unitTokens = Math.min(unitCapacity, unitTokens + elapsed * unitsPerSecond);
+    }
+
+    private synchronized void onRelease(Throwable error) {
+
+        inFlight--;
+
+        if (error == null) {
+            // Additive increase: roughly +1 per "limit" successful requests
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+            return;
+        }
+
+        Failure failure = classifier.apply(error);
+        if (failure.kind() != Kind.THROTTLED) {
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+
+        // Multiplicative decrease, once per cooldown so a burst of 429s doesn't collapse to 1
+        if (now - lastDecrease >= DECREASE_COOLDOWN_NANOS) {
+            concurrencyLimit = Math.max(1.0, concurrencyLimit / 2);
+            lastDecrease = now;
+        }
+
+        if (failure.retryAfter() != null) {
+            pausedUntil = Math.max(pausedUntil, now + failure.retryAfter().toNanos());
+        }
+    }
+
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(error);
+            }
+        }
+    }
+
+    // ======================
+    // RETRY
+    // ======================
+
+    private Retry retrySpec() {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+
+            Throwable error = signal.failure();
+            Failure failure = classifier.apply(error);
+
+            if (failure.kind() == Kind.FATAL || signal.totalRetries() + 1 >= retry.maxAttempts()) {
+                return Mono.error(error);
+            }
+
+            Duration delay = backoff(signal.totalRetries());
+            if (failure.retryAfter() != null && failure.retryAfter().compareTo(delay) > 0) {
+                delay = failure.retryAfter();
+            }
+
+            return Mono.delay(delay, scheduler);
+        }));
+    }
+
+    // Exponential backoff with "equal jitter": half fixed, half random
+    private Duration backoff(long attempt) {
+        long min = retry.minBackoff().toMillis();
+        long max = retry.maxBackoff().toMillis();
+        long base = Math.min(max, min << Math.min(attempt, 20));
+        long half = Math.max(1, base / 2);
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+}
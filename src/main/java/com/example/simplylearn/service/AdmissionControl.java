@@ -0,0 +1,313 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Decides, before anything is stored, whether an upload can be converted now.
+ *
+ * The request's cost (input bytes, OpenAI tokens, Polly characters, ffmpeg seconds, disk, text
+ * memory) is estimated from its size and outputs, then checked against live budgets: free
+ * disk in the storage directories minus what pending jobs will still write, heap headroom,
+ * the queued work per worker slot, and how long the pending jobs keep the provider quotas busy.
+ *
+ * - ACCEPT: queue it
+ * - DEFER:  busy right now; the client gets 503 with a Retry-After of when it should fit
+ * - REJECT: can never fit as configured (413 too large, 507 out of disk); retrying won't help
+ *
+ * Estimates are deliberately rough and err high; the point is to say no at the door instead of
+ * failing a job halfway through.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    public enum Outcome { ACCEPT, DEFER, REJECT }
+
+    /**
+     * What ONE request is expected to cost.
+     */
+    public record Estimate(
+            long inputBytes,
+            long openAITokens,
+            long ttsChars,
+            double encodeSeconds,
+            long diskBytes,
+            long textBytes
+    ) {}
+
+    /**
+     * What the pending (queued + running) jobs still need, and what is left.
+     */
+    record Snapshot(
+            long usableDisk,
+            long heapHeadroom,
+            int pendingJobs,
+            double pendingSeconds,
+            long pendingDisk,
+            long pendingTokens,
+            long pendingTtsChars
+    ) {}
+
+    public record Decision(Outcome outcome, int status, String reason, Duration retryAfter, Estimate estimate) {
+
+        public boolean accepted() {
+            return outcome == Outcome.ACCEPT;
+        }
+
+        public String retryHint() {
+            if (retryAfter == null) return null;
+            long minutes = Math.max(1, (retryAfter.toSeconds() + 59) / 60);
+            return minutes == 1 ? "about a minute" : "about " + minutes + " minutes";
+        }
+    }
+
+    // Rough conversions, all erring high
+    private static final double BYTES_PER_TOKEN = 4;
+    private static final double CHARS_PER_TOKEN = 4;
+    private static final double SPOKEN_CHARS_PER_SECOND = 15;
+    private static final double MP3_BYTES_PER_SECOND = 6 * 1024;        // Polly MP3, 24 kHz
+    private static final long DOCUMENT_OUTPUT_BYTES = 2 * 1024 * 1024;  // summary / pptx
+    private static final int MAX_SECTIONS = 20;
+    private static final int SECTION_TOKENS = 2000;
+
+    private static final Duration HEAP_RETRY = Duration.ofSeconds(30);
+
+    private final FileUploadRepository repo;
+    private final StorageService storageService;
+    private final PromptBudgets budgets;
+
+    private final boolean enabled;
+    private final long maxTextBytes;
+    private final long diskReserve;
+    private final int workerSlots;
+    private final Duration maxQueueWait;
+    private final Duration maxProviderBacklog;
+    private final long openAITokensPerMinute;
+    private final long pollyCharsPerMinute;
+    private final double encodeRealtimeFactor;
+    private final long videoBytesPerSecond;
+
+    public AdmissionControl(
+            FileUploadRepository repo,
+            StorageService storageService,
+            PromptBudgets budgets,
+            @Value("${admission.enabled:true}") boolean enabled,
+            @Value("${job.memory.max-text:256MB}") DataSize maxText,
+            @Value("${admission.disk-reserve:1GB}") DataSize diskReserve,
+            @Value("${scheduler.max-concurrent-jobs:4}") int workerSlots,
+            @Value("${admission.max-queue-wait:30m}") Duration maxQueueWait,
+            @Value("${admission.max-provider-backlog:20m}") Duration maxProviderBacklog,
+            @Value("${openai.limit.tokens-per-minute:200000}") long openAITokensPerMinute,
+            @Value("${polly.limit.characters-per-minute:300000}") long pollyCharsPerMinute,
+            @Value("${admission.encode-realtime-factor:2.0}") double encodeRealtimeFactor,
+            @Value("${admission.video-size-per-minute:6MB}") DataSize videoPerMinute
+    ) {
+        this.repo = repo;
+        this.storageService = storageService;
+        this.budgets = budgets;
+        this.enabled = enabled;
+        this.maxTextBytes = maxText.toBytes();
+        this.diskReserve = diskReserve.toBytes();
+        this.workerSlots = Math.max(1, workerSlots);
+        this.maxQueueWait = maxQueueWait;
+        this.maxProviderBacklog = maxProviderBacklog;
+        this.openAITokensPerMinute = openAITokensPerMinute;
+        this.pollyCharsPerMinute = pollyCharsPerMinute;
+        this.encodeRealtimeFactor = encodeRealtimeFactor;
+        this.videoBytesPerSecond = videoPerMinute.toBytes() / 60;
+    }
+
+    public Decision admit(List<String> types, long inputBytes) throws Exception {
+
+        Estimate estimate = estimate(types, inputBytes);
+        if (!enabled) return accept(estimate);
+
+        Decision decision = decide(estimate, snapshot());
+
+        if (!decision.accepted()) {
+            log.info("Admission {} ({}): {} [{} bytes, {} tokens, {} TTS chars, {}s encode]",
+                    decision.outcome(), decision.status(), decision.reason(), inputBytes,
+                    estimate.openAITokens(), estimate.ttsChars(), Math.round(estimate.encodeSeconds()));
+        }
+
+        return decision;
+    }
+
+    // ======================
+    // COST OF ONE REQUEST
+    // ======================
+
+    public Estimate estimate(List<String> types, long inputBytes) {
+
+        long inputTokens = (long) Math.ceil(inputBytes / BYTES_PER_TOKEN);
+        // Large inputs are generated section by section, each section capped by its output budget
+        long sections = Math.min(MAX_SECTIONS, Math.max(1, inputTokens / SECTION_TOKENS));
+
+        long openAITokens = 0;
+        long podcastChars = 0;
+        long videoChars = 0;
+
+        // The shared outline
+        if (types.size() > 1 || sections > 1) {
+            openAITokens += Math.min(inputTokens, budgets.budget("outline").inputTokens())
+                    + budgets.budget("outline").outputTokens();
+        }
+
+        for (String type : types) {
+
+            PromptBudgets.Budget budget = budgets.budget(type);
+            long output = Math.min((long) Math.ceil(inputTokens * budget.outputRatio()),
+                    sections * budget.outputTokens());
+
+            openAITokens += Math.min(inputTokens, sections * budget.inputTokens()) + output;
+
+            if (type.equals("podcast")) podcastChars += (long) (output * CHARS_PER_TOKEN);
+            if (type.equals("video")) videoChars += (long) (output * CHARS_PER_TOKEN);
+        }
+
+        // Video narration is synthesized twice: per scene and as the full narration track
+        long ttsChars = podcastChars + 2 * videoChars;
+
+        double podcastSeconds = podcastChars / SPOKEN_CHARS_PER_SECOND;
+        double videoSeconds = videoChars / SPOKEN_CHARS_PER_SECOND;
+        double encodeSeconds = videoSeconds / encodeRealtimeFactor;
+
+        // Upload + outputs; video also keeps per-scene audio/mp4 in temp until the job ends
+        long diskBytes = inputBytes
+                + (long) (podcastSeconds * MP3_BYTES_PER_SECOND)
+                + (long) (videoSeconds * (3 * MP3_BYTES_PER_SECOND + 2 * videoBytesPerSecond))
+                + (types.contains("summary") || types.contains("slideshow") ? DOCUMENT_OUTPUT_BYTES : 0);
+
+        // Same 2 bytes per char as TextBudget, one char per input byte
+        long textBytes = inputBytes * 2;
+
+        return new Estimate(inputBytes, openAITokens, ttsChars, encodeSeconds, diskBytes, textBytes);
+    }
+
+    // ======================
+    // LIVE BUDGETS
+    // ======================
+
+    private Snapshot snapshot() throws Exception {
+
+        List<FileUpload> pending = repo.findByStatusIn(List.of("QUEUED", "PROCESSING"));
+
+        double seconds = 0;
+        long disk = 0;
+        long tokens = 0;
+        long tts = 0;
+
+        for (FileUpload job : pending) {
+            Estimate e = estimate(job.getConversionTypes(), job.getInputBytes());
+            seconds += job.getEstimatedCostSeconds() == null ? 0 : job.getEstimatedCostSeconds();
+            disk += e.diskBytes() - e.inputBytes(); // the upload itself is already on disk
+            tokens += e.openAITokens();
+            tts += e.ttsChars();
+        }
+
+        return new Snapshot(storageService.usableSpace(), heapHeadroom(), pending.size(),
+                seconds, disk, tokens, tts);
+    }
+
+    // Max heap minus what was live after the last GC (plain "used" counts garbage too)
+    private static long heapHeadroom() {
+
+        long max = Runtime.getRuntime().maxMemory();
+        long live = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            MemoryUsage usage = pool.getCollectionUsage() != null ? pool.getCollectionUsage() : pool.getUsage();
+            live += usage.getUsed();
+        }
+
+        return max - live;
+    }
+
+    // ======================
+    // DECISION
+    // ======================
+
+    Decision decide(Estimate request, Snapshot live) {
+
+        // Never fits: no point retrying
+        if (request.textBytes() > maxTextBytes) {
+            return reject(413, "The upload is too large to convert (limit is about "
+                    + maxTextBytes / 2 / (1024 * 1024) + " MB of text)", request);
+        }
+
+        long freeDisk = live.usableDisk() - diskReserve - live.pendingDisk();
+        if (request.diskBytes() > freeDisk) {
+
+            if (request.diskBytes() > live.usableDisk() - diskReserve || live.pendingJobs() == 0) {
+                return reject(507, "Not enough storage space to convert this upload", request);
+            }
+
+            // Running jobs free their temp files when they finish
+            return defer("Storage is busy with other conversions", queueDrain(live), request);
+        }
+
+        if (request.textBytes() > live.heapHeadroom()) {
+            return defer("The server is short on memory right now", HEAP_RETRY, request);
+        }
+
+        Duration wait = Duration.ofSeconds((long) (live.pendingSeconds() / workerSlots));
+        if (wait.compareTo(maxQueueWait) > 0) {
+            return defer("The conversion queue is full", wait.minus(maxQueueWait), request);
+        }
+
+        Duration openAI = minutes((live.pendingTokens() + request.openAITokens()) / (double) openAITokensPerMinute);
+        Duration polly = minutes((live.pendingTtsChars() + request.ttsChars()) / (double) pollyCharsPerMinute);
+        Duration provider = openAI.compareTo(polly) >= 0 ? openAI : polly;
+
+        if (provider.compareTo(maxProviderBacklog) > 0) {
+
+            // Alone it would still be over: it can never fit the quota window
+            if (live.pendingJobs() == 0) {
+                return reject(413, "The upload needs more " + (openAI.compareTo(polly) >= 0 ? "AI" : "speech")
+                        + " capacity than one conversion may use", request);
+            }
+
+            return defer("AI and speech capacity is booked by other conversions",
+                    provider.minus(maxProviderBacklog), request);
+        }
+
+        return accept(request);
+    }
+
+    private Duration queueDrain(Snapshot live) {
+        return Duration.ofSeconds((long) Math.max(60, live.pendingSeconds() / workerSlots));
+    }
+
+    private static Duration minutes(double minutes) {
+        return Duration.ofSeconds((long) Math.ceil(minutes * 60));
+    }
+
+    private static Decision accept(Estimate estimate) {
+        return new Decision(Outcome.ACCEPT, 200, null, null, estimate);
+    }
+
+    private static Decision defer(String reason, Duration retryAfter, Estimate estimate) {
+        // At least a minute, so clients don't hammer the server
+        Duration wait = retryAfter.compareTo(Duration.ofMinutes(1)) < 0 ? Duration.ofMinutes(1) : retryAfter;
+        return new Decision(Outcome.DEFER, 503, reason, wait, estimate);
+    }
+
+    private static Decision reject(int status, String reason, Estimate estimate) {
+        return new Decision(Outcome.REJECT, status, reason, null, estimate);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.simplylearn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Smaller encodings of a finished audio artifact for slow links: a low-bitrate mono MP3 and
+ * an Opus file.
+ *
+ * A variant is transcoded with ffmpeg the first time it is asked for and stored as a converted
+ * file next to the original ("abc.mp3" → "abc.low.mp3"), so it is published to every node
+ * and falls under whatever retention applies to converted outputs. Concurrent requests for
+ * the same variant on one node share one transcode, which runs to the end even if every caller
+ * stops waiting for it.
+ */
+@Service
+public class AudioVariants {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioVariants.class);
+
+    public record Variant(String name, String extension, String contentType, List<String> codecArgs) {}
+
+    private final StorageService storageService;
+
+    private final Map<String, Variant> variants;
+    private final Duration timeout;
+
+    // Variant filename → the transcode producing it
+    private final Map<String, Mono<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public AudioVariants(
+            StorageService storageService,
+            @Value("${audio.variant.low-bitrate:48k}") String lowBitrate,
+            @Value("${audio.variant.opus-bitrate:32k}") String opusBitrate,
+            @Value("${audio.variant.timeout:5m}") Duration timeout
+    ) {
+        this.storageService = storageService;
+        this.timeout = timeout;
+        this.variants = Map.of(
+                // Speech only: mono loses nothing, and halves the bitrate needed
+                "low", new Variant("low", "mp3", "audio/mpeg",
+                        List.of("-ac", "1", "-c:a", "libmp3lame", "-b:a", lowBitrate)),
+                "opus", new Variant("opus", "opus", "audio/ogg",
+                        List.of("-ac", "1", "-c:a", "libopus", "-b:a", opusBitrate, "-application", "voip"))
+        );
+    }
+
+    public Variant variant(String name) {
+        return name == null ? null : variants.get(name.trim().toLowerCase());
+    }
+
+    /**
+     * Picks a variant from request headers when none was named: Opus if the client lists an
+     * Ogg/Opus type ahead of MP3, the low-bitrate MP3 if it sent Save-Data; otherwise null.
+     */
+    public Variant negotiate(String accept, String saveData) {
+
+        if (accept != null) {
+            String a = accept.toLowerCase();
+            int opus = Math.max(a.indexOf("audio/ogg"), a.indexOf("audio/opus"));
+            int mp3 = a.indexOf("audio/mpeg");
+            if (opus >= 0 && (mp3 < 0 || opus < mp3)) return variants.get("opus");
+        }
+
+        if ("on".equalsIgnoreCase(saveData == null ? null : saveData.trim())) return variants.get("low");
+
+        return null;
+    }
+
+    public static String variantFilename(String original, Variant variant) {
+        int dot = original.lastIndexOf('.');
+        String base = dot < 0 ? original : original.substring(0, dot);
+        // "abc.low.mp3", but "abc.opus" rather than "abc.opus.opus"
+        return variant.name().equals(variant.extension())
+                ? base + "." + variant.extension()
+                : base + "." + variant.name() + "." + variant.extension();
+    }
+
+    /**
+     * Local path of the variant, transcoding it from the original on first use.
+     */
+    public Mono<Path> fetch(String original, Variant variant) {
+
+        String filename = variantFilename(original, variant);
+
+        return inFlight.computeIfAbsent(filename, key -> Blocking.call(() -> storageService.hasConverted(filename))
+                .flatMap(exists -> exists
+                        ? Blocking.call(() -> storageService.fetchConverted(filename))
+                        : transcode(original, filename, variant))
+                .doFinally(signal -> inFlight.remove(filename))
+                .cache());
+    }
+
+    private Mono<Path> transcode(String original, String filename, Variant variant) {
+
+        Path target = storageService.resolveConverted(filename);
+        // Written beside the target and moved into place, so only complete files carry the name
+        Path partial = target.resolveSibling(filename + ".tmp." + variant.extension());
+        // One work directory per transcode (fetch shares it per filename), gone however it ends
+        String workDir = "variants-" + filename;
+
+        return Blocking.call(() -> {
+                    Path source = storageService.fetchConverted(original);
+                    Path log = storageService.createTempDirectory(workDir).resolve(filename + ".log");
+
+                    List<String> command = new ArrayList<>(List.of("ffmpeg", "-y", "-i", source.toString(), "-vn"));
+                    command.addAll(variant.codecArgs());
+                    command.add(partial.toString());
+
+                    return new Transcode(source, command, log);
+                })
+                .flatMap(job -> {
+                    long start = System.nanoTime();
+
+                    return VideoService.runFFmpeg(job.command(), job.log(), timeout)
+                            .then(Blocking.call(() -> {
+                                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                                storageService.publishConverted(filename);
+
+                                log.debug("Audio variant {}: {} KB → {} KB in {} ms", filename,
+                                        Files.size(job.source()) / 1024, Files.size(target) / 1024,
+                                        (System.nanoTime() - start) / 1_000_000);
+                                return target;
+                            }))
+                            .doOnError(e -> partial.toFile().delete());
+                })
+                // The ffmpeg error already carries the tail of the log
+                .doFinally(signal -> {
+                    try {
+                        storageService.deleteTempDirectory(workDir);
+                    } catch (Exception e) {
+                        log.warn("Could not delete {}: {}", workDir, e.toString());
+                    }
+                });
+    }
+
+    private record Transcode(Path source, List<String> command, Path log) {}
+}
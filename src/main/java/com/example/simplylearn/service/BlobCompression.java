@@ -0,0 +1,151 @@
+package com.example.simplylearn.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transparent zstd compression for text-like blobs at rest.
+ *
+ * Compressed files keep their name; readers recognise them by the zstd frame magic, so files
+ * stored before compression was enabled (or with it disabled) still read fine.
+ * Formats that are already compressed (media, images, Office zip containers) are stored as-is.
+ */
+@Component
+public class BlobCompression {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobCompression.class);
+
+    public record Stats(long files, long rawBytes, long storedBytes, double compressSeconds) {
+
+        public double ratio() {
+            return storedBytes == 0 ? 1 : (double) rawBytes / storedBytes;
+        }
+
+        public double megabytesPerSecond() {
+            return compressSeconds == 0 ? 0 : rawBytes / 1_048_576.0 / compressSeconds;
+        }
+    }
+
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "mp3", "mp4", "m4a", "aac", "ogg", "wav", "mov", "webm",
+            "png", "jpg", "jpeg", "gif", "webp",
+            "zip", "gz", "zst", "7z", "pptx", "docx", "xlsx"
+    );
+
+    private final boolean enabled;
+    private final int level;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    public BlobCompression(
+            @Value("${storage.compression.enabled:true}") boolean enabled,
+            @Value("${storage.compression.level:3}") int level
+    ) {
+        this.enabled = enabled;
+        this.level = level;
+    }
+
+    /**
+     * Writes {@code in} to {@code target}, zstd-compressed when the content is worth it.
+     */
+    public void write(String filename, InputStream in, Path target) throws IOException {
+
+        BufferedInputStream buffered = new BufferedInputStream(in);
+
+        if (!enabled || !worthCompressing(filename, buffered)) {
+            Files.copy(buffered, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        long start = System.nanoTime();
+        long raw;
+
+        try (OutputStream out = new ZstdOutputStream(Files.newOutputStream(target), level)) {
+            raw = buffered.transferTo(out);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        double seconds = elapsed / 1_000_000_000.0;
+        long stored = Files.size(target);
+
+        files.incrementAndGet();
+        rawBytes.addAndGet(raw);
+        storedBytes.addAndGet(stored);
+        compressNanos.addAndGet(elapsed);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Compressed {}: {} -> {} bytes ({}x, {} MB/s)",
+                    filename, raw, stored, String.format("%.1f", stored == 0 ? 1 : (double) raw / stored),
+                    Math.round(seconds == 0 ? 0 : raw / 1_048_576.0 / seconds));
+        }
+    }
+
+    /**
+     * Streams the stored bytes back, decompressing on the fly when they are a zstd frame.
+     */
+    public InputStream read(InputStream stored) throws IOException {
+
+        BufferedInputStream buffered = new BufferedInputStream(stored);
+        return startsWith(buffered, ZSTD_MAGIC) ? new ZstdInputStream(buffered) : buffered;
+    }
+
+    public Stats stats() {
+        return new Stats(files.get(), rawBytes.get(), storedBytes.get(),
+                compressNanos.get() / 1_000_000_000.0);
+    }
+
+    // ======================
+    // DETECTION
+    // ======================
+
+    private static boolean worthCompressing(String filename, BufferedInputStream in) throws IOException {
+
+        if (filename != null && filename.contains(".")) {
+            String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (COMPRESSED_EXTENSIONS.contains(extension)) return false;
+        }
+
+        // Misnamed files: sniff the common compressed signatures
+        return !startsWith(in, ZSTD_MAGIC)
+                && !startsWith(in, new byte[]{'P', 'K', 3, 4})                     // zip / Office
+                && !startsWith(in, new byte[]{(byte) 0x1F, (byte) 0x8B})           // gzip
+                && !startsWith(in, new byte[]{(byte) 0x89, 'P', 'N', 'G'})         // png
+                && !startsWith(in, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}) // jpeg
+                && !startsWith(in, new byte[]{'I', 'D', '3'});                     // mp3
+    }
+
+    private static boolean startsWith(BufferedInputStream in, byte[] magic) throws IOException {
+
+        in.mark(magic.length);
+        try {
+            byte[] head = in.readNBytes(magic.length);
+            if (head.length < magic.length) return false;
+            for (int i = 0; i < magic.length; i++) {
+                if (head[i] != magic[i]) return false;
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+}
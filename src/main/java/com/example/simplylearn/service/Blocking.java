@@ -0,0 +1,34 @@
+package com.example.simplylearn.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Bridges blocking work (file I/O, POI, ffmpeg) into the reactive pipeline.
+ * The work runs on the bounded elastic pool so it never stalls a Netty event loop.
+ */
+public final class Blocking {
+
+    private Blocking() {
+    }
+
+    public static <T> Mono<T> call(Callable<T> work) {
+        return Mono.fromCallable(work)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public static Mono<Void> run(Task work) {
+        return Mono.<Void>fromCallable(() -> {
+                    work.run();
+                    return null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Turns one ZIP archive (a whole course folder) into a batch of conversion jobs.
+ *
+ * The archive is read as a stream: each entry goes straight from the request body into
+ * StorageService, so neither the archive nor its extracted tree ever exists on disk or in
+ * memory as a whole. Jobs are created per entry or per folder (all files of one folder become
+ * one multi-file job, like a multi-file /upload) and handed to the scheduler in groups of
+ * bulk.submit-batch-size, so workers start on the first files while the rest still uploads.
+ *
+ * Entries and the archive as a whole are size-capped while reading (a small ZIP can expand
+ * to gigabytes). If the archive fails part-way (over a limit, truncated, not a ZIP) the jobs
+ * already queued are cancelled, the files no job took are deleted, and the failure carries
+ * the batch id so the client can see what happened to each job.
+ */
+@Service
+public class BulkIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestService.class);
+
+    public enum Grouping { ENTRY, FOLDER }
+
+    public record Result(UUID batchId, int jobs, int files, List<String> skipped) {}
+
+    public record Job(UUID id, String name, String status) {}
+
+    public record BatchStatus(UUID batchId, int jobs, Map<String, Integer> byStatus, boolean finished, List<Job> items) {}
+
+    // The archive could not be read to its end; its queued jobs were cancelled
+    public static class BatchFailedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final UUID batchId;
+        private final int cancelledJobs;
+
+        BatchFailedException(UUID batchId, int cancelledJobs, Exception cause) {
+            super(cause.getMessage(), cause);
+            this.batchId = batchId;
+            this.cancelledJobs = cancelledJobs;
+        }
+
+        public UUID batchId() { return batchId; }
+        public int cancelledJobs() { return cancelledJobs; }
+    }
+
+    private static final Set<String> UNFINISHED = Set.of("UPLOADED", "QUEUED", "PROCESSING");
+
+    // Never course material: media, archives, binaries
+    private static final Set<String> SKIPPED_EXTENSIONS = Set.of(
+            "zip", "gz", "7z", "rar", "exe", "dll", "so", "dmg",
+            "mp3", "mp4", "mov", "wav", "png", "jpg", "jpeg", "gif"
+    );
+
+    private final StorageService storageService;
+    private final FileUploadRepository repo;
+    private final JobScheduler jobScheduler;
+
+    private final int submitBatchSize;
+    private final int maxEntries;
+    private final long maxEntryBytes;
+    private final long maxTotalBytes;
+
+    public BulkIngestService(
+            StorageService storageService,
+            FileUploadRepository repo,
+            JobScheduler jobScheduler,
+            @Value("${bulk.submit-batch-size:25}") int submitBatchSize,
+            @Value("${bulk.max-entries:1000}") int maxEntries,
+            @Value("${bulk.max-entry-size:256MB}") DataSize maxEntrySize,
+            @Value("${bulk.max-total-size:2GB}") DataSize maxTotalSize
+    ) {
+        this.storageService = storageService;
+        this.repo = repo;
+        this.jobScheduler = jobScheduler;
+        this.submitBatchSize = Math.max(1, submitBatchSize);
+        this.maxEntries = maxEntries;
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.maxTotalBytes = maxTotalSize.toBytes();
+    }
+
+    // ======================
+    // INGEST
+    // ======================
+
+    public Result ingest(InputStream archive, List<String> types, Grouping grouping, String owner)
+            throws BatchFailedException {
+
+        UUID batchId = UUID.randomUUID();
+
+        // Stored files, and the jobs already handed to the scheduler (undone if the archive fails)
+        List<String> stored = new ArrayList<>();
+        List<FileUpload> submitted = new ArrayList<>();
+
+        try {
+            return read(archive, types, grouping, owner, batchId, stored, submitted);
+        } catch (Exception e) {
+            throw new BatchFailedException(batchId, abandon(stored, submitted), e);
+        }
+    }
+
+    private Result read(InputStream archive, List<String> types, Grouping grouping, String owner, UUID batchId,
+                        List<String> stored, List<FileUpload> submitted) throws Exception {
+
+        List<String> skipped = new ArrayList<>();
+
+        // Folder → its files, in archive order (FOLDER grouping only)
+        Map<String, Folder> folders = new LinkedHashMap<>();
+        List<FileUpload> pending = new ArrayList<>();
+
+        int files = 0;
+        int jobs = 0;
+        long total = 0;
+
+        // Not closed here: the caller owns the request stream
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(archive));
+        ZipEntry entry;
+
+        while ((entry = zip.getNextEntry()) != null) {
+
+            String path = entry.getName().replace('\\', '/');
+
+            if (entry.isDirectory()) continue;
+            if (ignored(path)) {
+                skipped.add(path);
+                continue;
+            }
+
+            if (++files > maxEntries) {
+                throw new IllegalArgumentException("The archive has more than " + maxEntries + " files");
+            }
+
+            LimitedInputStream in = new LimitedInputStream(zip, Math.min(maxEntryBytes, maxTotalBytes - total), path);
+            String storedName = storageService.store(fileName(path), in);
+            stored.add(storedName);
+            total += in.count;
+
+            if (grouping == Grouping.FOLDER) {
+                folders.computeIfAbsent(folderName(path), name -> new Folder())
+                        .add(storedName, fileName(path), in.count);
+                continue;
+            }
+
+            pending.add(newJob(batchId, List.of(storedName), path, in.count, types, owner));
+            jobs++;
+
+            // Queue what we have so far; workers start while the archive still streams in
+            if (pending.size() >= submitBatchSize) submit(pending, submitted);
+        }
+
+        // A folder is only complete at the end of the archive: entries need not be contiguous
+        for (Map.Entry<String, Folder> folder : folders.entrySet()) {
+
+            Folder f = folder.getValue();
+            String name = folder.getKey().isEmpty() ? String.join(", ", f.names) : folder.getKey() + "/";
+
+            pending.add(newJob(batchId, f.stored, name, f.bytes, types, owner));
+            jobs++;
+
+            if (pending.size() >= submitBatchSize) submit(pending, submitted);
+        }
+
+        if (!pending.isEmpty()) submit(pending, submitted);
+
+        log.info("Batch {}: {} files → {} jobs ({} MB), {} entries skipped",
+                batchId, files, jobs, total / (1024 * 1024), skipped.size());
+
+        return new Result(batchId, jobs, files, skipped);
+    }
+
+    private void submit(List<FileUpload> pending, List<FileUpload> submitted) {
+        jobScheduler.submitAll(List.copyOf(pending));
+        submitted.addAll(pending);
+        pending.clear();
+    }
+
+    /**
+     * Undoes a failed batch as far as possible: queued jobs are cancelled (one that already
+     * started is stopped), and stored files no submitted job refers to are deleted. Returns
+     * how many jobs were cancelled.
+     */
+    private int abandon(List<String> stored, List<FileUpload> submitted) {
+
+        Set<String> kept = new HashSet<>();
+        for (FileUpload upload : submitted) {
+            try {
+                jobScheduler.cancel(upload.getId());
+            } catch (Exception e) {
+                log.warn("Could not cancel job {} of a failed batch", upload.getId(), e);
+            }
+            kept.addAll(List.of(upload.getStoredFilename().split("\\|")));
+        }
+
+        for (String filename : stored) {
+            if (kept.contains(filename)) continue;
+            try {
+                storageService.deleteUpload(filename);
+            } catch (Exception e) {
+                log.warn("Could not delete {} of a failed batch", filename, e);
+            }
+        }
+
+        return submitted.size();
+    }
+
+    private static FileUpload newJob(UUID batchId, List<String> stored, String name, long bytes,
+                                     List<String> types, String owner) {
+
+        FileUpload upload = new FileUpload();
+        upload.setOriginalFilename(name);
+        upload.setStoredFilename(String.join("|", stored));
+        upload.setConversionType(String.join("|", types));
+        upload.setStatus("UPLOADED");
+        upload.setUploadedAt(Instant.now());
+        upload.setInputBytes(bytes);
+        upload.setOwner(owner);
+        upload.setBatchId(batchId);
+        return upload;
+    }
+
+    private static final class Folder {
+
+        final List<String> stored = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        long bytes;
+
+        void add(String storedName, String name, long size) {
+            stored.add(storedName);
+            names.add(name);
+            bytes += size;
+        }
+    }
+
+    // ======================
+    // ENTRY NAMES
+    // ======================
+
+    // OS metadata (__MACOSX/, .DS_Store, Thumbs.db), hidden files and non-text formats
+    static boolean ignored(String path) {
+
+        String name = fileName(path);
+
+        if (path.startsWith("__MACOSX/") || path.contains("/.") || name.startsWith(".")) return true;
+        if (name.equalsIgnoreCase("Thumbs.db") || name.equalsIgnoreCase("desktop.ini")) return true;
+
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && SKIPPED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    static String folderName(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    // ======================
+    // BATCH STATUS
+    // ======================
+
+    public BatchStatus status(UUID batchId) {
+
+        List<FileUpload> uploads = repo.findByBatchIdOrderByOriginalFilename(batchId);
+        if (uploads.isEmpty()) return null;
+
+        Map<String, Integer> byStatus = new TreeMap<>();
+        List<Job> items = new ArrayList<>();
+        boolean finished = true;
+
+        for (FileUpload upload : uploads) {
+            byStatus.merge(upload.getStatus(), 1, Integer::sum);
+            finished &= !UNFINISHED.contains(upload.getStatus());
+            items.add(new Job(upload.getId(), upload.getOriginalFilename(), upload.getStatus()));
+        }
+
+        return new BatchStatus(batchId, uploads.size(), byStatus, finished, items);
+    }
+
+    // ======================
+    // SIZE CAP
+    // ======================
+
+    /**
+     * Counts what is read and fails once the entry grows past its limit. Close is a no-op:
+     * the ZIP stream continues with the next entry.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private final String name;
+        long count;
+
+        LimitedInputStream(InputStream in, long limit, String name) {
+            super(in);
+            this.limit = limit;
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) add(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) add(n);
+            return n;
+        }
+
+        private void add(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Archive entry " + name + " expands past the size limit");
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
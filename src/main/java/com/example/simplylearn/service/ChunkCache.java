@@ -0,0 +1,115 @@
+package com.example.simplylearn.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed memo of intermediate results: outlines and generated text per chunk,
+ * synthesized audio per line, rendered video scenes.
+ *
+ * Entries are keyed by a hash of exactly what produced them, so a re-upload of a slightly
+ * edited file only recomputes the chunks whose input changed and reassembles the rest from
+ * here. Stored through StorageService under "cache/", so every node shares it.
+ * Bump incremental.cache-version after changing prompts, voices or encoding settings.
+ */
+@Component
+public class ChunkCache {
+
+    private final StorageService storage;
+    private final boolean enabled;
+    private final String version;
+
+    public ChunkCache(
+            StorageService storage,
+            @Value("${incremental.enabled:true}") boolean enabled,
+            @Value("${incremental.cache-version:1}") String version
+    ) {
+        this.storage = storage;
+        this.enabled = enabled;
+        this.version = version;
+    }
+
+    public Mono<String> text(String namespace, String key, Supplier<Mono<String>> compute) {
+        return bytes(namespace, key, () -> compute.get().map(s -> s.getBytes(StandardCharsets.UTF_8)))
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public Mono<byte[]> bytes(String namespace, String key, Supplier<Mono<byte[]>> compute) {
+
+        if (!enabled) return compute.get();
+
+        String path = path(namespace, key);
+
+        return Blocking.call(() -> storage.readCache(path))
+                .flatMap(cached -> recorded(true).thenReturn(cached))
+                .switchIfEmpty(Mono.defer(() -> compute.get()
+                        .flatMap(computed -> save(Blocking.run(() -> storage.writeCache(path, computed)))
+                                .then(recorded(false))
+                                .thenReturn(computed))));
+    }
+
+    /**
+     * Like {@link #bytes} for results that are files: on a hit the cached file is copied to
+     * {@code target}, on a miss {@code render} must write {@code target}.
+     */
+    public Mono<Void> file(String namespace, String key, Path target, Supplier<Mono<Void>> render) {
+
+        if (!enabled) return render.get();
+
+        String path = path(namespace, key);
+
+        return Blocking.call(() -> storage.fetchCache(path, target))
+                .flatMap(found -> found
+                        ? recorded(true)
+                        : render.get()
+                                .then(save(Blocking.run(() -> storage.putCache(path, target))))
+                                .then(recorded(false)));
+    }
+
+    /**
+     * SHA-256 (hex) over the parts; the building block for every cache key.
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ======================
+    // HELPERS
+    // ======================
+
+    private String path(String namespace, String key) {
+        return "v" + version + "/" + namespace + "/" + key.substring(0, 2) + "/" + key;
+    }
+
+    // A cache that can't be written must never fail the job
+    private static Mono<Void> save(Mono<Void> write) {
+        return write.onErrorResume(e -> {
+            e.printStackTrace();
+            return Mono.empty();
+        });
+    }
+
+    private static Mono<Void> recorded(boolean hit) {
+        return Mono.deferContextual(ctx -> {
+            JobContext job = ctx.getOrDefault(JobContext.class, null);
+            if (job != null) job.recordCacheLookup(hit);
+            return Mono.empty();
+        });
+    }
+}
@@ -2,178 +2,434 @@ package com.example.simplylearn.service;
 
 import com.example.simplylearn.model.FileUpload;
 import com.example.simplylearn.repository.FileUploadRepository;
-import org.springframework.scheduling.annotation.Async;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ConversionService {
 
+    private static final Logger log = LoggerFactory.getLogger(ConversionService.class);
+
     private final FileUploadRepository repo;
     private final StorageService storageService;
-    private final OpenAIService openAIService;
+    private final MaterialService materialService;
+    private final JobCostModel costModel;
     private final PollyService pollyService;
     private final SlideshowService slideshowService;
     private final VideoService videoService;
+    private final JobRecordings recordings;
+
+    private final boolean dedupEnabled;
+    private final double dedupThreshold;
+
+    private final Environment env;
+    private final Duration defaultStageTimeout;
+
+    private final DataSize maxText;
+    private final int maxParagraphChars;
+    private final boolean voicesByContent;
+
+    // Jobs running on this node: their live trace, and the signal that cancels them
+    private record RunningJob(JobContext context, Sinks.Empty<Void> cancel) {}
+
+    private final Map<UUID, RunningJob> active = new ConcurrentHashMap<>();
 
     public ConversionService(
             FileUploadRepository repo,
             StorageService storageService,
-            OpenAIService openAIService,
+            MaterialService materialService,
+            JobCostModel costModel,
             PollyService pollyService,
             SlideshowService slideshowService,
-            VideoService videoService
+            VideoService videoService,
+            JobRecordings recordings,
+            @Value("${dedup.enabled:true}") boolean dedupEnabled,
+            @Value("${dedup.similarity-threshold:0.8}") double dedupThreshold,
+            Environment env,
+            @Value("${job.timeout.default:30m}") Duration defaultStageTimeout,
+            @Value("${job.memory.max-text:256MB}") DataSize maxText,
+            @Value("${extract.max-paragraph-chars:20000}") int maxParagraphChars,
+            @Value("${polly.voices.by-content:true}") boolean voicesByContent
     ) {
         this.repo = repo;
         this.storageService = storageService;
-        this.openAIService = openAIService;
+        this.materialService = materialService;
+        this.costModel = costModel;
         this.pollyService = pollyService;
         this.slideshowService = slideshowService;
         this.videoService = videoService;
+        this.recordings = recordings;
+        this.dedupEnabled = dedupEnabled;
+        this.dedupThreshold = dedupThreshold;
+        this.env = env;
+        this.defaultStageTimeout = defaultStageTimeout;
+        this.maxText = maxText;
+        this.maxParagraphChars = maxParagraphChars;
+        this.voicesByContent = voicesByContent;
     }
 
-    @Async
-    @Transactional
-    public void convert(UUID uploadId) {
+    /**
+     * The whole conversion as one lazy pipeline; JobScheduler decides when it is subscribed.
+     * The stages are chained reactively, so no thread is held while waiting on OpenAI or Polly.
+     *
+     * One upload may ask for several outputs: the files are read once and MaterialService decides
+     * what the generators see (raw text, one shared outline, or per-section retrieved passages).
+     * Failures are recorded on the upload, so the returned Mono always completes normally.
+     */
+    public Mono<Void> run(UUID uploadId) {
+
+        // Already claimed (and marked PROCESSING) by JobLeaseService
+        return Blocking.call(() -> repo.findById(uploadId)
+                        .orElseThrow(() -> new IllegalArgumentException("Upload not found")))
+                .flatMap(this::pipeline);
+    }
 
-        FileUpload upload = repo.findById(uploadId)
-                .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+    private Mono<Void> pipeline(FileUpload upload) {
+
+        List<String> types = upload.getConversionTypes();
+        JobContext job = new JobContext(upload.getId(), new TextBudget(maxText.toBytes()));
+        Sinks.Empty<Void> cancel = Sinks.empty();
+        active.put(upload.getId(), new RunningJob(job, cancel));
+
+        if (upload.isRecordRequested()) startRecording(upload.getId());
+
+        Mono<Void> work = timed(job, "extract", readAllFiles(upload))
+                .flatMap(text -> timed(job, "prepare", Mono.defer(() -> materialService.prepare(text, types))))
+                .flatMapMany(material -> Flux.fromIterable(types)
+                        .flatMapSequential(type -> timed(job, type, handle(upload, type, material))
+                                .contextWrite(PipelineEvents.conversionType(type))))
+                .collectList()
+                .flatMap(convertedFilenames -> Blocking.run(() -> {
+                    upload.setConvertedFilename(String.join("|", convertedFilenames));
+                    upload.setStatus("COMPLETED");
+                    upload.setLeaseOwner(null);
+                    upload.setLeaseExpiresAt(null);
+                    recordUsage(upload, job);
+                    repo.save(upload);
+
+                    log.debug("Job {}: peak text held {} KB",
+                            upload.getId(), job.textBudget().peakBytes() / 1024);
+
+                    if (job.ttsRequestsSaved() > 0) {
+                        log.debug("Job {}: {} Polly request(s), {} saved by packing lines",
+                                upload.getId(), job.ttsRequests(), job.ttsRequestsSaved());
+                    }
+
+                    if (job.cacheHits() > 0) {
+                        log.debug("Incremental {}: reused {} of {} cached chunk results",
+                                upload.getId(), job.cacheHits(), job.cacheHits() + job.cacheMisses());
+                    }
+
+                    // Completed jobs teach the scheduler's cost model
+                    job.stageSeconds().forEach((stage, seconds) ->
+                            costModel.record(stage, upload.getInputBytes(), seconds));
+                }));
+
+        // Cancelling unsubscribes from everything in flight: OpenAI requests, Polly futures and
+        // ffmpeg (its process tree is killed), so the worker slot is free at once
+        Mono<Void> cancelled = cancel.asMono()
+                .then(Mono.error(new CancellationException("Cancelled by user")));
+
+        Mono<Void> recorded = PipelineEvents.record(
+                () -> new PipelineEvents.JobEvent(upload.getConversionType(), upload.getInputBytes()),
+                event -> work);
+
+        return recorded.or(cancelled)
+                .contextWrite(Context.of(JobContext.class, job))
+                .onErrorResume(e -> Blocking.run(() -> {
+                    boolean wasCancelled = e instanceof CancellationException;
+                    if (!wasCancelled) e.printStackTrace();
+
+                    upload.setStatus(wasCancelled ? "CANCELLED" : "FAILED");
+                    upload.setCancelRequested(false);
+                    upload.setLeaseOwner(null);
+                    upload.setLeaseExpiresAt(null);
+                    recordUsage(upload, job);
+                    repo.save(upload);
+                }))
+                .then(Mono.defer(() -> stopRecording(upload)))
+                // Scene images, per-scene audio/video and ffmpeg logs are only needed while running
+                .then(Blocking.run(() -> storageService.deleteTempDirectory(upload.getId().toString()))
+                        .onErrorResume(e -> {
+                            e.printStackTrace();
+                            return Mono.empty();
+                        }))
+                .doFinally(signal -> active.remove(upload.getId()));
+    }
 
-        try {
-            upload.setStatus("PROCESSING");
-            repo.save(upload);
-
-            switch (upload.getConversionType().toLowerCase()) {
-                case "podcast" -> handlePodcast(upload);
-                case "summary" -> handleSummary(upload);
-                case "slideshow" -> handleSlideshow(upload);
-                case "video" -> handleVideo(upload);
-                default -> throw new UnsupportedOperationException(
-                        "Unsupported conversion type: " + upload.getConversionType()
-                );
-            }
+    /**
+     * Cancels a job running on THIS node; false when it isn't running here.
+     */
+    public boolean cancel(UUID uploadId) {
+        RunningJob running = active.get(uploadId);
+        if (running == null) return false;
 
-            upload.setStatus("COMPLETED");
-            repo.save(upload);
+        running.cancel().tryEmitEmpty();
+        return true;
+    }
 
+    /**
+     * Starts a flight recording of a job running on THIS node; false when it isn't running here.
+     */
+    public boolean startRecording(UUID uploadId) {
+        if (!active.containsKey(uploadId)) return false;
+
+        try {
+            recordings.start(uploadId);
         } catch (Exception e) {
+            // Profiling must never fail the job
             e.printStackTrace();
-            upload.setStatus("FAILED");
-            repo.save(upload);
         }
+        return true;
+    }
+
+    private Mono<Void> stopRecording(FileUpload upload) {
+        if (!recordings.isRecording(upload.getId())) return Mono.empty();
+
+        return Blocking.run(() -> {
+                    upload.setRecordingFilename(recordings.stop(upload.getId()));
+                    upload.setRecordRequested(false);
+                    repo.save(upload);
+                })
+                .onErrorResume(e -> {
+                    e.printStackTrace();
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Live span tree of a job running on this node, or null (finished jobs keep theirs on the upload).
+     */
+    public String liveTrace(UUID uploadId) {
+        RunningJob running = active.get(uploadId);
+        return running == null ? null : running.context().trace().toJson();
+    }
+
+    // Stage timing + trace span + JFR event + the stage's timeout (job.timeout.<stage>, else job.timeout.default)
+    private <T> Mono<T> timed(JobContext job, String stage, Mono<T> work) {
+
+        Duration timeout = env.getProperty("job.timeout." + stage, Duration.class, defaultStageTimeout);
+
+        return withTimeout(stage, timeout, JobTrace.span(stage, PipelineEvents.record(() -> new PipelineEvents.StageEvent(stage), event -> {
+            long start = System.nanoTime();
+            return work.doOnSuccess(v ->
+                    job.recordStage(stage, (System.nanoTime() - start) / 1_000_000_000.0));
+        })));
+    }
+
+    // Only the stage's own timer reports the stage: timeouts from inside (ffmpeg, providers) keep their message
+    static <T> Mono<T> withTimeout(String stage, Duration timeout, Mono<T> work) {
+        return work.timeout(timeout, Mono.error(() ->
+                new IllegalStateException("Stage '" + stage + "' timed out after " + timeout)));
+    }
+
+    private void recordUsage(FileUpload upload, JobContext job) {
+        upload.setEstimatedPromptTokens(job.estimatedPromptTokens());
+        upload.setPromptTokens(job.promptTokens());
+        upload.setCompletionTokens(job.completionTokens());
+        upload.setTraceJson(job.trace().toJson());
+        upload.setPeakTextBytes(job.textBudget().peakBytes());
+        upload.setTtsRequests(job.ttsRequests());
+        upload.setTtsRequestsSaved(job.ttsRequestsSaved());
+    }
+
+    // Produces ONE output type from the shared material, returns the converted filename
+    private Mono<String> handle(FileUpload upload, String type, StudyMaterial material) {
+        return produce(upload, type, material)
+                .flatMap(filename -> Blocking.call(() -> {
+                    storageService.publishConverted(filename);
+                    return filename;
+                }));
+    }
+
+    private Mono<String> produce(FileUpload upload, String type, StudyMaterial material) {
+        return switch (type) {
+            case "podcast" -> handlePodcast(upload, material);
+            case "summary" -> handleSummary(upload, material);
+            case "slideshow" -> handleSlideshow(upload, material);
+            case "video" -> handleVideo(upload, material);
+            default -> Mono.error(new UnsupportedOperationException(
+                    "Unsupported conversion type: " + type
+            ));
+        };
     }
 
     // ======================
     // PODCAST
     // ======================
-    private void handlePodcast(FileUpload upload) throws Exception {
-
-        String text = readAllFiles(upload);
-
-        String podcastScript = openAIService.createPodcastScript(text);
+    private Mono<String> handlePodcast(FileUpload upload, StudyMaterial material) {
 
         Path mp3Path = storageService.resolveConverted(
                 upload.getId().toString() + ".mp3"
         );
 
-        pollyService.synthesizePodcastToMp3(podcastScript, mp3Path);
-
-        upload.setConvertedFilename(mp3Path.getFileName().toString());
+        return materialService.generate("podcast", material)
+                .flatMap(podcast -> pollyService.synthesizePodcastToMp3(
+                        podcast.items(StructuredOutput.Segment.class), mp3Path, voiceSeed(upload)))
+                .thenReturn(mp3Path.getFileName().toString());
     }
 
     // ======================
     // SUMMARY
     // ======================
-    private void handleSummary(FileUpload upload) throws Exception {
-
-        String text = readAllFiles(upload);
-
-        String summary = openAIService.createSummary(text);
+    private Mono<String> handleSummary(FileUpload upload, StudyMaterial material) {
 
         Path outPath = storageService.resolveConverted(
                 upload.getId().toString() + ".txt"
         );
 
-        Files.writeString(outPath, summary);
-
-        upload.setConvertedFilename(outPath.getFileName().toString());
+        return materialService.generate("summary", material)
+                .map(summary -> String.join("\n\n", summary.items(StructuredOutput.Paragraph.class).stream()
+                        .map(StructuredOutput.Paragraph::text)
+                        .toList()))
+                .flatMap(summary -> Blocking.run(() -> Files.writeString(outPath, summary)))
+                .thenReturn(outPath.getFileName().toString());
     }
 
     // ======================
     // SLIDESHOW
     // ======================
-    private void handleSlideshow(FileUpload upload) throws Exception {
-
-        String text = readAllFiles(upload);
-
-        String slideshowOutline =
-                openAIService.createSlideshowOutline(text);
+    private Mono<String> handleSlideshow(FileUpload upload, StudyMaterial material) {
 
         Path pptxPath = storageService.resolveConverted(
                 upload.getId().toString() + ".pptx"
         );
 
-        slideshowService.createSlideshow(slideshowOutline, pptxPath);
-
-        upload.setConvertedFilename(pptxPath.getFileName().toString());
+        return materialService.generate("slideshow", material)
+                .flatMap(slideshow -> Blocking.run(() ->
+                        slideshowService.createSlideshow(slideshow.items(StructuredOutput.Slide.class), pptxPath)))
+                .thenReturn(pptxPath.getFileName().toString());
     }
 
     // ======================
     // 🎬 VIDEO
     // ======================
-    private void handleVideo(FileUpload upload) throws Exception {
-
-        String text = readAllFiles(upload);
-
-        // 1️⃣ Create video narration script
-        String videoScript =
-                openAIService.createVideoScript(text);
+    private Mono<String> handleVideo(FileUpload upload, StudyMaterial material) {
 
-        // 2️⃣ Create slideshow images (scene-based)
-        Path imagesDir =
-                storageService.createTempDirectory(upload.getId().toString());
-
-        slideshowService.createVideoSlides(videoScript, imagesDir);
-
-        // 3️⃣ Generate narration audio (ONE generative speaker)
+        // 2️⃣ / 3️⃣ / 4️⃣ output locations
         Path narrationMp3 =
                 storageService.resolveConverted(upload.getId() + "-narration.mp3");
 
-        pollyService.synthesizeVideoNarrationToMp3(videoScript, narrationMp3);
-
-        // 4️⃣ Stitch into MP4 via FFmpeg
         Path videoPath =
                 storageService.resolveConverted(upload.getId() + ".mp4");
 
-        videoService.createVideo(videoScript, imagesDir, videoPath);
+        // 1️⃣ Create video narration script
+        return materialService.generate("video", material)
+                .map(video -> video.items(StructuredOutput.Scene.class))
+                .flatMap(scenes -> Blocking.call(() -> {
+
+                            // 2️⃣ Create slideshow images (scene-based)
+                            Path imagesDir =
+                                    storageService.createTempDirectory(upload.getId().toString());
+
+                            slideshowService.createVideoSlides(scenes, imagesDir);
+                            return imagesDir;
+                        })
+                        // 3️⃣ Generate narration audio (ONE generative speaker)
+                        .flatMap(imagesDir -> pollyService.synthesizeVideoNarrationToMp3(
+                                        String.join("\n", scenes.stream().map(StructuredOutput.Scene::narration).toList()),
+                                        narrationMp3, voiceSeed(upload))
+                                // 4️⃣ Stitch into MP4 via FFmpeg
+                                .then(videoService.createVideo(scenes, imagesDir, videoPath, voiceSeed(upload)))))
+                // 5️⃣ HLS playlist + segments (optional), served by /stream/{id}/
+                .then(Mono.defer(() -> !videoService.hlsEnabled() ? Mono.<Void>empty() : Blocking.run(() ->
+                        storageService.publishConvertedDirectory(
+                                VideoService.hlsDirectory(videoPath).getFileName().toString()))))
+                .thenReturn(videoPath.getFileName().toString());
+    }
 
-        upload.setConvertedFilename(videoPath.getFileName().toString());
+    /**
+     * Seeds the voice choice of a podcast or video. By default it follows the text the job read,
+     * so converting the same content again picks the same voices and its audio comes from the
+     * cache; with polly.voices.by-content=false every upload gets its own random voices.
+     */
+    private long voiceSeed(FileUpload upload) {
+        String content = upload.getContentSha256();
+        if (voicesByContent && content != null) {
+            return Long.parseUnsignedLong(content.substring(0, 16), 16);
+        }
+        return upload.getId().getMostSignificantBits() ^ upload.getId().getLeastSignificantBits();
     }
 
     // ======================
     // SHARED FILE READER
     // ======================
-    private String readAllFiles(FileUpload upload) throws Exception {
 
-        StringBuilder combined = new StringBuilder();
+    // Streams every file paragraph by paragraph through a fixed buffer, dropping cross-file
+    // near-duplicates on the way; what is kept counts against the job's text ceiling
+    private Mono<SourceText> readAllFiles(FileUpload upload) {
+        return Mono.deferContextual(ctx -> Blocking.call(() -> {
+
+            TextBudget budget = ctx.get(JobContext.class).textBudget();
+            SourceText source = new SourceText(budget);
+            MessageDigest content = MessageDigest.getInstance("SHA-256");
+
+            String[] files = upload.getStoredFilename().split("\\|");
+
+            // Overlapping materials (slides + notes copying them) are only sent once
+            ParagraphDeduplicator dedup = dedupEnabled && files.length > 1
+                    ? new ParagraphDeduplicator(dedupThreshold)
+                    : null;
+
+            for (int doc = 0; doc < files.length; doc++) {
 
-        String[] files = upload.getStoredFilename().split("\\|");
+                int document = doc;
 
-        for (String filename : files) {
-            Path path = storageService.resolve(filename);
+                try (Reader in = storageService.openText(files[doc])) {
+                    ParagraphReader.read(in, maxParagraphChars, paragraph -> {
 
-            if (!Files.exists(path)) {
-                throw new IllegalStateException("Missing file: " + filename);
+                        if (dedup != null) {
+                            long fingerprints = dedup.indexBytes();
+                            boolean keep = dedup.keep(document, paragraph);
+                            budget.retainBytes(dedup.indexBytes() - fingerprints);
+                            if (!keep) return;
+                        }
+
+                        source.add(paragraph);
+                        content.update(paragraph.getBytes(StandardCharsets.UTF_8));
+                        content.update((byte) '\n');
+                    });
+                }
             }
 
-            combined.append(Files.readString(path))
-                    .append("\n\n");
-        }
+            upload.setContentSha256(HexFormat.of().formatHex(content.digest()));
+
+            if (dedup == null) return source;
+
+            // Fingerprints are dropped with the deduplicator
+            budget.releaseBytes(dedup.indexBytes());
+
+            ParagraphDeduplicator.Result deduped = dedup.result(null);
+
+            upload.setInputChars(deduped.inputChars());
+            upload.setDuplicateCharsRemoved(deduped.removedChars());
+
+            log.debug("Dedup {}: removed {} of {} paragraphs ({}% of input)",
+                    upload.getId(), deduped.removedParagraphs(), deduped.paragraphs(),
+                    Math.round(deduped.removedRatio() * 1000) / 10.0);
 
-        return combined.toString().trim();
+            return source;
+        }));
     }
 }
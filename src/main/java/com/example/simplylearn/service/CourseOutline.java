@@ -0,0 +1,36 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the "Section N: Title / - point" outline produced by OpenAIService.createOutline.
+ */
+public class CourseOutline {
+
+    public record Section(String title, List<String> points) {}
+
+    public static List<Section> parse(String outline) {
+
+        List<Section> sections = new ArrayList<>();
+        String title = null;
+        List<String> points = new ArrayList<>();
+
+        for (String raw : outline.split("\\r?\\n")) {
+
+            String line = raw.trim();
+            if (line.isEmpty()) continue;
+
+            if (line.regionMatches(true, 0, "Section", 0, 7) && line.contains(":")) {
+                if (title != null) sections.add(new Section(title, points));
+                title = line.substring(line.indexOf(':') + 1).trim();
+                points = new ArrayList<>();
+            } else if (line.startsWith("-") && title != null) {
+                points.add(line.substring(1).trim());
+            }
+        }
+
+        if (title != null) sections.add(new Section(title, points));
+        return sections;
+    }
+}
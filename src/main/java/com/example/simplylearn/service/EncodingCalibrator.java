@@ -0,0 +1,172 @@
+package com.example.simplylearn.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the encoding profile for THIS host. Run the app with --calibrate-encoding, e.g.
+ *
+ *   ./gradlew bootRun --args='--calibrate-encoding --app.role=web'
+ *
+ * Every configured profile encodes the same sample scene (a slide image plus narration-length
+ * audio) the way VideoService does. Encode speed, size per minute and SSIM against the source
+ * slide are reported, and the fastest profile within the size target and above the quality
+ * floor is recommended. The app exits afterwards.
+ */
+@Component
+public class EncodingCalibrator implements ApplicationRunner {
+
+    // ffmpeg's ssim filter summary line: "SSIM Y:0.99 U:0.99 V:0.99 All:0.991234 (20.5)"
+    private static final Pattern SSIM_ALL = Pattern.compile("All:([0-9.]+)");
+
+    public record Result(EncodingProfile profile, double encodeSeconds, long bytes, double ssim, double sampleSeconds) {
+
+        double realtimeFactor() {
+            return sampleSeconds / encodeSeconds;
+        }
+
+        long bytesPerMinute() {
+            return Math.round(bytes * 60 / sampleSeconds);
+        }
+    }
+
+    private final EncodingProfiles profiles;
+    private final VideoService videoService;
+    private final ApplicationContext context;
+
+    private final Duration sampleDuration;
+    private final DataSize maxPerMinute;
+    private final double minSsim;
+
+    public EncodingCalibrator(
+            EncodingProfiles profiles,
+            VideoService videoService,
+            ApplicationContext context,
+            @Value("${video.encoding.calibration.sample-duration:30s}") Duration sampleDuration,
+            @Value("${video.encoding.calibration.max-size-per-minute:6MB}") DataSize maxPerMinute,
+            @Value("${video.encoding.calibration.min-ssim:0.97}") double minSsim
+    ) {
+        this.profiles = profiles;
+        this.videoService = videoService;
+        this.context = context;
+        this.sampleDuration = sampleDuration;
+        this.maxPerMinute = maxPerMinute;
+        this.minSsim = minSsim;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+
+        if (!args.containsOption("calibrate-encoding")) return;
+
+        int exitCode = 0;
+        try {
+            calibrate();
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    public Optional<Result> calibrate() throws Exception {
+
+        Path workDir = Files.createTempDirectory("encoding-calibration");
+
+        Path image = workDir.resolve("sample.png");
+        Path audio = workDir.resolve("sample.mp3");
+
+        ImageUtil.createPlaceholderImage(image,
+                "Photosynthesis converts light energy into chemical energy stored in glucose");
+
+        // Narration stand-in: a tone for the sample length (its encode cost is the same for every profile)
+        VideoService.runFFmpeg(List.of(
+                "ffmpeg", "-y",
+                "-f", "lavfi", "-i", "sine=frequency=220:duration=" + sampleDuration.toSeconds(),
+                "-c:a", "libmp3lame", "-b:a", "64k",
+                audio.toString()
+        ), workDir.resolve("sample.log"), Duration.ofMinutes(5)).block();
+
+        List<Result> results = new ArrayList<>();
+
+        for (EncodingProfile profile : profiles.all()) {
+
+            Path video = workDir.resolve(profile.name() + ".mp4");
+
+            long start = System.nanoTime();
+            videoService.encodeScene(profile, image, audio, video).block();
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            results.add(new Result(profile, seconds, Files.size(video), ssim(image, video, workDir),
+                    sampleDuration.toMillis() / 1000.0));
+        }
+
+        Optional<Result> best = results.stream()
+                .filter(r -> r.bytesPerMinute() <= maxPerMinute.toBytes() && r.ssim() >= minSsim)
+                .min(Comparator.comparingDouble(Result::encodeSeconds));
+
+        report(results, best);
+        return best;
+    }
+
+    // Decoded frames are scaled back to the slide's size, so lower resolutions are charged for the detail they lose
+    private double ssim(Path image, Path video, Path workDir) throws Exception {
+
+        Path log = workDir.resolve(video.getFileName() + ".ssim.log");
+
+        VideoService.runFFmpeg(List.of(
+                "ffmpeg",
+                "-i", video.toString(),
+                "-loop", "1", "-i", image.toString(),
+                "-lavfi", "[0:v]scale=1280:720,format=yuv420p[enc];[1:v]format=yuv420p[ref];[enc][ref]ssim=shortest=1",
+                "-f", "null", "-"
+        ), log, Duration.ofMinutes(5)).block();
+
+        return parseSsim(Files.readString(log));
+    }
+
+    static double parseSsim(String ffmpegOutput) {
+        Matcher m = SSIM_ALL.matcher(ffmpegOutput);
+        double ssim = Double.NaN;
+        while (m.find()) {
+            ssim = Double.parseDouble(m.group(1));
+        }
+        if (Double.isNaN(ssim)) {
+            throw new IllegalStateException("No SSIM in ffmpeg output");
+        }
+        return ssim;
+    }
+
+    private void report(List<Result> results, Optional<Result> best) {
+
+        System.out.printf("%nEncoding calibration (%ds sample, target <= %s/min, SSIM >= %.3f)%n",
+                sampleDuration.toSeconds(), maxPerMinute, minSsim);
+        System.out.printf("%-10s %10s %10s %12s %8s%n", "profile", "encode s", "x realtime", "KB / min", "SSIM");
+
+        for (Result r : results) {
+            System.out.printf("%-10s %10.2f %10.1f %12d %8.4f%n",
+                    r.profile().name(), r.encodeSeconds(), r.realtimeFactor(), r.bytesPerMinute() / 1024, r.ssim());
+        }
+
+        best.ifPresentOrElse(
+                r -> System.out.printf("Recommended: video.encoding.profile=%s%n%n", r.profile().name()),
+                () -> System.out.printf("No profile meets both targets; relax them or add a profile%n%n"));
+    }
+}
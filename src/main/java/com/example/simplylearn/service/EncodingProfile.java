@@ -0,0 +1,55 @@
+package com.example.simplylearn.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One named set of libx264 settings for scene videos.
+ *
+ * Configured as "preset=veryfast crf=30 size=854x480 fps=10". Scenes are a still slide under
+ * narration, so a low frame rate and -tune stillimage cost almost nothing in quality.
+ */
+public record EncodingProfile(String name, String preset, int crf, int width, int height, int fps) {
+
+    static EncodingProfile parse(String name, String spec) {
+
+        Map<String, String> values = new HashMap<>();
+        for (String part : spec.trim().split("\\s+")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Encoding profile " + name + ": expected key=value, got '" + part + "'");
+            }
+            values.put(part.substring(0, eq), part.substring(eq + 1));
+        }
+
+        String[] size = values.getOrDefault("size", "1280x720").split("x");
+
+        return new EncodingProfile(
+                name,
+                values.getOrDefault("preset", "medium"),
+                Integer.parseInt(values.getOrDefault("crf", "23")),
+                Integer.parseInt(size[0]),
+                Integer.parseInt(size[1]),
+                Integer.parseInt(values.getOrDefault("fps", "25"))
+        );
+    }
+
+    // Video output options; the image input also gets -framerate fps (see VideoService)
+    List<String> x264Args() {
+        return List.of(
+                "-vf", "scale=" + width + ":" + height,
+                "-r", String.valueOf(fps),
+                "-c:v", "libx264",
+                "-preset", preset,
+                "-crf", String.valueOf(crf),
+                "-tune", "stillimage",
+                "-pix_fmt", "yuv420p"
+        );
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + preset + ", crf " + crf + ", " + width + "x" + height + ", " + fps + " fps)";
+    }
+}
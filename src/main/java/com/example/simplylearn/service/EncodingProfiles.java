@@ -0,0 +1,61 @@
+package com.example.simplylearn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The named encoding profiles (video.encoding.<name>) and the one videos are made with
+ * (video.encoding.profile). Pick one for this host with EncodingCalibrator.
+ */
+@Component
+public class EncodingProfiles {
+
+    private static final Logger log = LoggerFactory.getLogger(EncodingProfiles.class);
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "draft", "preset=veryfast crf=30 size=854x480 fps=10",
+            "standard", "preset=medium crf=23 size=1280x720 fps=15",
+            "archive", "preset=slow crf=18 size=1280x720 fps=25"
+    );
+
+    private final Map<String, EncodingProfile> profiles = new LinkedHashMap<>();
+    private final EncodingProfile active;
+
+    public EncodingProfiles(
+            Environment env,
+            @Value("${video.encoding.profiles:draft,standard,archive}") List<String> names,
+            @Value("${video.encoding.profile:standard}") String active
+    ) {
+        for (String name : names) {
+            String spec = env.getProperty("video.encoding." + name.trim(), DEFAULTS.getOrDefault(name.trim(), ""));
+            profiles.put(name.trim(), EncodingProfile.parse(name.trim(), spec));
+        }
+
+        this.active = get(active);
+        log.info("Video encoding profile: {}", this.active);
+    }
+
+    public EncodingProfile active() {
+        return active;
+    }
+
+    public EncodingProfile get(String name) {
+        EncodingProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown encoding profile: " + name + " (have " + profiles.keySet() + ")");
+        }
+        return profile;
+    }
+
+    public Collection<EncodingProfile> all() {
+        return profiles.values();
+    }
+}
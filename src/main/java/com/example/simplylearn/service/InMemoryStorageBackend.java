@@ -0,0 +1,59 @@
+package com.example.simplylearn.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps every object in a map. For tests and throwaway local runs; nothing survives a restart.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "memory")
+public class InMemoryStorageBackend implements StorageBackend {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, Path source) throws Exception {
+        objects.put(key, Files.readAllBytes(source));
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws Exception {
+        objects.put(key, in.readAllBytes());
+    }
+
+    @Override
+    public void download(String key, Path target) throws Exception {
+        Files.createDirectories(target.getParent());
+        Files.write(target, bytes(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws Exception {
+        return new ByteArrayInputStream(bytes(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return objects.containsKey(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        objects.remove(key);
+    }
+
+    private byte[] bytes(String key) throws FileNotFoundException {
+        byte[] bytes = objects.get(key);
+        if (bytes == null) throw new FileNotFoundException(key);
+        return bytes;
+    }
+}
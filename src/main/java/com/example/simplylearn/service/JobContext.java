@@ -0,0 +1,97 @@
+package com.example.simplylearn.service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-job state that travels with the reactive pipeline in the Reactor Context,
+ * so the shared services can attribute their work to the job that caused it.
+ */
+public class JobContext {
+
+    private final UUID jobId;
+
+    private final AtomicLong estimatedPromptTokens = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+
+    private final Map<String, Double> stageSeconds = new ConcurrentHashMap<>();
+
+    private final JobTrace trace = new JobTrace();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong ttsRequests = new AtomicLong();
+    private final AtomicLong ttsRequestsSaved = new AtomicLong();
+
+    private final TextBudget textBudget;
+
+    public JobContext(UUID jobId) {
+        this(jobId, TextBudget.unlimited());
+    }
+
+    public JobContext(UUID jobId, TextBudget textBudget) {
+        this.jobId = jobId;
+        this.textBudget = textBudget;
+    }
+
+    public UUID jobId() { return jobId; }
+
+    public JobTrace trace() { return trace; }
+
+    public TextBudget textBudget() { return textBudget; }
+
+    // ======================
+    // TOKEN USAGE
+    // ======================
+
+    public void recordEstimate(long tokens) {
+        estimatedPromptTokens.addAndGet(tokens);
+    }
+
+    public void recordUsage(long prompt, long completion) {
+        promptTokens.addAndGet(prompt);
+        completionTokens.addAndGet(completion);
+    }
+
+    public long estimatedPromptTokens() { return estimatedPromptTokens.get(); }
+    public long promptTokens() { return promptTokens.get(); }
+    public long completionTokens() { return completionTokens.get(); }
+
+    // ======================
+    // STAGE TIMINGS
+    // ======================
+
+    public void recordStage(String stage, double seconds) {
+        stageSeconds.merge(stage, seconds, Double::sum);
+    }
+
+    public Map<String, Double> stageSeconds() { return stageSeconds; }
+
+    // ======================
+    // INCREMENTAL RE-CONVERSION
+    // ======================
+
+    public void recordCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet();
+    }
+
+    public long cacheHits() { return cacheHits.get(); }
+    public long cacheMisses() { return cacheMisses.get(); }
+
+    // ======================
+    // POLLY REQUEST PACKING
+    // ======================
+
+    // parts: lines and pauses of a script, requests: what was sent for them after packing
+    public void recordTtsRequests(long parts, long requests) {
+        ttsRequests.addAndGet(requests);
+        ttsRequestsSaved.addAndGet(parts - requests);
+    }
+
+    public long ttsRequests() { return ttsRequests.get(); }
+    public long ttsRequestsSaved() { return ttsRequestsSaved.get(); }
+}
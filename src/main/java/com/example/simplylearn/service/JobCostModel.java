@@ -0,0 +1,102 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.StageRate;
+import com.example.simplylearn.repository.StageRateRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates how long a job will take from its input size and requested outputs.
+ *
+ * Each stage (extraction, material preparation, one per output type) is modelled as
+ * base seconds + seconds per KB of input. The per-KB rate starts from a default and is
+ * learned from finished jobs with an exponentially weighted moving average.
+ *
+ * Learned rates live in the stage_rate table: workers (which see job timings) update them,
+ * and every node, web nodes included, re-reads them every scheduler.cost-model-refresh, so
+ * jobs are scored with what the whole cluster learned and nothing is lost on restart.
+ */
+@Component
+public class JobCostModel {
+
+    private record StageCost(double baseSeconds, double secondsPerKb) {}
+
+    private static final double ALPHA = 0.2;
+
+    private static final Map<String, StageCost> DEFAULTS = Map.of(
+            "extract", new StageCost(0.2, 0.002),
+            "prepare", new StageCost(2, 0.01),
+            "summary", new StageCost(10, 0.05),
+            "slideshow", new StageCost(15, 0.08),
+            "podcast", new StageCost(60, 0.8),
+            "video", new StageCost(300, 3.0)
+    );
+
+    private final StageRateRepository rates;
+
+    // Last read from the table (plus this node's own updates since)
+    private final Map<String, Double> learnedRates = new ConcurrentHashMap<>();
+
+    public JobCostModel(StageRateRepository rates) {
+        this.rates = rates;
+    }
+
+    public double estimateSeconds(List<String> types, long inputBytes) {
+
+        double kb = Math.max(1, inputBytes / 1024.0);
+
+        double seconds = estimateStage("extract", kb) + estimateStage("prepare", kb);
+        for (String type : types) {
+            seconds += estimateStage(type, kb);
+        }
+        return seconds;
+    }
+
+    /**
+     * Feeds one observed stage timing back into the model.
+     */
+    public void record(String stage, long inputBytes, double seconds) {
+
+        StageCost defaults = DEFAULTS.get(stage);
+        if (defaults == null) return;
+
+        double kb = Math.max(1, inputBytes / 1024.0);
+        double observedRate = Math.max(0, seconds - defaults.baseSeconds()) / kb;
+
+        Instant now = Instant.now();
+        if (rates.blend(stage, observedRate, ALPHA, 1 - ALPHA, now) == 0) {
+            try {
+                rates.save(new StageRate(stage, observedRate, now));
+            } catch (DataIntegrityViolationException e) {
+                // Another worker recorded the first sample at the same moment
+                rates.blend(stage, observedRate, ALPHA, 1 - ALPHA, now);
+            }
+        }
+
+        rates.findById(stage).ifPresent(rate -> learnedRates.put(stage, rate.getSecondsPerKb()));
+    }
+
+    @Scheduled(fixedDelayString = "${scheduler.cost-model-refresh:30s}")
+    public void refresh() {
+        try {
+            for (StageRate rate : rates.findAll()) {
+                learnedRates.put(rate.getStage(), rate.getSecondsPerKb());
+            }
+        } catch (Exception e) {
+            // Shared DB briefly unavailable: keep scoring with what was read last
+            e.printStackTrace();
+        }
+    }
+
+    private double estimateStage(String stage, double kb) {
+        StageCost defaults = DEFAULTS.getOrDefault(stage, DEFAULTS.get("summary"));
+        double rate = learnedRates.getOrDefault(stage, defaults.secondsPerKb());
+        return defaults.baseSeconds() + rate * kb;
+    }
+}
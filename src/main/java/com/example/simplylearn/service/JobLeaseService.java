@@ -0,0 +1,105 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Row-level job leasing on the shared file_upload table.
+ *
+ * A node claims a job by locking its row (FOR UPDATE SKIP LOCKED), so two workers never
+ * take the same job, and stamps it with a lease that it renews while the job runs.
+ * A job whose lease ran out (its worker died) becomes claimable again.
+ */
+@Service
+public class JobLeaseService {
+
+    private final FileUploadRepository repo;
+    private final Duration leaseDuration;
+    private final int maxAttempts;
+
+    public JobLeaseService(
+            FileUploadRepository repo,
+            @Value("${scheduler.lease-duration:60s}") Duration leaseDuration,
+            @Value("${scheduler.max-attempts:3}") int maxAttempts
+    ) {
+        this.repo = repo;
+        this.leaseDuration = leaseDuration;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Claims up to {@code slots} jobs in schedule-key order, honouring the per-user running cap
+     * across ALL nodes. Returns the ids this node now owns.
+     */
+    @Transactional
+    public List<UUID> claim(String node, int slots, int maxJobsPerUser) {
+
+        Instant now = Instant.now();
+
+        // Over-fetch: some candidates are locked elsewhere or belong to users at their cap
+        List<UUID> candidates = repo.findClaimCandidates(now, PageRequest.of(0, slots * 4));
+        if (candidates.isEmpty()) return List.of();
+
+        List<FileUpload> locked = new ArrayList<>(repo.lockClaimable(candidates, now));
+        locked.sort((a, b) -> Double.compare(a.getScheduleKey(), b.getScheduleKey()));
+
+        Map<String, Long> runningByOwner = new HashMap<>();
+        List<UUID> claimed = new ArrayList<>();
+
+        for (FileUpload job : locked) {
+
+            if (claimed.size() >= slots) break;
+
+            // Cancelled while its previous worker was dying
+            if (job.isCancelRequested()) {
+                job.setStatus("CANCELLED");
+                job.setLeaseOwner(null);
+                job.setLeaseExpiresAt(null);
+                continue;
+            }
+
+            // Keeps failing (e.g. crashes its worker): stop re-leasing it
+            if (job.getAttempts() >= maxAttempts) {
+                job.setStatus("FAILED");
+                job.setLeaseOwner(null);
+                job.setLeaseExpiresAt(null);
+                continue;
+            }
+
+            // Only live leases count: a dead worker's jobs must not keep their owner at the cap
+            String owner = job.getOwner() == null ? "anonymous" : job.getOwner();
+            long running = runningByOwner.computeIfAbsent(owner, o -> repo.countLiveLeases(o, now));
+
+            if (running >= maxJobsPerUser) continue;
+
+            job.setStatus("PROCESSING");
+            job.setLeaseOwner(node);
+            job.setLeaseExpiresAt(now.plus(leaseDuration));
+            job.setAttempts(job.getAttempts() + 1);
+
+            runningByOwner.put(owner, running + 1);
+            claimed.add(job.getId());
+        }
+
+        return claimed;
+    }
+
+    @Transactional
+    public void renew(String node, Collection<UUID> jobIds) {
+        if (jobIds.isEmpty()) return;
+        repo.renewLeases(node, jobIds, Instant.now().plus(leaseDuration));
+    }
+}
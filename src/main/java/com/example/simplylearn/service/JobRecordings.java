@@ -0,0 +1,85 @@
+package com.example.simplylearn.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-demand flight recordings scoped to ONE job: started when the job starts (or at once if it
+ * is already running here), dumped next to its outputs when it ends.
+ *
+ * JFR records the whole JVM, so jobs running alongside show up too; the pipeline events
+ * (see PipelineEvents) carry the job id to filter on. Uses the "profile" settings (method
+ * sampling every 10 ms, allocation samples) unless jfr.job-settings names another.
+ */
+@Component
+public class JobRecordings {
+
+    private static final Logger log = LoggerFactory.getLogger(JobRecordings.class);
+
+    private final StorageService storageService;
+
+    private final String settings;
+    private final Duration maxDuration;
+
+    private final Map<UUID, Recording> recordings = new ConcurrentHashMap<>();
+
+    public JobRecordings(
+            StorageService storageService,
+            @Value("${jfr.job-settings:profile}") String settings,
+            @Value("${jfr.job-max-duration:2h}") Duration maxDuration
+    ) {
+        this.storageService = storageService;
+        this.settings = settings;
+        this.maxDuration = maxDuration;
+    }
+
+    public void start(UUID jobId) throws Exception {
+
+        if (recordings.containsKey(jobId)) return;
+
+        Recording recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("job-" + jobId);
+        recording.setToDisk(true);
+        // A stuck job must not record forever
+        recording.setDuration(maxDuration);
+        recording.start();
+
+        recordings.put(jobId, recording);
+        log.info("JFR: recording job {} ({} settings)", jobId, settings);
+    }
+
+    public boolean isRecording(UUID jobId) {
+        return recordings.containsKey(jobId);
+    }
+
+    /**
+     * Stops the job's recording and publishes it as a converted file; null when none was running.
+     */
+    public String stop(UUID jobId) throws Exception {
+
+        Recording recording = recordings.remove(jobId);
+        if (recording == null) return null;
+
+        String filename = jobId + ".jfr";
+        Path file = storageService.resolveConverted(filename);
+
+        try (recording) {
+            recording.dump(file);
+        }
+
+        storageService.publishConverted(filename);
+        log.info("JFR: job {} recorded to {}", jobId, file);
+
+        return filename;
+    }
+}
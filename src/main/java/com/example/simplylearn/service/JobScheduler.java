@@ -0,0 +1,229 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shortest-expected-job-first dispatch of conversions onto a fixed number of job slots.
+ *
+ * Every job gets a virtual deadline when it is queued:
+ *
+ *   scheduleKey = enqueue time + costWeight * estimated seconds + fairnessWeight * owner's backlog
+ *
+ * and the lowest key runs next. Cheap jobs jump ahead of expensive ones, but only by their
+ * cost difference, so a long job is overtaken for a bounded time and then ages to the front.
+ * The owner's backlog term plus a per-user running cap stop one heavy uploader from taking
+ * every slot.
+ *
+ * The queue lives in the database, so the web tier and any number of worker JVMs can share it:
+ * web nodes (app.role=web) only enqueue, worker nodes (app.role=worker) only claim, and the
+ * default single-JVM setup (app.role=all) does both. Claims are leased through JobLeaseService.
+ */
+@Service
+public class JobScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(JobScheduler.class);
+
+    private final FileUploadRepository repo;
+    private final ConversionService conversionService;
+    private final JobCostModel costModel;
+    private final JobLeaseService leases;
+
+    private final boolean runsJobs;
+    private final String nodeId;
+    private final int maxConcurrentJobs;
+    private final int maxJobsPerUser;
+    private final double costWeight;
+    private final double fairnessWeight;
+    private final Duration strandedAfter;
+
+    // Jobs leased by THIS node
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+    public JobScheduler(
+            FileUploadRepository repo,
+            ConversionService conversionService,
+            JobCostModel costModel,
+            JobLeaseService leases,
+            @Value("${app.role:all}") String role,
+            @Value("${scheduler.node-id:}") String nodeId,
+            @Value("${scheduler.max-concurrent-jobs:4}") int maxConcurrentJobs,
+            @Value("${scheduler.max-jobs-per-user:2}") int maxJobsPerUser,
+            @Value("${scheduler.cost-weight:1.0}") double costWeight,
+            @Value("${scheduler.fairness-weight:0.5}") double fairnessWeight,
+            @Value("${scheduler.stranded-after:2m}") Duration strandedAfter
+    ) {
+        this.repo = repo;
+        this.conversionService = conversionService;
+        this.costModel = costModel;
+        this.leases = leases;
+        this.runsJobs = !"web".equalsIgnoreCase(role);
+        // RuntimeMXBean name is "pid@hostname": unique per JVM, readable in the table
+        this.nodeId = nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.maxJobsPerUser = maxJobsPerUser;
+        this.costWeight = costWeight;
+        this.fairnessWeight = fairnessWeight;
+        this.strandedAfter = strandedAfter;
+    }
+
+    public void submit(FileUpload upload) {
+        submitAll(List.of(upload));
+    }
+
+    /**
+     * Submits off the caller's thread, for request handlers that answer as soon as the upload is
+     * stored. A submission lost with its node is picked up by {@link #resubmitStranded}.
+     */
+    public void submitLater(FileUpload upload) {
+        Blocking.run(() -> submit(upload))
+                .subscribe(null, e -> log.warn("Queueing upload {} failed; resubmitStranded retries it", upload.getId(), e));
+    }
+
+    /**
+     * Queues several jobs and dispatches once. Within the batch each job adds to its owner's
+     * backlog, so a bulk upload is interleaved with other users' work instead of jumping ahead
+     * of it as a block.
+     *
+     * Uploads already stored are only queued while still UPLOADED, in one conditional update
+     * each: the caller's copy may be stale, and writing it back could reset a job a worker
+     * already claimed. Returns how many jobs were actually queued.
+     */
+    public int submitAll(List<FileUpload> uploads) {
+
+        double now = System.currentTimeMillis() / 1000.0;
+        Map<String, Double> backlogs = new HashMap<>();
+
+        List<FileUpload> created = new ArrayList<>();
+        int queued = 0;
+
+        for (FileUpload upload : uploads) {
+
+            double cost = costModel.estimateSeconds(upload.getConversionTypes(), upload.getInputBytes());
+            String owner = upload.getOwner() == null ? "anonymous" : upload.getOwner();
+
+            double backlog = backlogs.computeIfAbsent(owner, repo::backlogSeconds);
+            double key = now + costWeight * cost + fairnessWeight * backlog;
+
+            if (upload.getId() == null) {
+                created.add(upload);
+            } else if (repo.queueIfUploaded(upload.getId(), cost, key) == 0) {
+                continue; // queued by someone else, or already running
+            }
+
+            backlogs.put(owner, backlog + cost);
+            queued++;
+
+            upload.setEstimatedCostSeconds(cost);
+            upload.setScheduleKey(key);
+            upload.setStatus("QUEUED");
+        }
+
+        // New rows nobody else can have seen yet
+        repo.saveAll(created);
+
+        if (runsJobs && queued > 0) dispatch();
+
+        return queued;
+    }
+
+    // ======================
+    // WORKER SIDE
+    // ======================
+
+    // Picks up jobs submitted on other nodes and jobs whose worker died,
+    // and cancellations requested through another node
+    @Scheduled(fixedDelayString = "${scheduler.poll-interval:2s}")
+    public void poll() {
+
+        if (!runsJobs) return;
+
+        if (!running.isEmpty()) {
+            repo.findCancelRequested(Set.copyOf(running)).forEach(conversionService::cancel);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Cancels a job wherever it is: a queued job simply never runs, a job running here is
+     * aborted at once, and a job on another node is flagged for that node's next poll.
+     */
+    public void cancel(UUID id) {
+
+        if (repo.cancelIfNotStarted(id) > 0) return;
+
+        if (!conversionService.cancel(id)) {
+            repo.requestCancel(id);
+        }
+    }
+
+    // Stored but never queued (the node died between answering the upload and submitting it)
+    @Scheduled(fixedDelayString = "${scheduler.resubmit-interval:1m}")
+    public void resubmitStranded() {
+
+        Instant cutoff = Instant.now().minus(strandedAfter);
+        List<FileUpload> stranded = repo.findByStatusAndUploadedAtBefore("UPLOADED", cutoff);
+
+        if (stranded.isEmpty()) return;
+
+        int queued = submitAll(stranded);
+        if (queued > 0) log.info("Resubmitted {} stranded upload(s)", queued);
+    }
+
+    @Scheduled(fixedDelayString = "${scheduler.lease-renew-interval:20s}")
+    public void renewLeases() {
+        if (!running.isEmpty()) leases.renew(nodeId, Set.copyOf(running));
+    }
+
+    private synchronized void dispatch() {
+
+        int free = maxConcurrentJobs - running.size();
+        if (free <= 0) return;
+
+        List<UUID> claimed;
+        try {
+            claimed = leases.claim(nodeId, free, maxJobsPerUser);
+        } catch (Exception e) {
+            // Shared DB briefly unavailable: the next poll tries again
+            e.printStackTrace();
+            return;
+        }
+
+        for (UUID id : claimed) {
+            running.add(id);
+            conversionService.run(id)
+                    .doFinally(signal -> finished(id))
+                    .subscribe();
+        }
+    }
+
+    private void finished(UUID id) {
+        running.remove(id);
+        dispatch();
+    }
+
+    public int queuedCount() {
+        return (int) repo.countByStatus("QUEUED");
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.simplylearn.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Span tree of ONE job: every stage, LLM call, Polly line / pause, ffmpeg encode and concat,
+ * with start/end offsets (ms since the job started) and sizes.
+ *
+ * Spans are opened with {@link #span}; the parent is whatever span encloses the call in the
+ * Reactor Context, so concurrent work (parallel sections, Polly lines in flight) nests correctly
+ * and gaps between siblings show where the pipeline is serialized.
+ */
+public class JobTrace {
+
+    public record Span(
+            int id,
+            Integer parentId,
+            String name,
+            long startMs,
+            Long endMs,
+            String status,
+            Map<String, Object> attributes
+    ) {}
+
+    /**
+     * One waterfall row: the span plus its depth and its bar position in percent of the job.
+     */
+    public record Row(Span span, int depth, double leftPercent, double widthPercent) {
+
+        public long durationMs() {
+            return span.endMs() == null ? 0 : span.endMs() - span.startMs();
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String PARENT = "jobTrace.parent";
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, Span> spans = new ConcurrentHashMap<>();
+
+    // ======================
+    // RECORDING
+    // ======================
+
+    public static <T> Mono<T> span(String name, Mono<T> work) {
+        return span(name, new ConcurrentHashMap<>(), work);
+    }
+
+    /**
+     * Runs {@code work} inside a span. {@code attributes} may still be filled in by the work
+     * itself (e.g. tokens billed); byte[] / String results record their size automatically.
+     */
+    public static <T> Mono<T> span(String name, Map<String, Object> attributes, Mono<T> work) {
+        return Mono.deferContextual(ctx -> {
+
+            JobContext job = ctx.getOrDefault(JobContext.class, null);
+            if (job == null) return work;
+
+            JobTrace trace = job.trace();
+            Integer parent = ctx.getOrDefault(PARENT, null);
+            int id = trace.open(parent, name, attributes);
+
+            return work
+                    .doOnNext(result -> {
+                        if (result instanceof byte[] bytes) attributes.put("bytes", bytes.length);
+                        if (result instanceof String text) attributes.put("chars", text.length());
+                    })
+                    .doOnError(e -> attributes.put("error", String.valueOf(e.getMessage())))
+                    .doFinally(signal -> trace.close(id, signal.name()))
+                    .contextWrite(c -> c.put(PARENT, id));
+        });
+    }
+
+    private int open(Integer parent, String name, Map<String, Object> attributes) {
+        int id = ids.incrementAndGet();
+        spans.put(id, new Span(id, parent, name, elapsedMs(), null, "RUNNING", attributes));
+        return id;
+    }
+
+    private void close(int id, String signal) {
+        spans.computeIfPresent(id, (key, open) -> new Span(open.id(), open.parentId(), open.name(),
+                open.startMs(), elapsedMs(), status(signal, open.attributes()), open.attributes()));
+    }
+
+    private static String status(String signal, Map<String, Object> attributes) {
+        if (signal.equals("CANCEL")) return "CANCELLED";
+        return attributes.containsKey("error") ? "FAILED" : "OK";
+    }
+
+    private long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // ======================
+    // OUTPUT
+    // ======================
+
+    public String toJson() {
+        try {
+            List<Span> ordered = new ArrayList<>(spans.values());
+            ordered.sort(Comparator.comparingInt(Span::id));
+            return JSON.writeValueAsString(ordered);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static List<Span> fromJson(String json) {
+        try {
+            return JSON.readValue(json, new TypeReference<List<Span>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Depth-first rows (children ordered by start time) for the waterfall view.
+     */
+    public static List<Row> waterfall(List<Span> spans) {
+
+        long end = spans.stream()
+                .mapToLong(s -> s.endMs() == null ? s.startMs() : s.endMs())
+                .max().orElse(0);
+        double total = Math.max(1, end);
+
+        Map<Integer, List<Span>> children = new ConcurrentHashMap<>();
+        List<Span> roots = new ArrayList<>();
+
+        for (Span span : spans) {
+            if (span.parentId() == null) roots.add(span);
+            else children.computeIfAbsent(span.parentId(), k -> new ArrayList<>()).add(span);
+        }
+
+        List<Row> rows = new ArrayList<>();
+        addRows(roots, 0, children, total, rows);
+        return rows;
+    }
+
+    private static void addRows(List<Span> level, int depth, Map<Integer, List<Span>> children,
+                                double total, List<Row> rows) {
+
+        level.sort(Comparator.comparingLong(Span::startMs).thenComparingInt(Span::id));
+
+        for (Span span : level) {
+            long endMs = span.endMs() == null ? span.startMs() : span.endMs();
+            rows.add(new Row(span, depth,
+                    span.startMs() * 100 / total,
+                    Math.max(0.3, (endMs - span.startMs()) * 100 / total)));
+
+            addRows(children.getOrDefault(span.id(), new ArrayList<>()), depth + 1, children, total, rows);
+        }
+    }
+}
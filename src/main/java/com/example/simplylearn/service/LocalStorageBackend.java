@@ -0,0 +1,71 @@
+package com.example.simplylearn.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Files under storage.root on local (or network-mounted) disk. The default backend.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    public LocalStorageBackend(@Value("${storage.root:/tmp}") String root) {
+        this.root = Path.of(root);
+    }
+
+    @Override
+    public void put(String key, Path source) throws Exception {
+        Path target = localPath(key);
+        if (source.toAbsolutePath().equals(target.toAbsolutePath())) return;
+
+        Files.createDirectories(target.getParent());
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws Exception {
+        Path target = localPath(key);
+        Files.createDirectories(target.getParent());
+        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void download(String key, Path target) throws Exception {
+        Path source = localPath(key);
+        if (!Files.exists(source)) throw new FileNotFoundException(key);
+        if (source.toAbsolutePath().equals(target.toAbsolutePath())) return;
+
+        Files.createDirectories(target.getParent());
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public InputStream open(String key) throws Exception {
+        return Files.newInputStream(localPath(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(localPath(key));
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+        Files.deleteIfExists(localPath(key));
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return root.resolve(key);
+    }
+}
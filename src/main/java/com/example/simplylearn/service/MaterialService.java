@@ -0,0 +1,240 @@
+package com.example.simplylearn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Decides what each generator sees, and runs the generators over it.
+ *
+ * - small input, one output:  the raw text
+ * - small input, many outputs: one shared outline of the raw text
+ * - large input:              a BM25 passage index; the outline is built from a compact digest,
+ *                             then every section is generated from only its top-k passages
+ *
+ * Every LLM result (outline, each generated document) is memoized in ChunkCache by a hash of its
+ * input, so converting the same material again costs no calls; audio lines and video scenes are
+ * memoized further down (PollyService, VideoService), so an edited upload only re-synthesizes and
+ * re-renders what its new script changed.
+ *
+ * Generators answer in JSON (StructuredOutput). Each section's response is validated item by item;
+ * invalid items are re-requested on their own and a cut-off response is continued from its last
+ * complete item, so one bad slide never costs the whole generation again.
+ */
+@Service
+public class MaterialService {
+
+    private static final Logger log = LoggerFactory.getLogger(MaterialService.class);
+
+    private final OpenAIService openAIService;
+    private final TokenEstimator tokens;
+    private final ChunkCache cache;
+
+    private final int minCorpusTokens;
+    private final int passageWords;
+    private final int topK;
+    private final int digestChars;
+    private final int sectionConcurrency;
+    private final int repairAttempts;
+
+    public MaterialService(
+            OpenAIService openAIService,
+            TokenEstimator tokens,
+            ChunkCache cache,
+            @Value("${retrieval.min-corpus-tokens:12000}") int minCorpusTokens,
+            @Value("${retrieval.passage-words:180}") int passageWords,
+            @Value("${retrieval.top-k:6}") int topK,
+            @Value("${retrieval.digest-chars:40000}") int digestChars,
+            @Value("${retrieval.section-concurrency:4}") int sectionConcurrency,
+            @Value("${generation.repair-attempts:3}") int repairAttempts
+    ) {
+        this.openAIService = openAIService;
+        this.tokens = tokens;
+        this.cache = cache;
+        this.minCorpusTokens = minCorpusTokens;
+        this.passageWords = passageWords;
+        this.topK = topK;
+        this.digestChars = digestChars;
+        this.sectionConcurrency = sectionConcurrency;
+        this.repairAttempts = repairAttempts;
+    }
+
+    // ======================
+    // PHASE 1: OUTLINE
+    // ======================
+    public Mono<StudyMaterial> prepare(SourceText source, List<String> types) {
+
+        TextBudget budget = source.budget();
+
+        if (isLarge(source)) {
+
+            // The paragraphs are released as the index takes them in
+            PassageIndex index = PassageIndex.build(source.drain(), passageWords);
+            long indexChars = index.chars();
+            budget.retain(indexChars);
+
+            String digest = index.digest(digestChars);
+
+            return outline(digest)
+                    .map(outline -> {
+                        List<CourseOutline.Section> sections = CourseOutline.parse(outline);
+
+                        // Model ignored the format: generate from the outline as one block
+                        if (sections.isEmpty()) return StudyMaterial.whole(outline);
+
+                        return StudyMaterial.sectioned(sections.stream()
+                                .map(section -> new StudyMaterial.Section(
+                                        section.title(), retrieve(section, index)))
+                                .toList());
+                    })
+                    .map(material -> settle(source, indexChars, material));
+        }
+
+        // Small by now (under minCorpusTokens), so one String is fine
+        String text = source.join();
+        budget.retain(text.length());
+
+        // One generation over the whole text keeps the output coherent (one summary, one deck)
+        Mono<StudyMaterial> material = types.size() > 1
+                ? outline(text).map(StudyMaterial::whole)
+                : Mono.just(StudyMaterial.whole(text));
+
+        return material.map(prepared -> settle(source, text.length(), prepared));
+    }
+
+    // Counts only until the threshold: a large upload is never tokenized whole
+    private boolean isLarge(SourceText source) {
+        long count = 0;
+        for (String paragraph : source.paragraphs()) {
+            count += tokens.count(paragraph);
+            if (count >= minCorpusTokens) return true;
+        }
+        return false;
+    }
+
+    // The prepared material is what the job holds from here on, instead of the text it came from
+    private static StudyMaterial settle(SourceText source, long intermediateChars, StudyMaterial material) {
+        source.budget().release(intermediateChars);
+        source.budget().retain(material.chars());
+        source.release();
+        return material;
+    }
+
+    private Mono<String> outline(String text) {
+        return cache.text("outline", ChunkCache.key(text), () -> openAIService.createOutline(text));
+    }
+
+    private String retrieve(CourseOutline.Section section, PassageIndex index) {
+
+        String query = section.title() + " " + String.join(" ", section.points());
+
+        StringBuilder material = new StringBuilder()
+                .append("Section: ").append(section.title()).append("\n");
+
+        for (String point : section.points()) {
+            material.append("- ").append(point).append("\n");
+        }
+
+        material.append("\nSource passages:\n\n");
+
+        for (PassageIndex.Passage passage : index.search(query, topK)) {
+            material.append(passage.text()).append("\n\n");
+        }
+
+        return material.toString().trim();
+    }
+
+    // ======================
+    // PHASE 2: GENERATE
+    // ======================
+    public Mono<StructuredOutput.Document> generate(String type, StudyMaterial material) {
+
+        if (!material.isSectioned()) {
+            return generateSection(type, material.text(), null);
+        }
+
+        return Flux.fromIterable(material.sections())
+                .flatMapSequential(section -> generateSection(type, section.text(), section.title()),
+                        sectionConcurrency)
+                .collectList()
+                .map(parts -> StructuredOutput.Document.merge(type, parts));
+    }
+
+    // Only validated (or repaired) output is cached
+    private Mono<StructuredOutput.Document> generateSection(String type, String text, String section) {
+
+        String key = section == null ? ChunkCache.key(text) : ChunkCache.key(section, text);
+
+        return cache.text("structured-" + type, key, () -> openAIService.generate(type, text, section)
+                        .map(json -> StructuredOutput.parse(type, json))
+                        .flatMap(document -> repair(type, text, section, document, repairAttempts))
+                        .map(StructuredOutput.Document::toJson))
+                .map(json -> StructuredOutput.parse(type, json));
+    }
+
+    // ======================
+    // VALIDATION + REPAIR
+    // ======================
+    private Mono<StructuredOutput.Document> repair(
+            String type, String text, String section, StructuredOutput.Document document, int attemptsLeft) {
+
+        if (document.isValid()) return Mono.just(document);
+
+        if (attemptsLeft == 0) {
+            return usable(type, section, document);
+        }
+
+        List<Integer> invalid = document.invalidItems();
+        Mono<StructuredOutput.Document> next;
+
+        if (!invalid.isEmpty()) {
+            // Broken items: ask for replacements of just those
+            List<String> described = invalid.stream()
+                    .map(index -> describe(index, document.items().get(index)))
+                    .toList();
+
+            next = openAIService.repairItems(type, text, section, described)
+                    .map(json -> document.replace(invalid, StructuredOutput.parseRepair(type, json)));
+        } else {
+            // Cut off (or empty): ask only for what comes after the last complete item
+            List<String> written = document.items().stream()
+                    .map(StructuredOutput.Item::label)
+                    .toList();
+
+            next = openAIService.continueItems(type, text, section, written)
+                    .map(json -> document.append(StructuredOutput.parse(type, json)));
+        }
+
+        log.info("Repairing {}{}: {} invalid item(s), {}", type,
+                section == null ? "" : " / " + section, invalid.size(),
+                document.complete() ? "complete" : "cut off after " + document.items().size() + " item(s)");
+
+        return next.flatMap(repaired -> repair(type, text, section, repaired, attemptsLeft - 1));
+    }
+
+    // Out of attempts: keep the good items, fail only when nothing is left
+    private static Mono<StructuredOutput.Document> usable(
+            String type, String section, StructuredOutput.Document document) {
+
+        StructuredOutput.Document kept = document.withoutInvalid();
+
+        if (kept.items().isEmpty()) {
+            return Mono.error(new IllegalStateException("The " + type + " generator returned no usable "
+                    + StructuredOutput.arrayField(type) + (section == null ? "" : " for section '" + section + "'")));
+        }
+
+        log.warn("Dropped {} invalid {} item(s) after {} repair",
+                document.items().size() - kept.items().size(), type, section == null ? "whole" : section);
+        return Mono.just(kept);
+    }
+
+    private static String describe(int index, StructuredOutput.Item item) {
+        return "Item " + (index + 1) + ": " + StructuredOutput.toJson(item)
+                + "\nProblems:\n- " + String.join("\n- ", item.problems());
+    }
+}
@@ -3,64 +3,210 @@ package com.example.simplylearn.service;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class OpenAIService {
 
-    private final WebClient webClient;
+    private final ProviderLimits limits;
+    private final TokenEstimator tokens;
+    private final PromptBudgets budgets;
 
-    public OpenAIService(@Value("${openai.api.key}") String apiKey) {
+    private final String apiKey;
+    private final int maxConnections;
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    private final boolean keepAlive;
+    private final Duration responseTimeout;
 
-        this.webClient = WebClient.builder()
-                .baseUrl("https://api.openai.com/v1")
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    // Built on first use (or by StartupWarmup), not while the context starts
+    private volatile HttpClient httpClient;
+    private volatile WebClient webClient;
+
+    public OpenAIService(
+            ProviderLimits limits,
+            TokenEstimator tokens,
+            PromptBudgets budgets,
+            @Value("${openai.api.key}") String apiKey,
+            @Value("${openai.http.max-connections:50}") int maxConnections,
+            @Value("${openai.http.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${openai.http.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${openai.http.keep-alive:true}") boolean keepAlive,
+            @Value("${openai.http.response-timeout:180s}") Duration responseTimeout
+    ) {
+
+        this.limits = limits;
+        this.tokens = tokens;
+        this.budgets = budgets;
+        this.apiKey = apiKey;
+        this.maxConnections = maxConnections;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.keepAlive = keepAlive;
+        this.responseTimeout = responseTimeout;
+    }
+
+    private WebClient webClient() {
+
+        WebClient client = webClient;
+        if (client != null) return client;
+
+        synchronized (this) {
+            if (webClient != null) return webClient;
+
+            // Pooled keep-alive connections, shared by every job (no thread per request)
+            ConnectionProvider pool = ConnectionProvider.builder("openai")
+                    .maxConnections(maxConnections)
+                    .maxIdleTime(maxIdleTime)
+                    .maxLifeTime(maxLifeTime)
+                    .evictInBackground(maxIdleTime)
+                    .build();
+
+            httpClient = HttpClient.create(pool)
+                    .keepAlive(keepAlive)
+                    .responseTimeout(responseTimeout);
+
+            webClient = WebClient.builder()
+                    .baseUrl("https://api.openai.com/v1")
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                    .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .build();
+
+            return webClient;
+        }
+    }
+
+    /**
+     * Builds the client and pre-initializes Netty's event loops, DNS resolver and TLS,
+     * so the first job doesn't pay for them.
+     */
+    public Mono<Void> warmUp() {
+        return Mono.defer(() -> {
+            webClient();
+            return httpClient.warmup();
+        });
+    }
+
+    // ======================
+    // DISPATCH BY CONVERSION TYPE
+    // ======================
+
+    /**
+     * Returns the generator's JSON (see StructuredOutput for the shape per type).
+     *
+     * @param section when set, the material is ONE outline section (title + retrieved passages)
+     *                and the output is scoped to just that part of the course
+     */
+    public Mono<String> generate(String type, String material, String section) {
+        return switch (type) {
+            case "summary" -> createSummary(material, section);
+            case "podcast" -> createPodcastScript(material, section);
+            case "slideshow" -> createSlideshowOutline(material, section);
+            case "video" -> createVideoScript(material, section);
+            default -> Mono.error(new UnsupportedOperationException(
+                    "Unsupported conversion type: " + type
+            ));
+        };
+    }
+
+    // ======================
+    // SHARED OUTLINE (MULTI-OUTPUT)
+    // ======================
+    public Mono<String> createOutline(String inputText) {
+
+        String prompt = """
+                You are a teacher preparing study material that will later be turned into
+                several formats (summary, podcast, slideshow, video).
+
+                Convert the study material below into ONE structured outline that keeps
+                everything needed to teach it: key concepts, definitions, facts, numbers and examples.
+
+                STRICT RULES:
+                - Split the material into sections, one major topic per section
+                - Each section has a short, clear title
+                - Under each section, list the key points as short bullets
+                - Keep important details; drop filler, repetition and formatting noise
+                - No commentary before or after the outline
+
+                REQUIRED FORMAT (FOLLOW EXACTLY):
+
+                Section 1: Title here
+                - Key point
+                - Key point
+
+                Section 2: Title here
+                - Key point
+                - Key point
+
+                Study material:
+
+
+
+                """;
+
+        return runChat("outline", prompt, inputText, null, null);
     }
 
     // ======================
     // TEXT SUMMARY
     // ======================
-    public String createSummary(String inputText) {
+    public Mono<String> createSummary(String inputText) {
+        return createSummary(inputText, null);
+    }
+
+    public Mono<String> createSummary(String inputText, String section) {
 
         String prompt = """
                 Summarize the following study materials clearly and concisely.
                 Focus on key concepts and important takeaways.
 
+                Respond with JSON: "paragraphs" is the summary, one short paragraph per item ("text").
+
                 Materials:
-                """ + inputText;
+                """;
 
-        return runChat(prompt);
+        return runChat("summary", prompt, inputText, section, StructuredOutput.responseFormat("summary"));
     }
 
     // ======================
     // PODCAST SCRIPT (TWO SPEAKERS)
     // ======================
-    public String createPodcastScript(String inputText) {
+    public Mono<String> createPodcastScript(String inputText) {
+        return createPodcastScript(inputText, null);
+    }
+
+    public Mono<String> createPodcastScript(String inputText, String section) {
 
         String prompt = """
                 You are an educational podcast writer.
                 
                 Create a spoken, TWO-SPEAKER podcast script based on the study material below.
                 
-                STRICT FORMAT RULES (you MUST follow these exactly):
-                - Every spoken line MUST start with either "A:" or "B:"
+                Respond with JSON: "segments" holds one item per major topic, in order; each
+                segment's "lines" are the spoken lines of that topic.
+                
+                STRICT RULES (you MUST follow these exactly):
+                - Every line has "speaker" "A" or "B" and the spoken words in "text"
                 - Speakers A and B should alternate naturally, like a real conversation
                 - Write in clear, natural spoken English
                 - Use normal punctuation (commas, periods, question marks)
                 - Each line should be one speaker talking (no long paragraphs)
-                - When transitioning to a NEW MAJOR TOPIC or SECTION, insert the token [[SECTION_BREAK]] on its own line
-                - Do NOT insert [[SECTION_BREAK]] inside a sentence
+                - Start a new segment when transitioning to a NEW MAJOR TOPIC
                 - Do NOT include stage directions (no "intro music", "host", "your name", etc.)
                 - Do NOT label sections or topics
-                - Do NOT explain that breaks exist
-                - Do NOT mention speaker names beyond "A:" and "B:"
-                - Do NOT include anything except the spoken dialogue and [[SECTION_BREAK]]
+                - Do NOT mention speaker names
                 
                 STYLE & TONE:
                 - Calm, professional, and engaging
@@ -77,24 +223,30 @@ public class OpenAIService {
                 
                 
                 
-                """ + inputText;
+                """;
 
-        return runChat(prompt);
+        return runChat("podcast", prompt, inputText, section, StructuredOutput.responseFormat("podcast"));
     }
 
     // ======================
     // SLIDESHOW OUTLINE
     // ======================
-    public String createSlideshowOutline(String inputText) {
+    public Mono<String> createSlideshowOutline(String inputText) {
+        return createSlideshowOutline(inputText, null);
+    }
+
+    public Mono<String> createSlideshowOutline(String inputText, String section) {
 
         String prompt = """
                 You are a teacher creating a slideshow for students.
                 
                 Convert the study material below into a slideshow outline.
                 
+                Respond with JSON: "slides" holds the slides in order.
+                
                 STRICT RULES:
-                - Each slide must have a short, clear title
-                - Bullet points must be short and student-friendly
+                - Each slide must have a short, clear "title"
+                - "bullets" must be short and student-friendly
                 - No paragraphs
                 - No extra commentary
                 - Do not repeat ideas across slides
@@ -102,51 +254,42 @@ public class OpenAIService {
                 LENIENT RULES:
                 - Have around 4 bullets per slide (strictly between 3 and 5)
                 - Create enough slides to cover all key concepts (aim for 5–10 slides, but more or fewer is acceptable)
-                - For each slide, also provide a short visual description suitable for an illustration.
-                
-                REQUIRED FORMAT (VERY IMPORTANT — FOLLOW EXACTLY):
-                
-                Slide 1: Title here
-                - Bullet 1
-                - Bullet 2
-                - Bullet 3
-                - Bullet 4
-                Image: short description of an illustration
-                
-                Slide 2: Title here
-                - Bullet 1
-                - Bullet 2
-                - Bullet 3
-                - Bullet 4
-                Image: short description of an illustration
+                - "image" is a short visual description suitable for an illustration of the slide
                 
                 Study material:
                 
                 
                 
-                """ + inputText;
+                """;
 
-        return runChat(prompt);
+        return runChat("slideshow", prompt, inputText, section, StructuredOutput.responseFormat("slideshow"));
     }
 
     // ======================
     // 🎬 VIDEO SCRIPT (NEW)
     // ======================
-    public String createVideoScript(String inputText) {
+    public Mono<String> createVideoScript(String inputText) {
+        return createVideoScript(inputText, null);
+    }
+
+    public Mono<String> createVideoScript(String inputText, String section) {
 
         String prompt = """
                 You are an educational video script writer.
                 
                 Convert the study material below into a video narration script.
                 
+                Respond with JSON: "scenes" holds the scenes in order. Each scene has the spoken
+                "narration" for that scene and an "illustration": a short description of the
+                picture shown while it is spoken.
+                
                 STRICT RULES:
                 - One speaker only
                 - Write in clear, natural spoken English
                 - No stage directions
-                - No titles or labels
-                - Do NOT mention visuals explicitly
-                - Insert [[SCENE_BREAK]] on its own line when the visual scene should change
-                - Do NOT insert [[SCENE_BREAK]] inside a sentence
+                - No titles or labels in the narration
+                - Do NOT mention visuals explicitly in the narration
+                - Start a new scene when the visual scene should change
                 - Each scene should explain ONE clear idea
                 
                 STYLE & TONE:
@@ -159,17 +302,97 @@ public class OpenAIService {
                 
                 
                 
-                """ + inputText;
+                """;
+
+        return runChat("video", prompt, inputText, section, StructuredOutput.responseFormat("video"));
+    }
+
+    // ======================
+    // REPAIR (see MaterialService)
+    // ======================
+
+    /**
+     * Re-requests ONLY the listed items of an earlier response; returns {"items": [...]}
+     * with one replacement per listed item, in the same order.
+     *
+     * @param invalidItems one entry per item: its current JSON and what is wrong with it
+     */
+    public Mono<String> repairItems(String type, String material, String section, List<String> invalidItems) {
+
+        String prompt = """
+                You generated a %s from the study material below as JSON, but some of its
+                items are invalid.
+
+                Return "items": one corrected replacement for EACH item listed here, in the
+                same order. Keep each item's topic and wording where possible; fix only the
+                listed problems.
+
+                %s
+
+                Study material:
+
+
+
+                """.formatted(type, String.join("\n\n", invalidItems));
+
+        return runChat("repair", prompt, material, section, StructuredOutput.repairFormat(type));
+    }
+
+    /**
+     * Asks for the items after the ones already received, when a response was cut off
+     * (or came back empty). Same JSON shape as {@link #generate}.
+     */
+    public Mono<String> continueItems(String type, String material, String section, List<String> written) {
+
+        String done = written.isEmpty()
+                ? "(none)"
+                : String.join("\n", written.stream().map(label -> "- " + label).toList());
+
+        String prompt = """
+                You are generating a %s from the study material below as JSON. The previous
+                response was cut off, so only these %s were received:
+
+                %s
+
+                Continue with the REMAINING %s only, in the same order and style. Do not repeat
+                the ones above, and keep each one concise.
 
-        return runChat(prompt);
+                Study material:
+
+
+
+                """.formatted(type, StructuredOutput.arrayField(type), done, StructuredOutput.arrayField(type));
+
+        return runChat(type, prompt, material, section, StructuredOutput.responseFormat(type));
     }
 
     // ======================
     // CORE CHAT METHOD
     // ======================
-    private String runChat(String prompt) {
 
-        Map<String, Object> body = Map.of(
+    /**
+     * Compacts the material, trims it to the generator's prompt budget, sizes max_tokens
+     * from the expected output, and records estimated vs actual usage on the job.
+     *
+     * @param responseFormat a json_schema response format (StructuredOutput), or null for free text
+     */
+    private Mono<String> runChat(String kind, String instructions, String inputText, String section,
+                                 Map<String, Object> responseFormat) {
+
+        PromptBudgets.Budget budget = budgets.budget(kind);
+
+        String scope = section == null ? "" : scopeInstructions(kind, section);
+
+        String material = PromptCompactor.compact(inputText);
+        int materialBudget = budget.inputTokens() - tokens.countMessage(instructions + scope);
+        material = tokens.truncate(material, materialBudget);
+
+        String prompt = instructions + material + scope;
+
+        int promptTokens = tokens.countMessage(prompt);
+        int maxTokens = budgets.maxOutputTokens(kind, tokens.count(material));
+
+        Map<String, Object> body = new LinkedHashMap<>(Map.of(
                 "model", "gpt-4o-mini",
                 "messages", List.of(
                         Map.of(
@@ -178,20 +401,74 @@ public class OpenAIService {
                         )
                 ),
                 "temperature", 0.7,
-                "max_tokens", 1500
-        );
+                "max_tokens", maxTokens
+        ));
+        if (responseFormat != null) body.put("response_format", responseFormat);
+
+        long estimatedTokens = promptTokens + maxTokens;
+
+        Map<String, Object> span = new ConcurrentHashMap<>();
+        span.put("promptTokens", promptTokens);
+        span.put("maxTokens", maxTokens);
+        if (section != null) span.put("section", section);
+
+        return JobTrace.span("llm " + kind, span, Mono.deferContextual(ctx -> {
+
+            JobContext job = ctx.getOrDefault(JobContext.class, null);
+            if (job != null) job.recordEstimate(promptTokens);
+
+            return PipelineEvents.record(
+                    () -> new PipelineEvents.OpenAIRequestEvent(kind, section, prompt.length(), promptTokens, maxTokens),
+                    event -> limits.openAI().call(estimatedTokens, () -> webClient().post()
+                                    .uri("/chat/completions")
+                                    .bodyValue(body)
+                                    .retrieve()
+                                    .bodyToMono(Map.class))
+                            .map(response -> {
+
+                                if (response.get("usage") instanceof Map usage) {
+                                    long prompted = ((Number) usage.get("prompt_tokens")).longValue();
+                                    long completed = ((Number) usage.get("completion_tokens")).longValue();
+
+                                    if (job != null) job.recordUsage(prompted, completed);
+                                    span.put("completionTokens", completed);
+                                    event.completionTokens = completed;
+
+                                    // Give back (or take) the difference to the shared tokens-per-minute bucket
+                                    limits.openAI().adjust(prompted + completed - estimatedTokens);
+                                }
+
+                                List choices = (List) response.get("choices");
+                                Map firstChoice = (Map) choices.get(0);
+                                Map message = (Map) firstChoice.get("message");
+
+                                String content = message.get("content").toString();
+                                event.responseChars = content.length();
+                                return content;
+                            }));
+        }));
+    }
+
+    // Appended after the material when generating ONE section of a larger course
+    private static String scopeInstructions(String kind, String section) {
+
+        String length = switch (kind) {
+            case "podcast" -> "8 to 14 spoken lines";
+            case "slideshow" -> "1 to 3 slides";
+            case "video" -> "1 to 3 scenes";
+            default -> "one short paragraph";
+        };
 
-        Map response = webClient.post()
-                .uri("/chat/completions")
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
+        return """
 
-        List choices = (List) response.get("choices");
-        Map firstChoice = (Map) choices.get(0);
-        Map message = (Map) firstChoice.get("message");
 
-        return message.get("content").toString();
+                ---
+                SCOPE (IMPORTANT):
+                - The material above is ONE section ("%s") of a longer course
+                - Cover ONLY this section, using the source passages for facts
+                - Keep it to %s
+                - No introduction or conclusion for the whole course
+                - Keep the required JSON format exactly
+                """.formatted(section, length);
     }
 }
@@ -0,0 +1,202 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops paragraphs that are near-duplicates of a paragraph in an EARLIER file of the same upload
+ * (e.g. lecture slides plus notes that copy them), keeping the original order.
+ *
+ * Paragraphs are fingerprinted with MinHash over word 3-gram shingles; LSH banding finds
+ * candidate pairs cheaply, and a candidate is dropped when its estimated Jaccard similarity
+ * reaches the threshold.
+ */
+public class ParagraphDeduplicator {
+
+    public record Result(
+            String text,
+            int paragraphs,
+            int removedParagraphs,
+            long inputChars,
+            long removedChars
+    ) {
+        public double removedRatio() {
+            return inputChars == 0 ? 0 : (double) removedChars / inputChars;
+        }
+    }
+
+    private static final int SHINGLE_WORDS = 3;
+    private static final int MIN_WORDS = 8; // too short to fingerprint reliably (headings etc.)
+
+    private static final int BANDS = 32;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    // Rough heap per fingerprinted paragraph: the signature plus its entry in every band bucket
+    private static final long BYTES_PER_SIGNATURE = HASHES * 8L + BANDS * 24L;
+
+    private final double threshold;
+
+    private final List<long[]> signatures = new ArrayList<>();
+    private final List<Integer> owners = new ArrayList<>();
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+
+    private int paragraphs = 0;
+    private int removed = 0;
+    private long inputChars = 0;
+    private long removedChars = 0;
+
+    /**
+     * Incremental form: feed paragraphs document by document, in order, through {@link #keep}.
+     */
+    public ParagraphDeduplicator(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public static Result dedupe(List<String> documents, double threshold) {
+
+        ParagraphDeduplicator dedup = new ParagraphDeduplicator(threshold);
+        StringBuilder out = new StringBuilder();
+
+        for (int doc = 0; doc < documents.size(); doc++) {
+
+            for (String paragraph : documents.get(doc).split("\\r?\\n\\s*\\r?\\n")) {
+
+                String trimmed = paragraph.trim();
+                if (trimmed.isEmpty()) continue;
+
+                if (dedup.keep(doc, trimmed)) out.append(trimmed).append("\n\n");
+            }
+        }
+
+        return dedup.result(out.toString().trim());
+    }
+
+    /**
+     * False when the paragraph near-duplicates one from an EARLIER document.
+     */
+    public boolean keep(int doc, String paragraph) {
+
+        paragraphs++;
+        inputChars += paragraph.length();
+
+        long[] signature = signature(paragraph);
+
+        if (signature != null && isDuplicate(signature, doc)) {
+            removed++;
+            removedChars += paragraph.length();
+            return false;
+        }
+
+        if (signature != null) {
+            int id = signatures.size();
+            signatures.add(signature);
+            owners.add(doc);
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>()).add(id);
+            }
+        }
+
+        return true;
+    }
+
+    public Result result(String text) {
+        return new Result(text, paragraphs, removed, inputChars, removedChars);
+    }
+
+    /** Estimated heap held by the fingerprints so far */
+    public long indexBytes() {
+        return signatures.size() * BYTES_PER_SIGNATURE;
+    }
+
+    private boolean isDuplicate(long[] signature, int doc) {
+
+        Set<Integer> checked = new HashSet<>();
+
+        for (int band = 0; band < BANDS; band++) {
+            List<Integer> candidates = buckets.get(bandKey(signature, band));
+            if (candidates == null) continue;
+
+            for (int candidate : candidates) {
+                // Only ACROSS files; repetition inside one file may be intentional (recaps)
+                if (owners.get(candidate) == doc || !checked.add(candidate)) continue;
+
+                if (similarity(signature, signatures.get(candidate)) >= threshold) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // ======================
+    // MINHASH
+    // ======================
+
+    private static long[] signature(String paragraph) {
+
+        String[] words = paragraph.toLowerCase()
+                .replaceAll("[^\\p{L}\\p{N}\\s]", " ")
+                .trim()
+                .split("\\s+");
+
+        if (words.length < MIN_WORDS) return null;
+
+        long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+
+        for (int i = 0; i + SHINGLE_WORDS <= words.length; i++) {
+
+            long shingle = 0xcbf29ce484222325L;
+            for (int w = i; w < i + SHINGLE_WORDS; w++) {
+                shingle = (shingle ^ words[w].hashCode()) * 0x100000001b3L;
+            }
+
+            for (int h = 0; h < HASHES; h++) {
+                long value = mix(shingle ^ SEEDS[h]);
+                if (value < signature[h]) signature[h] = value;
+            }
+        }
+
+        return signature;
+    }
+
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / HASHES;
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int r = 0; r < ROWS; r++) {
+            key = mix(key ^ signature[band * ROWS + r]);
+        }
+        return key;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.simplylearn.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Streams blank-line separated paragraphs out of a Reader through one fixed-size buffer, so an
+ * upload is never held as raw bytes, decoded String and trimmed copy at the same time.
+ *
+ * Runs of spaces and tabs collapse to one space and single line breaks are kept. A form feed
+ * (the page break in pdftotext and similar exports) ends the paragraph and is kept as the first
+ * char of the next one, so PromptCompactor can still find page edges. Paragraphs
+ * longer than {@code maxChars} are split at a word boundary, so a file without blank lines
+ * can't grow one unbounded paragraph.
+ */
+public class ParagraphReader {
+
+    private static final int BUFFER_CHARS = 16 * 1024;
+
+    public static void read(Reader in, int maxChars, Consumer<String> paragraphs) throws IOException {
+
+        char[] buffer = new char[BUFFER_CHARS];
+        StringBuilder current = new StringBuilder(Math.min(maxChars, BUFFER_CHARS));
+
+        int newlines = 0;
+        boolean space = false;
+        boolean page = false;
+        int n;
+
+        while ((n = in.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+
+                char c = buffer[i];
+
+                if (c == '\r') continue;
+                if (c == '\n') {
+                    newlines++;
+                    space = false;
+                    continue;
+                }
+                if (c == '\f') {
+                    newlines = Math.max(newlines, 2);
+                    page = true;
+                    continue;
+                }
+                // isSpaceChar also covers no-break spaces from PDF/Word exports
+                if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                    space = true;
+                    continue;
+                }
+
+                // Pending whitespace only matters once the next visible char shows where it was
+                if (newlines >= 2) {
+                    emit(current, paragraphs);
+                } else if (!current.isEmpty()) {
+                    if (newlines == 1) current.append('\n');
+                    else if (space) current.append(' ');
+                }
+
+                if (page) current.append('\f');
+
+                newlines = 0;
+                space = false;
+                page = false;
+                current.append(c);
+
+                if (current.length() >= maxChars) splitLong(current, paragraphs);
+            }
+        }
+
+        emit(current, paragraphs);
+    }
+
+    // Emits up to the last word boundary in the second half; the rest starts the next piece
+    private static void splitLong(StringBuilder current, Consumer<String> paragraphs) {
+
+        int cut = Math.max(current.lastIndexOf(" "), current.lastIndexOf("\n"));
+
+        if (cut < current.length() / 2) {
+            emit(current, paragraphs);
+            return;
+        }
+
+        paragraphs.accept(current.substring(0, cut));
+        current.delete(0, cut + 1);
+    }
+
+    private static void emit(StringBuilder current, Consumer<String> paragraphs) {
+        if (current.isEmpty()) return;
+        paragraphs.accept(current.toString());
+        current.setLength(0);
+    }
+}
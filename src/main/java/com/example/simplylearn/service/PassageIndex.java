@@ -0,0 +1,211 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-process BM25 index over the passages of ONE upload.
+ *
+ * Lets a generator send only the few passages a slide / scene / podcast segment needs
+ * instead of the whole course pack, so prompt size stays roughly flat as uploads grow.
+ */
+public class PassageIndex {
+
+    public record Passage(int position, String text) {}
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Shortest passage lead worth putting in a digest
+    private static final int MIN_LEAD_CHARS = 80;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is",
+            "it", "its", "of", "on", "or", "that", "the", "this", "to", "was", "were", "which", "with"
+    );
+
+    private final List<Passage> passages;
+    private final Map<String, List<int[]>> postings = new HashMap<>(); // term -> [passage, tf]
+    private final int[] lengths;
+    private final double averageLength;
+
+    private PassageIndex(List<Passage> passages) {
+
+        this.passages = passages;
+        this.lengths = new int[passages.size()];
+
+        long total = 0;
+
+        for (Passage passage : passages) {
+
+            Map<String, Integer> tf = new HashMap<>();
+            List<String> terms = terms(passage.text());
+            for (String term : terms) tf.merge(term, 1, Integer::sum);
+
+            lengths[passage.position()] = terms.size();
+            total += terms.size();
+
+            tf.forEach((term, count) ->
+                    postings.computeIfAbsent(term, k -> new ArrayList<>())
+                            .add(new int[]{passage.position(), count}));
+        }
+
+        this.averageLength = passages.isEmpty() ? 0 : (double) total / passages.size();
+    }
+
+    /**
+     * Splits text into passages of roughly {@code passageWords} words along paragraph
+     * boundaries (very long paragraphs are split on sentences) and indexes them.
+     */
+    public static PassageIndex build(String text, int passageWords) {
+        return build(List.of(text.split("\\r?\\n\\s*\\r?\\n")), passageWords);
+    }
+
+    // Paragraphs are consumed one at a time (see SourceText.drain)
+    public static PassageIndex build(Iterable<String> paragraphs, int passageWords) {
+
+        List<Passage> passages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int words = 0;
+
+        for (String paragraph : paragraphs) {
+
+            String trimmed = paragraph.trim();
+            if (trimmed.isEmpty()) continue;
+
+            List<String> pieces = wordCount(trimmed) > passageWords * 2
+                    ? List.of(trimmed.split("(?<=[.!?])\\s+"))
+                    : List.of(trimmed);
+
+            for (String piece : pieces) {
+
+                current.append(piece).append(pieces.size() > 1 ? " " : "\n\n");
+                words += wordCount(piece);
+
+                if (words >= passageWords) {
+                    passages.add(new Passage(passages.size(), current.toString().trim()));
+                    current.setLength(0);
+                    words = 0;
+                }
+            }
+        }
+
+        if (!current.isEmpty()) {
+            passages.add(new Passage(passages.size(), current.toString().trim()));
+        }
+
+        return new PassageIndex(passages);
+    }
+
+    public int size() {
+        return passages.size();
+    }
+
+    public long chars() {
+        return passages.stream().mapToLong(passage -> passage.text().length()).sum();
+    }
+
+    // ======================
+    // SEARCH
+    // ======================
+
+    /**
+     * Top-k passages for the query by BM25, returned in document order so they read naturally.
+     */
+    public List<Passage> search(String query, int k) {
+
+        double[] scores = new double[passages.size()];
+        int n = passages.size();
+
+        for (String term : new LinkedHashSet<>(terms(query))) {
+
+            List<int[]> list = postings.get(term);
+            if (list == null) continue;
+
+            double idf = Math.log(1 + (n - list.size() + 0.5) / (list.size() + 0.5));
+
+            for (int[] posting : list) {
+                int tf = posting[1];
+                double norm = K1 * (1 - B + B * lengths[posting[0]] / averageLength);
+                scores[posting[0]] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingDouble(i -> scores[i]));
+        for (int i = 0; i < n; i++) {
+            if (scores[i] <= 0) continue;
+            top.add(i);
+            if (top.size() > k) top.poll();
+        }
+
+        return top.stream()
+                .sorted()
+                .map(passages::get)
+                .toList();
+    }
+
+    /**
+     * A compact digest of the whole upload (the lead of every passage, in order),
+     * small enough to outline a large course pack in one call.
+     *
+     * When there are too many passages for each to keep a readable lead, passages are
+     * sampled at an even stride from first to last, so the digest still spans the whole
+     * upload and every chapter can get a section in the outline.
+     */
+    public String digest(int maxChars) {
+
+        if (passages.isEmpty()) return "";
+
+        int count = Math.max(1, Math.min(passages.size(), maxChars / (MIN_LEAD_CHARS + 2)));
+        int perPassage = Math.max(MIN_LEAD_CHARS, maxChars / count - 2); // 2: the blank line after each lead
+        StringBuilder out = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+
+            int position = count == 1 ? 0 : (int) ((long) i * (passages.size() - 1) / (count - 1));
+            String text = passages.get(position).text().replaceAll("\\s+", " ");
+            int end = Math.min(text.length(), perPassage);
+
+            // Prefer stopping at a sentence end inside the allowance
+            int sentence = text.lastIndexOf(". ", end);
+            if (sentence > perPassage / 2) end = sentence + 1;
+
+            out.append(text, 0, end).append("\n\n");
+        }
+
+        return out.toString().trim();
+    }
+
+    // ======================
+    // TOKENIZATION
+    // ======================
+
+    private static List<String> terms(String text) {
+
+        List<String> terms = new ArrayList<>();
+
+        for (String raw : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+
+            if (raw.length() < 2 || STOPWORDS.contains(raw)) continue;
+
+            // Light plural folding ("cells" -> "cell") without a full stemmer
+            String term = raw.length() > 4 && raw.endsWith("s") && !raw.endsWith("ss")
+                    ? raw.substring(0, raw.length() - 1)
+                    : raw;
+
+            terms.add(term);
+        }
+
+        return terms;
+    }
+
+    private static int wordCount(String text) {
+        return text.isBlank() ? 0 : text.trim().split("\\s+").length;
+    }
+}
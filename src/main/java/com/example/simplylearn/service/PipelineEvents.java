@@ -0,0 +1,230 @@
+package com.example.simplylearn.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Java Flight Recorder events for the pipeline's own work, so CPU and allocation samples in a
+ * recording can be matched to the job, output type and stage that caused them.
+ *
+ * Every event carries the job id and conversion type (taken from the Reactor Context, like
+ * JobTrace) and its outcome; duration is the event's own. Events are committed from whatever
+ * thread the work finishes on, so their stack traces would be meaningless and are not recorded.
+ *
+ * All events are in the "SimplyLearn" category and enabled by default; disable them with
+ * e.g. {@code jfr configure +simplylearn.OpenAIRequest#enabled=false}.
+ */
+public final class PipelineEvents {
+
+    private static final String CONVERSION_TYPE = "jfr.conversionType";
+
+    private PipelineEvents() {
+    }
+
+    // ======================
+    // EVENT TYPES
+    // ======================
+
+    @Category("SimplyLearn")
+    @StackTrace(false)
+    abstract static class PipelineEvent extends Event {
+
+        @Label("Job Id")
+        String jobId;
+
+        @Label("Conversion Type")
+        String conversionType;
+
+        @Label("Outcome")
+        @Description("ok, error or cancelled")
+        String outcome;
+    }
+
+    @Name("simplylearn.Job")
+    @Label("Conversion Job")
+    static final class JobEvent extends PipelineEvent {
+
+        @Label("Conversion Types")
+        String types;
+
+        @Label("Input Size")
+        @DataAmount
+        long inputBytes;
+
+        JobEvent(String types, long inputBytes) {
+            this.types = types;
+            this.inputBytes = inputBytes;
+        }
+    }
+
+    @Name("simplylearn.Stage")
+    @Label("Pipeline Stage")
+    static final class StageEvent extends PipelineEvent {
+
+        @Label("Stage")
+        String stage;
+
+        StageEvent(String stage) {
+            this.stage = stage;
+        }
+    }
+
+    @Name("simplylearn.OpenAIRequest")
+    @Label("OpenAI Request")
+    @Description("One chat completion, including the wait for the rate limiter")
+    static final class OpenAIRequestEvent extends PipelineEvent {
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Section")
+        String section;
+
+        @Label("Prompt Characters")
+        int promptChars;
+
+        @Label("Prompt Tokens (estimated)")
+        int promptTokens;
+
+        @Label("Max Tokens")
+        int maxTokens;
+
+        @Label("Completion Tokens")
+        long completionTokens;
+
+        @Label("Response Characters")
+        int responseChars;
+
+        OpenAIRequestEvent(String kind, String section, int promptChars, int promptTokens, int maxTokens) {
+            this.kind = kind;
+            this.section = section;
+            this.promptChars = promptChars;
+            this.promptTokens = promptTokens;
+            this.maxTokens = maxTokens;
+        }
+    }
+
+    @Name("simplylearn.PollySynthesis")
+    @Label("Polly Synthesis")
+    @Description("One synthesizeSpeech request (a spoken line or a pause), or its cache hit")
+    static final class PollySynthesisEvent extends PipelineEvent {
+
+        @Label("Pause")
+        boolean pause;
+
+        @Label("Voice")
+        String voice;
+
+        @Label("SSML Characters")
+        int ssmlChars;
+
+        @Label("Lines And Pauses")
+        @Description("Script parts packed into this one request")
+        int parts;
+
+        @Label("Audio Size")
+        @DataAmount
+        long audioBytes;
+
+        PollySynthesisEvent(boolean pause, String voice, int ssmlChars, int parts) {
+            this.pause = pause;
+            this.voice = voice;
+            this.ssmlChars = ssmlChars;
+            this.parts = parts;
+        }
+    }
+
+    @Name("simplylearn.ImageRender")
+    @Label("Image Render")
+    static final class ImageRenderEvent extends PipelineEvent {
+
+        @Label("Text Characters")
+        int textChars;
+
+        @Label("Image Size")
+        @DataAmount
+        long imageBytes;
+
+        ImageRenderEvent(int textChars) {
+            this.textChars = textChars;
+        }
+    }
+
+    @Name("simplylearn.Ffmpeg")
+    @Label("ffmpeg Process")
+    static final class FfmpegEvent extends PipelineEvent {
+
+        @Label("Command")
+        String command;
+
+        @Label("Process Id")
+        long pid;
+
+        @Label("Exit Code")
+        int exitCode;
+
+        @Label("Output Size")
+        @DataAmount
+        long outputBytes;
+
+        FfmpegEvent(String command) {
+            this.command = command;
+        }
+    }
+
+    // ======================
+    // RECORDING
+    // ======================
+
+    /**
+     * Runs {@code work} inside one event. The work gets the event to fill in what it learns
+     * (tokens billed, bytes written); begin, end and commit happen here.
+     */
+    static <E extends PipelineEvent, T> Mono<T> record(Supplier<E> factory, Function<E, Mono<T>> work) {
+        return Mono.deferContextual(ctx -> {
+
+            E event = factory.get();
+            if (!event.isEnabled()) return work.apply(event);
+
+            JobContext job = ctx.getOrDefault(JobContext.class, null);
+            if (job != null) event.jobId = job.jobId().toString();
+            event.conversionType = ctx.getOrDefault(CONVERSION_TYPE, null);
+
+            event.begin();
+
+            return work.apply(event)
+                    .doFinally(signal -> {
+                        event.outcome = outcome(signal);
+                        event.end();
+                        if (event.shouldCommit()) event.commit();
+                    });
+        });
+    }
+
+    /**
+     * Tags every event emitted by the work with the output type it is producing.
+     */
+    static Function<Context, Context> conversionType(String type) {
+        return ctx -> ctx.put(CONVERSION_TYPE, type);
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "ok";
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> signal.name();
+        };
+    }
+}
@@ -1,16 +1,31 @@
 package com.example.simplylearn.service;
 
+import com.example.simplylearn.service.SsmlPacker.Part;
+import com.example.simplylearn.service.SsmlPacker.Pause;
+import com.example.simplylearn.service.SsmlPacker.Request;
+import com.example.simplylearn.service.SsmlPacker.Speech;
 import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.ResponseInputStream;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.polly.PollyClient;
+import software.amazon.awssdk.services.polly.PollyAsyncClient;
 import software.amazon.awssdk.services.polly.model.*;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class PollyService {
@@ -34,67 +49,112 @@ public class PollyService {
             VoiceId.DANIELLE
     );
 
-    private final Random random = new Random();
-    private final PollyClient polly;
-
-    public PollyService() {
-        this.polly = PollyClient.builder()
-                .region(Region.US_EAST_1) // REQUIRED for generative voices
-                .build();
+    private final ProviderLimits limits;
+    private final ChunkCache cache;
+
+    // How many requests of ONE job may be in flight; audio is still written in script order
+    private final int lineConcurrency;
+
+    // Consecutive lines of one voice go to Polly as one SSML document (see SsmlPacker)
+    private final boolean packLines;
+    private final int maxRequestChars;
+
+    private final int maxConcurrency;
+    private final Duration maxIdleTime;
+    private final Duration maxLifeTime;
+    private final boolean keepAlive;
+
+    // Built on first use (or by StartupWarmup), not while the context starts
+    private volatile PollyAsyncClient polly;
+
+    public PollyService(
+            ProviderLimits limits,
+            ChunkCache cache,
+            @Value("${polly.http.max-concurrency:50}") int maxConcurrency,
+            @Value("${polly.http.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${polly.http.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${polly.http.keep-alive:true}") boolean keepAlive,
+            @Value("${polly.line-concurrency:4}") int lineConcurrency,
+            @Value("${polly.pack.enabled:true}") boolean packLines,
+            @Value("${polly.pack.max-ssml-chars:3000}") int maxRequestChars
+    ) {
+        this.limits = limits;
+        this.cache = cache;
+        this.lineConcurrency = lineConcurrency;
+        this.packLines = packLines;
+        this.maxRequestChars = maxRequestChars;
+        this.maxConcurrency = maxConcurrency;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifeTime = maxLifeTime;
+        this.keepAlive = keepAlive;
     }
+
     /**
      * Single-speaker narration (used for VIDEO)
      * One randomized generative voice for the entire narration
+     *
+     * Voices are "random" per {@code voiceSeed} rather than per call (see ConversionService.voiceSeed):
+     * with the same seed, unchanged lines come from ChunkCache instead of Polly.
      */
-    public void synthesizeSingleSpeakerPodcast(String script, Path outputPath) throws Exception {
+    public Mono<Void> synthesizeSingleSpeakerPodcast(String script, Path outputPath, long voiceSeed) {
 
         // 🎲 Pick ONE voice for the whole video
-        List<VoiceId> videoVoices = List.of(
-                VoiceId.MATTHEW,
-                VoiceId.DANIELLE
-        );
+        VoiceId chosenVoice = narrationVoice(voiceSeed);
 
-        VoiceId chosenVoice =
-                videoVoices.get(new Random().nextInt(videoVoices.size()));
+        List<Part> parts = new ArrayList<>();
 
-        try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+        for (String raw : script.split("\\r?\\n")) {
 
-            for (String raw : script.split("\\r?\\n")) {
+            String line = raw.trim();
+            if (line.isEmpty()) continue;
 
-                String line = raw.trim();
-                if (line.isEmpty()) continue;
+            if (line.equals("[[SECTION_BREAK]]")) {
+                parts.add(new Pause(900));
+                continue;
+            }
 
-                if (line.equals("[[SECTION_BREAK]]")) {
-                    writePause(outputStream, 900);
-                    continue;
-                }
+            parts.add(new Speech(chosenVoice.toString(), line));
 
-                String ssml = buildSsml(line);
+            // Natural pause between lines
+            parts.add(new Pause(300));
+        }
 
-                SynthesizeSpeechRequest request = SynthesizeSpeechRequest.builder()
-                        .engine(Engine.GENERATIVE)
-                        .voiceId(chosenVoice)
-                        .outputFormat(OutputFormat.MP3)
-                        .textType(TextType.SSML)
-                        .text(ssml)
-                        .build();
+        return writeParts(parts, outputPath);
+    }
 
-                try (ResponseInputStream<SynthesizeSpeechResponse> audio =
-                             polly.synthesizeSpeech(request)) {
 
-                    audio.transferTo(outputStream);
-                }
+    private PollyAsyncClient polly() {
 
-                // Natural pause between lines
-                writePause(outputStream, 300);
-            }
+        PollyAsyncClient client = polly;
+        if (client != null) return client;
+
+        synchronized (this) {
+            if (polly != null) return polly;
+
+            polly = PollyAsyncClient.builder()
+                    .region(Region.US_EAST_1) // REQUIRED for generative voices
+                    .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                            .maxConcurrency(maxConcurrency)
+                            .connectionMaxIdleTime(maxIdleTime)
+                            .connectionTimeToLive(maxLifeTime)
+                            .useIdleConnectionReaper(true)
+                            .tcpKeepAlive(keepAlive))
+                    // Retries happen per line in ProviderLimits, so throttling feeds the shared limiter
+                    .overrideConfiguration(o -> o.retryPolicy(RetryPolicy.none()))
+                    .build();
+
+            return polly;
         }
     }
 
+    // Creates the client (credentials, region, Netty event loops) ahead of the first job
+    public void warmUp() {
+        polly();
+    }
 
     @PreDestroy
     public void close() {
-        polly.close();
+        if (polly != null) polly.close();
     }
 
     // =========================================================
@@ -104,49 +164,35 @@ public class PollyService {
     /**
      * Called by ConversionService for PODCAST
      */
-    public void synthesizePodcastToMp3(String script, Path outputPath) throws Exception {
-
-        List<PodcastLine> lines = parseScript(script);
+    public Mono<Void> synthesizePodcastToMp3(List<StructuredOutput.Segment> script, Path outputPath, long voiceSeed) {
 
         // 🎲 Pick TWO voices ONCE per podcast
         List<VoiceId> shuffled = new ArrayList<>(PODCAST_GENERATIVE_VOICES);
-        Collections.shuffle(shuffled);
+        Collections.shuffle(shuffled, new Random(voiceSeed));
 
         VoiceId speakerA = shuffled.get(0);
         VoiceId speakerB = shuffled.get(1);
 
-        try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+        List<Part> parts = new ArrayList<>();
 
-            for (PodcastLine line : lines) {
+        for (int i = 0; i < script.size(); i++) {
 
-                if (line.isSectionBreak()) {
-                    writePause(outputStream, 800);
-                    continue;
-                }
+            // Longer pause between topics
+            if (i > 0) parts.add(new Pause(800));
+
+            for (StructuredOutput.Line line : script.get(i).lines()) {
 
                 VoiceId voice =
                         line.speaker().equals("A") ? speakerA : speakerB;
 
-                String ssml = buildSsml(line.text());
-
-                SynthesizeSpeechRequest request = SynthesizeSpeechRequest.builder()
-                        .engine(Engine.GENERATIVE)
-                        .voiceId(voice)
-                        .outputFormat(OutputFormat.MP3)
-                        .textType(TextType.SSML)
-                        .text(ssml)
-                        .build();
-
-                try (ResponseInputStream<SynthesizeSpeechResponse> audio =
-                             polly.synthesizeSpeech(request)) {
-
-                    audio.transferTo(outputStream);
-                }
+                parts.add(new Speech(voice.toString(), line.text()));
 
                 // Natural conversational pause
-                writePause(outputStream, 250);
+                parts.add(new Pause(250));
             }
         }
+
+        return writeParts(parts, outputPath);
     }
 
     // =========================================================
@@ -157,67 +203,27 @@ public class PollyService {
      * Called by ConversionService for VIDEO
      * One generative speaker per entire video
      */
-    public void synthesizeVideoNarrationToMp3(String script, Path outputPath) throws Exception {
+    public Mono<Void> synthesizeVideoNarrationToMp3(String script, Path outputPath, long voiceSeed) {
 
         // 🎲 Pick ONE voice per video
-        VoiceId voice = VIDEO_GENERATIVE_VOICES.get(
-                random.nextInt(VIDEO_GENERATIVE_VOICES.size())
-        );
-
-        List<String> chunks = splitIntoChunks(script);
+        VoiceId voice = narrationVoice(voiceSeed);
 
-        try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+        List<Part> parts = new ArrayList<>();
 
-            for (String chunk : chunks) {
+        for (String chunk : splitIntoChunks(script)) {
 
-                String ssml = buildSsml(chunk);
+            parts.add(new Speech(voice.toString(), chunk));
 
-                SynthesizeSpeechRequest request = SynthesizeSpeechRequest.builder()
-                        .engine(Engine.GENERATIVE)
-                        .voiceId(voice)
-                        .outputFormat(OutputFormat.MP3)
-                        .textType(TextType.SSML)
-                        .text(ssml)
-                        .build();
-
-                try (ResponseInputStream<SynthesizeSpeechResponse> audio =
-                             polly.synthesizeSpeech(request)) {
-
-                    audio.transferTo(outputStream);
-                }
-
-                // Slight pause between narration chunks
-                writePause(outputStream, 400);
-            }
+            // Slight pause between narration chunks
+            parts.add(new Pause(400));
         }
-    }
 
-    // =========================================================
-    // SCRIPT PARSING (PODCAST ONLY)
-    // =========================================================
-
-    private List<PodcastLine> parseScript(String script) {
-
-        List<PodcastLine> result = new ArrayList<>();
-
-        for (String raw : script.split("\\r?\\n")) {
-
-            String line = raw.trim();
-            if (line.isEmpty()) continue;
-
-            if (line.equals("[[SECTION_BREAK]]")) {
-                result.add(PodcastLine.sectionBreak());
-                continue;
-            }
-
-            if (line.startsWith("A:")) {
-                result.add(new PodcastLine("A", line.substring(2).trim()));
-            } else if (line.startsWith("B:")) {
-                result.add(new PodcastLine("B", line.substring(2).trim()));
-            }
-        }
+        return writeParts(parts, outputPath);
+    }
 
-        return result;
+    // Same seed, same voice: the scenes and the full narration of one video match
+    public VoiceId narrationVoice(long voiceSeed) {
+        return VIDEO_GENERATIVE_VOICES.get(new Random(voiceSeed).nextInt(VIDEO_GENERATIVE_VOICES.size()));
     }
 
     // =========================================================
@@ -247,61 +253,84 @@ public class PollyService {
     }
 
     // =========================================================
-    // SSML
+    // ASYNC SYNTHESIS
     // =========================================================
 
-    private String buildSsml(String text) {
-        return """
-                <speak>
-                    <prosody rate="medium">
-                        %s
-                    </prosody>
-                </speak>
-                """.formatted(escapeXml(text));
+    /**
+     * Packs the lines and pauses into requests, synthesizes them with up to
+     * {@code lineConcurrency} in flight and appends the audio to the output file
+     * strictly in script order.
+     */
+    private Mono<Void> writeParts(List<Part> parts, Path outputPath) {
+
+        List<Request> requests = packLines ? SsmlPacker.pack(parts, maxRequestChars) : SsmlPacker.unpacked(parts);
+
+        Map<String, Object> span = new ConcurrentHashMap<>();
+        span.put("parts", parts.size());
+        span.put("requests", requests.size());
+
+        return Mono.deferContextual(ctx -> {
+                    JobContext job = ctx.getOrDefault(JobContext.class, null);
+                    if (job != null) job.recordTtsRequests(parts.size(), requests.size());
+
+                    return JobTrace.span("audio " + outputPath.getFileName(), span, Flux.using(
+                            () -> Files.newOutputStream(outputPath),
+                            outputStream -> Flux.fromIterable(requests)
+                                    .flatMapSequential(this::synthesize, lineConcurrency)
+                                    .publishOn(Schedulers.boundedElastic())
+                                    .doOnNext(audio -> write(outputStream, audio)),
+                            PollyService::closeQuietly
+                    ).then());
+                });
     }
 
-    private String escapeXml(String text) {
-        return text
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;");
-    }
+    // Identical voice + SSML always sounds the same, so it is synthesized once
+    private Mono<byte[]> synthesize(Request request) {
 
-    // =========================================================
-    // PAUSES
-    // =========================================================
+        // Break-only requests need a voice too; any generative one renders the same silence
+        String voice = request.pauseOnly() ? VoiceId.MATTHEW.toString() : request.voice();
+
+        Map<String, Object> span = new ConcurrentHashMap<>();
+        span.put("ssmlChars", request.ssml().length());
+        span.put("parts", request.parts());
+        if (!request.pauseOnly()) span.put("voice", voice);
 
-    private void writePause(OutputStream outputStream, int millis) throws Exception {
+        return JobTrace.span(request.pauseOnly() ? "pause" : "tts", span, PipelineEvents.record(
+                () -> new PipelineEvents.PollySynthesisEvent(request.pauseOnly(),
+                        voice, request.ssml().length(), request.parts()),
+                event -> cache.bytes("tts",
+                                ChunkCache.key(voice, request.ssml()),
+                                () -> synthesizeUncached(voice, request.ssml()))
+                        .doOnNext(audio -> event.audioBytes = audio.length)));
+    }
 
-        String ssml = "<speak><break time=\"" + millis + "ms\"/></speak>";
+    private Mono<byte[]> synthesizeUncached(String voice, String ssml) {
 
         SynthesizeSpeechRequest request = SynthesizeSpeechRequest.builder()
                 .engine(Engine.GENERATIVE)
-                .voiceId(VoiceId.MATTHEW) // safe generative voice
+                .voiceId(voice)
                 .outputFormat(OutputFormat.MP3)
                 .textType(TextType.SSML)
                 .text(ssml)
                 .build();
 
-        try (ResponseInputStream<SynthesizeSpeechResponse> audio =
-                     polly.synthesizeSpeech(request)) {
-
-            audio.transferTo(outputStream);
-        }
+        return limits.polly().call(ssml.length(), () -> Mono.fromFuture(() ->
+                        polly().synthesizeSpeech(request, AsyncResponseTransformer.toBytes())))
+                .map(ResponseBytes::asByteArrayUnsafe);
     }
 
-    // =========================================================
-    // INTERNAL MODEL
-    // =========================================================
-
-    private record PodcastLine(String speaker, String text) {
-
-        static PodcastLine sectionBreak() {
-            return new PodcastLine(null, null);
+    private static void write(OutputStream outputStream, byte[] audio) {
+        try {
+            outputStream.write(audio);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        boolean isSectionBreak() {
-            return speaker == null;
+    private static void closeQuietly(OutputStream outputStream) {
+        try {
+            outputStream.close();
+        } catch (IOException ignored) {
         }
     }
 }
@@ -0,0 +1,52 @@
+package com.example.simplylearn.service;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Per-generator token budgets.
+ *
+ * openai.budget.&lt;kind&gt;.input  caps the whole prompt (instructions + material)
+ * openai.budget.&lt;kind&gt;.output caps max_tokens; smaller inputs get proportionally less
+ */
+@Component
+public class PromptBudgets {
+
+    public record Budget(int inputTokens, int outputTokens, double outputRatio) {}
+
+    private static final int MIN_OUTPUT_TOKENS = 256;
+
+    // Expected output size relative to the material, per generator
+    private static final Map<String, Budget> DEFAULTS = Map.of(
+            "outline", new Budget(60_000, 3000, 0.5),
+            "summary", new Budget(30_000, 1000, 0.3),
+            "podcast", new Budget(30_000, 4000, 1.2),
+            "slideshow", new Budget(30_000, 2000, 0.6),
+            "video", new Budget(30_000, 3000, 1.0),
+            // Replacements for a few invalid items (see OpenAIService.repairItems)
+            "repair", new Budget(30_000, 2000, 0.3)
+    );
+
+    private final Environment env;
+
+    public PromptBudgets(Environment env) {
+        this.env = env;
+    }
+
+    public Budget budget(String kind) {
+        Budget defaults = DEFAULTS.getOrDefault(kind, DEFAULTS.get("summary"));
+        return new Budget(
+                env.getProperty("openai.budget." + kind + ".input", Integer.class, defaults.inputTokens()),
+                env.getProperty("openai.budget." + kind + ".output", Integer.class, defaults.outputTokens()),
+                defaults.outputRatio()
+        );
+    }
+
+    public int maxOutputTokens(String kind, int materialTokens) {
+        Budget budget = budget(kind);
+        int expected = (int) Math.ceil(materialTokens * budget.outputRatio());
+        return Math.max(MIN_OUTPUT_TOKENS, Math.min(budget.outputTokens(), expected));
+    }
+}
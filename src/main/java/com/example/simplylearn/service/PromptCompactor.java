@@ -0,0 +1,215 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strips text that costs tokens but carries no content: page numbers,
+ * running headers/footers repeated on every page, and runs of whitespace.
+ *
+ * A line only counts as page furniture when it repeats where pages start or end. With form
+ * feeds (page breaks) that means among the first or last lines of most pages; without them,
+ * at evenly spaced positions far enough apart to be pages. Lines may differ in their numbers
+ * only when the numbers count pages ("Chapter 3 — page 12", "- 12 -"), so numbered headings
+ * like "Chapter 1", "Step 2" and labels like "Example:" are content and stay.
+ */
+public class PromptCompactor {
+
+    private static final Pattern PAGE_NUMBER = Pattern.compile(
+            "^[-\\u2013\\s]*(page\\s*)?\\d{1,4}(\\s*(of|/)\\s*\\d{1,4})?[-\\u2013\\s]*$",
+            Pattern.CASE_INSENSITIVE
+    );
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern SPACES = Pattern.compile("[ \\t\\x0B\\f\\u00A0]+");
+
+    // A line must repeat on at least this many pages (and on most of them)
+    private static final int MIN_PAGES = 3;
+    private static final int MAX_HEADER_LENGTH = 80;
+
+    // Header and page number can each take a line at the top or bottom of a page
+    private static final int EDGE_LINES = 2;
+
+    // Without page breaks: repeats this far apart (in lines), evenly spaced within the tolerance
+    private static final int MIN_PAGE_LINES = 20;
+    private static final double PERIOD_TOLERANCE = 0.25;
+
+    public static String compact(String text) {
+
+        String[] lines = text.split("\\r?\\n");
+
+        Set<Integer> furniture = text.indexOf('\f') >= 0 ? pageEdgeLines(lines) : periodicLines(lines);
+
+        StringBuilder out = new StringBuilder(text.length());
+        boolean lastBlank = true;
+
+        for (int i = 0; i < lines.length; i++) {
+
+            String line = normalize(lines[i]);
+
+            if (line.isEmpty()) {
+                if (!lastBlank) out.append('\n');
+                lastBlank = true;
+                continue;
+            }
+
+            if (furniture.contains(i)) continue;
+
+            out.append(line).append('\n');
+            lastBlank = false;
+        }
+
+        return out.toString().trim();
+    }
+
+    // ======================
+    // WITH PAGE BREAKS
+    // ======================
+
+    private static Set<Integer> pageEdgeLines(String[] lines) {
+
+        // Non-blank line indexes of every page
+        List<List<Integer>> pages = new ArrayList<>();
+        pages.add(new ArrayList<>());
+
+        for (int i = 0; i < lines.length; i++) {
+            for (char c : lines[i].toCharArray()) {
+                if (c == '\f') pages.add(new ArrayList<>());
+            }
+            if (!normalize(lines[i]).isEmpty()) pages.get(pages.size() - 1).add(i);
+        }
+
+        Map<String, List<Occurrence>> candidates = new LinkedHashMap<>();
+
+        for (int page = 0; page < pages.size(); page++) {
+
+            List<Integer> indexes = pages.get(page);
+            Set<Integer> edges = new HashSet<>();
+            for (int i = 0; i < indexes.size(); i++) {
+                if (i < EDGE_LINES || i >= indexes.size() - EDGE_LINES) edges.add(indexes.get(i));
+            }
+
+            for (int index : edges) {
+                add(candidates, lines[index], index, page);
+            }
+        }
+
+        int minPages = Math.max(MIN_PAGES, (pages.size() + 1) / 2);
+
+        Set<Integer> furniture = new HashSet<>();
+        for (List<Occurrence> occurrences : candidates.values()) {
+            long distinctPages = occurrences.stream().mapToInt(Occurrence::counter).distinct().count();
+            if (distinctPages >= minPages && numbersCountPages(occurrences)) {
+                occurrences.forEach(o -> furniture.add(o.line()));
+            }
+        }
+        return furniture;
+    }
+
+    // ======================
+    // WITHOUT PAGE BREAKS
+    // ======================
+
+    private static Set<Integer> periodicLines(String[] lines) {
+
+        Map<String, List<Occurrence>> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < lines.length; i++) {
+            add(candidates, lines[i], i, 0);
+        }
+
+        Set<Integer> furniture = new HashSet<>();
+
+        for (Map.Entry<String, List<Occurrence>> entry : candidates.entrySet()) {
+
+            List<Occurrence> found = entry.getValue();
+            if (found.size() < MIN_PAGES || !evenlySpaced(found)) continue;
+
+            // The n-th repeat stands for the n-th page
+            List<Occurrence> counted = new ArrayList<>();
+            for (int n = 0; n < found.size(); n++) {
+                Occurrence o = found.get(n);
+                counted.add(new Occurrence(o.line(), n, o.numbers()));
+            }
+
+            // Nothing marks pages here, so only a bare page number may vary ("12", "Page 12 of 40")
+            boolean sameText = counted.stream().map(Occurrence::numbers).distinct().count() == 1;
+            boolean pageNumber = PAGE_NUMBER.matcher(normalize(lines[found.get(0).line()])).matches();
+
+            if (sameText || (pageNumber && numbersCountPages(counted))) {
+                counted.forEach(o -> furniture.add(o.line()));
+            }
+        }
+        return furniture;
+    }
+
+    private static boolean evenlySpaced(List<Occurrence> occurrences) {
+
+        List<Integer> gaps = new ArrayList<>();
+        for (int i = 1; i < occurrences.size(); i++) {
+            gaps.add(occurrences.get(i).line() - occurrences.get(i - 1).line());
+        }
+
+        List<Integer> sorted = gaps.stream().sorted().toList();
+        int median = sorted.get(sorted.size() / 2);
+        if (median < MIN_PAGE_LINES) return false;
+
+        return gaps.stream().allMatch(gap -> Math.abs(gap - median) <= median * PERIOD_TOLERANCE);
+    }
+
+    // ======================
+    // CANDIDATES
+    // ======================
+
+    // counter: the page the line is on (or its repeat number); numbers: the digits in the line
+    private record Occurrence(int line, int counter, List<Long> numbers) {}
+
+    private static void add(Map<String, List<Occurrence>> candidates, String raw, int index, int counter) {
+        String line = normalize(raw);
+        if (line.isEmpty() || line.length() > MAX_HEADER_LENGTH) return;
+        boolean bullet = line.startsWith("-") || line.startsWith("\u2022");
+        if (bullet && !PAGE_NUMBER.matcher(line).matches()) return; // bullets are content
+
+        List<Long> numbers = new ArrayList<>();
+        Matcher digits = DIGITS.matcher(line);
+        while (digits.find()) {
+            String number = digits.group();
+            numbers.add(number.length() > 9 ? -1 : Long.parseLong(number));
+        }
+
+        String key = DIGITS.matcher(line.toLowerCase()).replaceAll("#");
+        candidates.computeIfAbsent(key, k -> new ArrayList<>()).add(new Occurrence(index, counter, numbers));
+    }
+
+    /**
+     * Every number in the line either stays the same on every page or moves with the page
+     * (always page + k), so "Chapter 3 — page 12" matches but "Chapter 1", "Chapter 2" don't.
+     */
+    private static boolean numbersCountPages(List<Occurrence> occurrences) {
+
+        int slots = occurrences.get(0).numbers().size();
+
+        for (int slot = 0; slot < slots; slot++) {
+
+            Set<Long> values = new HashSet<>();
+            Set<Long> offsets = new HashSet<>();
+            for (Occurrence o : occurrences) {
+                long value = o.numbers().get(slot);
+                values.add(value);
+                offsets.add(value - o.counter());
+            }
+
+            if (values.size() > 1 && offsets.size() > 1) return false;
+        }
+        return true;
+    }
+
+    private static String normalize(String line) {
+        return SPACES.matcher(line).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.simplylearn.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The shared OpenAI and Polly limiters (one of each per JVM, used by every job).
+ */
+@Component
+public class ProviderLimits {
+
+    private final AdaptiveLimiter openAI;
+    private final AdaptiveLimiter polly;
+
+    public ProviderLimits(
+            @Value("${openai.limit.requests-per-second:5}") double openAIRequestsPerSecond,
+            @Value("${openai.limit.tokens-per-minute:200000}") long openAITokensPerMinute,
+            @Value("${openai.limit.max-concurrency:16}") int openAIMaxConcurrency,
+            @Value("${polly.limit.requests-per-second:8}") double pollyRequestsPerSecond,
+            @Value("${polly.limit.characters-per-minute:300000}") long pollyCharactersPerMinute,
+            @Value("${polly.limit.max-concurrency:16}") int pollyMaxConcurrency,
+            @Value("${provider.retry.max-attempts:6}") int maxAttempts,
+            @Value("${provider.retry.min-backoff:500ms}") Duration minBackoff,
+            @Value("${provider.retry.max-backoff:30s}") Duration maxBackoff
+    ) {
+        AdaptiveLimiter.RetrySettings retry =
+                new AdaptiveLimiter.RetrySettings(maxAttempts, minBackoff, maxBackoff);
+
+        this.openAI = new AdaptiveLimiter(
+                "openai",
+                openAIRequestsPerSecond,
+                openAITokensPerMinute,
+                openAIMaxConcurrency,
+                retry,
+                ProviderLimits::classifyOpenAI
+        );
+
+        this.polly = new AdaptiveLimiter(
+                "polly",
+                pollyRequestsPerSecond,
+                pollyCharactersPerMinute,
+                pollyMaxConcurrency,
+                retry,
+                ProviderLimits::classifyPolly
+        );
+    }
+
+    /** Cost unit: tokens (prompt + max completion) */
+    public AdaptiveLimiter openAI() {
+        return openAI;
+    }
+
+    /** Cost unit: characters sent for synthesis */
+    public AdaptiveLimiter polly() {
+        return polly;
+    }
+
+    // ======================
+    // ERROR CLASSIFICATION
+    // ======================
+
+    static AdaptiveLimiter.Failure classifyOpenAI(Throwable error) {
+
+        if (error instanceof WebClientResponseException e) {
+
+            if (e.getStatusCode().value() == 429) {
+                Duration retryAfter = parseRetryAfterMillis(e.getHeaders().getFirst("retry-after-ms"))
+                        .or(() -> parseRetryAfterSeconds(e.getHeaders().getFirst("Retry-After")))
+                        .orElse(null);
+                return AdaptiveLimiter.Failure.throttled(retryAfter);
+            }
+
+            return e.getStatusCode().is5xxServerError()
+                    ? AdaptiveLimiter.Failure.transientError()
+                    : AdaptiveLimiter.Failure.fatal();
+        }
+
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return AdaptiveLimiter.Failure.transientError();
+        }
+
+        return AdaptiveLimiter.Failure.fatal();
+    }
+
+    static AdaptiveLimiter.Failure classifyPolly(Throwable error) {
+
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+
+        if (cause instanceof AwsServiceException e) {
+
+            if (e.isThrottlingException() || e.statusCode() == 429) {
+                Duration retryAfter = e.awsErrorDetails() == null || e.awsErrorDetails().sdkHttpResponse() == null
+                        ? null
+                        : e.awsErrorDetails().sdkHttpResponse()
+                                .firstMatchingHeader("Retry-After")
+                                .flatMap(ProviderLimits::parseRetryAfterSeconds)
+                                .orElse(null);
+                return AdaptiveLimiter.Failure.throttled(retryAfter);
+            }
+
+            return e.statusCode() >= 500
+                    ? AdaptiveLimiter.Failure.transientError()
+                    : AdaptiveLimiter.Failure.fatal();
+        }
+
+        if (cause instanceof SdkClientException || cause instanceof TimeoutException) {
+            return AdaptiveLimiter.Failure.transientError();
+        }
+
+        return AdaptiveLimiter.Failure.fatal();
+    }
+
+    private static Optional<Duration> parseRetryAfterSeconds(String value) {
+        try {
+            return value == null ? Optional.empty() : Optional.of(Duration.ofMillis(
+                    (long) (Double.parseDouble(value.trim()) * 1000)));
+        } catch (NumberFormatException e) {
+            return Optional.empty(); // HTTP-date form; fall back to our own backoff
+        }
+    }
+
+    private static Optional<Duration> parseRetryAfterMillis(String value) {
+        try {
+            return value == null ? Optional.empty() : Optional.of(Duration.ofMillis(
+                    (long) Double.parseDouble(value.trim())));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.model.UploadSession;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.repository.UploadSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads for large files: create a session, PUT chunks at their offsets, ask for
+ * the committed offset after a dropped connection, then finalize into a normal conversion job.
+ *
+ * Chunks are appended in order: a chunk must start at or before the committed offset (bytes
+ * the server already has are skipped), never after it, so the committed prefix has no holes
+ * and its SHA-256 is built up as chunks arrive instead of re-reading the file at the end.
+ * A node that did not see the earlier chunks rebuilds the digest from the partial file once.
+ */
+@Service
+public class ResumableUploadService {
+
+    public record Status(UUID id, String filename, long size, long offset, boolean complete,
+                         String sha256, UUID jobId) {}
+
+    /**
+     * The chunk doesn't start where the upload stands; the client should resume at {@link #offset}.
+     */
+    public static class OffsetConflictException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long offset;
+
+        public OffsetConflictException(long offset) {
+            super("Upload continues at offset " + offset);
+            this.offset = offset;
+        }
+
+        public long offset() {
+            return offset;
+        }
+    }
+
+    // Digest of the committed prefix, valid while the session stands at that position
+    private record Progress(MessageDigest digest, long position) {}
+
+    private final UploadSessionRepository sessions;
+    private final FileUploadRepository repo;
+    private final StorageService storageService;
+    private final JobScheduler jobScheduler;
+
+    private final long maxUploadBytes;
+    private final Duration sessionTtl;
+
+    private final Map<UUID, Progress> digests = new ConcurrentHashMap<>();
+    private final Map<UUID, Object> locks = new ConcurrentHashMap<>();
+
+    public ResumableUploadService(
+            UploadSessionRepository sessions,
+            FileUploadRepository repo,
+            StorageService storageService,
+            JobScheduler jobScheduler,
+            @Value("${upload.resumable.max-size:2GB}") DataSize maxUploadSize,
+            @Value("${upload.resumable.session-ttl:24h}") Duration sessionTtl
+    ) {
+        this.sessions = sessions;
+        this.repo = repo;
+        this.storageService = storageService;
+        this.jobScheduler = jobScheduler;
+        this.maxUploadBytes = maxUploadSize.toBytes();
+        this.sessionTtl = sessionTtl;
+    }
+
+    // ======================
+    // SESSION
+    // ======================
+
+    public Status create(String filename, long size, List<String> types, String owner, String sha256) {
+
+        if (size <= 0 || size > maxUploadBytes) {
+            throw new IllegalArgumentException("Upload size must be between 1 byte and " + maxUploadBytes + " bytes");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setOriginalFilename(filename);
+        session.setConversionType(String.join("|", types));
+        session.setOwner(owner);
+        session.setTotalBytes(size);
+        session.setCommittedBytes(0);
+        session.setExpectedSha256(sha256 == null || sha256.isBlank() ? null : sha256.trim().toLowerCase());
+        session.setCreatedAt(Instant.now());
+        session.setUpdatedAt(session.getCreatedAt());
+
+        return status(sessions.save(session));
+    }
+
+    public Status status(UUID id) {
+        return status(find(id));
+    }
+
+    private static Status status(UploadSession session) {
+        return new Status(session.getId(), session.getOriginalFilename(), session.getTotalBytes(),
+                session.getCommittedBytes(), session.getCommittedBytes() == session.getTotalBytes(),
+                session.getSha256(), session.getUploadId());
+    }
+
+    private UploadSession find(UUID id) {
+        return sessions.findById(id).orElseThrow(() -> new NoSuchElementException("No upload session " + id));
+    }
+
+    // ======================
+    // CHUNKS
+    // ======================
+
+    /**
+     * Writes the chunk starting at {@code offset}; returns the new committed offset.
+     */
+    public long writeChunk(UUID id, long offset, InputStream in) throws Exception {
+
+        synchronized (locks.computeIfAbsent(id, key -> new Object())) {
+
+            UploadSession session = find(id);
+            if (session.getUploadId() != null) {
+                throw new IllegalStateException("Upload is already finalized");
+            }
+
+            long committed = session.getCommittedBytes();
+            if (offset < 0 || offset > committed) {
+                throw new OffsetConflictException(committed);
+            }
+
+            // A resent chunk: the part before the committed offset is already here
+            if (skip(in, committed - offset) < committed - offset) return committed;
+
+            MessageDigest digest = digestAt(session);
+            Path part = storageService.partialUpload(id);
+
+            long written;
+            try {
+                written = storageService.writeChunk(part, committed, in, session.getTotalBytes() - committed, digest);
+            } catch (Exception e) {
+                // The digest may have seen bytes that were never committed
+                digests.remove(id);
+                throw e;
+            }
+
+            if (written == 0) return committed;
+
+            if (sessions.advance(id, committed, committed + written, Instant.now()) == 0) {
+                // Another node moved the offset while we wrote
+                digests.remove(id);
+                throw new OffsetConflictException(find(id).getCommittedBytes());
+            }
+
+            digests.put(id, new Progress(digest, committed + written));
+            return committed + written;
+        }
+    }
+
+    private static long skip(InputStream in, long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            long n = in.skip(bytes - skipped);
+            if (n <= 0) {
+                if (in.read() < 0) break;
+                n = 1;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    // The running digest, or one rebuilt from the partial file (restart, or earlier chunks went to another node)
+    private MessageDigest digestAt(UploadSession session) throws IOException {
+
+        Progress progress = digests.get(session.getId());
+        if (progress != null && progress.position() == session.getCommittedBytes()) {
+            return progress.digest();
+        }
+
+        MessageDigest digest = sha256();
+        long remaining = session.getCommittedBytes();
+        if (remaining == 0) return digest;
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(storageService.partialUpload(session.getId()))) {
+            int n;
+            while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                digest.update(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+
+        return digest;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ======================
+    // FINALIZE
+    // ======================
+
+    /**
+     * Turns a complete upload into a conversion job, exactly as /upload would. Calling it again
+     * returns the same job.
+     */
+    public Status complete(UUID id) throws Exception {
+
+        synchronized (locks.computeIfAbsent(id, key -> new Object())) {
+
+            UploadSession session = find(id);
+            if (session.getUploadId() != null) return status(session);
+
+            if (session.getCommittedBytes() != session.getTotalBytes()) {
+                throw new OffsetConflictException(session.getCommittedBytes());
+            }
+
+            String sha256 = HexFormat.of().formatHex(digestAt(session).digest());
+            digests.remove(id);
+
+            Path part = storageService.partialUpload(id);
+
+            if (session.getExpectedSha256() != null && !session.getExpectedSha256().equals(sha256)) {
+                // Corrupted in transit: nothing to resume, the client starts over
+                Files.deleteIfExists(part);
+                sessions.delete(session);
+                throw new IllegalArgumentException("SHA-256 mismatch: expected "
+                        + session.getExpectedSha256() + ", received " + sha256);
+            }
+
+            String stored = storageService.storeUpload(part, session.getOriginalFilename());
+
+            FileUpload upload = new FileUpload();
+            upload.setOriginalFilename(session.getOriginalFilename());
+            upload.setStoredFilename(stored);
+            upload.setConversionType(session.getConversionType());
+            upload.setStatus("UPLOADED");
+            upload.setUploadedAt(Instant.now());
+            upload.setInputBytes(session.getTotalBytes());
+            upload.setOwner(session.getOwner());
+
+            upload = repo.save(upload);
+            jobScheduler.submitLater(upload);
+
+            session.setSha256(sha256);
+            session.setUploadId(upload.getId());
+            session.setUpdatedAt(Instant.now());
+
+            return status(sessions.save(session));
+        }
+    }
+
+    // ======================
+    // CLEANUP
+    // ======================
+
+    // Abandoned sessions lose their partial file; finalized ones are just forgotten
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval:1h}")
+    public void expire() {
+
+        for (UploadSession session : sessions.findByUpdatedAtBefore(Instant.now().minus(sessionTtl))) {
+            try {
+                Files.deleteIfExists(storageService.partialUpload(session.getId()));
+                sessions.delete(session);
+                digests.remove(session.getId());
+                locks.remove(session.getId());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
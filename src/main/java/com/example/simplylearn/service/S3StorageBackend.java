@@ -0,0 +1,264 @@
+package com.example.simplylearn.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * S3 or any S3-compatible object store (MinIO, Ceph, LocalStack...).
+ *
+ * Large files are uploaded as a multipart upload with several parts in flight and downloaded
+ * as parallel byte ranges written straight to their offsets, so one multi-GB MP4 is not
+ * limited to a single stream. Memory use is at most concurrency * part-size.
+ *
+ * For a local stand-in set storage.s3.endpoint (e.g. http://localhost:9000) and
+ * storage.s3.path-style=true.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    private final S3AsyncClient s3;
+    private final String bucket;
+    private final long partSize;
+    private final long multipartThreshold;
+    private final int concurrency;
+
+    public S3StorageBackend(
+            @Value("${storage.s3.bucket}") String bucket,
+            @Value("${storage.s3.region:us-east-1}") String region,
+            @Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.path-style:false}") boolean pathStyle,
+            @Value("${storage.s3.access-key:}") String accessKey,
+            @Value("${storage.s3.secret-key:}") String secretKey,
+            @Value("${storage.s3.part-size:16MB}") DataSize partSize,
+            @Value("${storage.s3.multipart-threshold:32MB}") DataSize multipartThreshold,
+            @Value("${storage.s3.concurrency:8}") int concurrency
+    ) {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(region))
+                .forcePathStyle(pathStyle)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(Math.max(50, concurrency * 2)));
+
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+
+        // Explicit keys for a local stand-in; otherwise the default AWS credential chain
+        if (!accessKey.isBlank()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(accessKey, secretKey)));
+        }
+
+        this.s3 = builder.build();
+        this.bucket = bucket;
+        this.partSize = partSize.toBytes();
+        this.multipartThreshold = multipartThreshold.toBytes();
+        this.concurrency = concurrency;
+    }
+
+    @PreDestroy
+    public void close() {
+        s3.close();
+    }
+
+    // ======================
+    // UPLOAD
+    // ======================
+
+    @Override
+    public void put(String key, Path source) throws Exception {
+
+        long size = Files.size(source);
+
+        if (size < multipartThreshold) {
+            await(s3.putObject(b -> b.bucket(bucket).key(key).contentLength(size),
+                    AsyncRequestBody.fromFile(source)));
+            return;
+        }
+
+        multipartUpload(key, source, size);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws Exception {
+
+        // Parts are read by offset, so a stream is spooled to disk first
+        Path spool = Files.createTempFile("s3-put-", ".part");
+        try {
+            Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            put(key, spool);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    private void multipartUpload(String key, Path source, long size) throws Exception {
+
+        String uploadId = await(s3.createMultipartUpload(b -> b.bucket(bucket).key(key))).uploadId();
+        int parts = (int) ((size + partSize - 1) / partSize);
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+
+            List<CompletedPart> completed = Flux.range(1, parts)
+                    .flatMap(part -> uploadPart(channel, key, uploadId, part, size), concurrency)
+                    .collectSortedList(Comparator.comparingInt(CompletedPart::partNumber))
+                    .block();
+
+            await(s3.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(completed))));
+
+        } catch (Exception e) {
+            // Unfinished parts are billed until the upload is aborted
+            try {
+                await(s3.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)));
+            } catch (Exception abort) {
+                e.addSuppressed(abort);
+            }
+            throw e;
+        }
+    }
+
+    private Mono<CompletedPart> uploadPart(FileChannel channel, String key, String uploadId, int part, long size) {
+
+        long offset = (part - 1) * partSize;
+        int length = (int) Math.min(partSize, size - offset);
+
+        return Mono.fromCallable(() -> read(channel, offset, length))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(buffer -> Mono.fromFuture(() -> s3.uploadPart(b -> b.bucket(bucket).key(key)
+                                .uploadId(uploadId)
+                                .partNumber(part)
+                                .contentLength((long) length),
+                        AsyncRequestBody.fromByteBuffer(buffer))))
+                .map(response -> CompletedPart.builder()
+                        .partNumber(part)
+                        .eTag(response.eTag())
+                        .build());
+    }
+
+    // ======================
+    // DOWNLOAD
+    // ======================
+
+    @Override
+    public void download(String key, Path target) throws Exception {
+
+        long size = await(s3.headObject(b -> b.bucket(bucket).key(key))).contentLength();
+
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+
+        if (size < multipartThreshold) {
+            await(s3.getObject(b -> b.bucket(bucket).key(key), AsyncResponseTransformer.toFile(target)));
+            return;
+        }
+
+        int ranges = (int) ((size + partSize - 1) / partSize);
+
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            // Each range lands at its own offset, so completion order does not matter
+            Flux.range(0, ranges)
+                    .flatMap(i -> {
+                        long start = i * partSize;
+                        long end = Math.min(size, start + partSize) - 1;
+
+                        return Mono.fromFuture(() -> s3.getObject(
+                                        b -> b.bucket(bucket).key(key).range("bytes=" + start + "-" + end),
+                                        AsyncResponseTransformer.toBytes()))
+                                .publishOn(Schedulers.boundedElastic())
+                                .doOnNext(bytes -> write(channel, bytes.asByteBuffer(), start));
+                    }, concurrency)
+                    .then()
+                    .block();
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws Exception {
+        return await(s3.getObject(b -> b.bucket(bucket).key(key),
+                AsyncResponseTransformer.toBlockingInputStream()));
+    }
+
+    @Override
+    public boolean exists(String key) throws Exception {
+        try {
+            await(s3.headObject(b -> b.bucket(bucket).key(key)));
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) return false;
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+        await(s3.deleteObject(b -> b.bucket(bucket).key(key)));
+    }
+
+    // ======================
+    // HELPERS
+    // ======================
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) break;
+        }
+        return buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long offset) {
+        try {
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The extracted text of one upload, kept as paragraphs: it is only joined into one String
+ * when it is small enough to send whole.
+ *
+ * Every paragraph is counted against the job's TextBudget while it is held. Stages that turn
+ * the text into something else either {@link #drain} it (each paragraph is released as it is
+ * handed out) or {@link #release} it once they're done.
+ */
+public class SourceText {
+
+    private final TextBudget budget;
+    private final List<String> paragraphs = new ArrayList<>();
+    private long chars;
+
+    public SourceText(TextBudget budget) {
+        this.budget = budget;
+    }
+
+    public void add(String paragraph) {
+        budget.retain(paragraph.length());
+        paragraphs.add(paragraph);
+        chars += paragraph.length();
+    }
+
+    public TextBudget budget() { return budget; }
+    public List<String> paragraphs() { return paragraphs; }
+    public long chars() { return chars; }
+
+    public String join() {
+        StringBuilder text = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, chars + 2L * paragraphs.size()));
+        for (String paragraph : paragraphs) {
+            if (!text.isEmpty()) text.append("\n\n");
+            text.append(paragraph);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Hands out the paragraphs once, in order, releasing each as it goes.
+     */
+    public Iterable<String> drain() {
+        return () -> new Iterator<>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (next < paragraphs.size()) return true;
+                paragraphs.clear();
+                return false;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                String paragraph = paragraphs.set(next++, null);
+                budget.release(paragraph.length());
+                chars -= paragraph.length();
+                return paragraph;
+            }
+        };
+    }
+
+    public void release() {
+        budget.release(chars);
+        paragraphs.clear();
+        chars = 0;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.simplylearn.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs a script's spoken lines and pauses into as few Polly requests as possible.
+ *
+ * Consecutive lines of the same voice share one SSML document, with the pauses between them
+ * as inline {@code <break>} tags, up to maxChars of SSML per request. A pause where the voice
+ * changes ends the earlier request as a trailing break. Polly renders a break inside a
+ * document as the same silence it returns for a separate break-only request, so the packed
+ * audio matches the unpacked one.
+ *
+ * Only pauses with no line in front of them to attach to still become requests of their own.
+ * A line too long for one request is split at sentence ends (failing that, at spaces) into
+ * consecutive requests of the same voice, so no request goes over maxChars.
+ */
+public class SsmlPacker {
+
+    public sealed interface Part permits Speech, Pause {}
+
+    public record Speech(String voice, String text) implements Part {}
+
+    public record Pause(int millis) implements Part {}
+
+    /**
+     * One Polly request. {@code voice} is null for a break-only request; {@code parts} is how
+     * many lines and pauses it covers.
+     */
+    public record Request(String voice, String ssml, int parts) {
+
+        public boolean pauseOnly() {
+            return voice == null;
+        }
+    }
+
+    private static final String OPEN = "<speak><prosody rate=\"medium\">";
+    private static final String CLOSE = "</prosody></speak>";
+
+    // Polly's longest single break
+    private static final int MAX_BREAK_MILLIS = 10_000;
+
+    /**
+     * One request per line and per pause, as before packing.
+     */
+    public static List<Request> unpacked(List<Part> parts) {
+        List<Request> requests = new ArrayList<>();
+        for (Part part : parts) {
+            if (part instanceof Speech speech) {
+                requests.add(new Request(speech.voice(), OPEN + escapeXml(speech.text()) + CLOSE, 1));
+            } else if (part instanceof Pause pause) {
+                requests.add(pauseOnly(pause.millis(), 1));
+            }
+        }
+        return requests;
+    }
+
+    public static List<Request> pack(List<Part> parts, int maxChars) {
+
+        List<Request> requests = new ArrayList<>();
+        Batch current = null;
+
+        // Pauses waiting for a line to lead (nothing before them to trail)
+        int leadingMillis = 0;
+        int leadingParts = 0;
+
+        for (Part part : parts) {
+
+            if (part instanceof Pause pause) {
+                if (current != null && current.fitsBreak(pause.millis(), maxChars)) {
+                    current.addBreak(pause.millis());
+                } else {
+                    if (current != null) {
+                        requests.add(current.close());
+                        current = null;
+                    }
+                    leadingMillis += pause.millis();
+                    leadingParts++;
+                }
+                continue;
+            }
+
+            Speech speech = (Speech) part;
+
+            // Room for text in a request of its own, after the pauses it may have to lead
+            int room = maxChars - OPEN.length() - CLOSE.length() - breaks(leadingMillis).length();
+            List<String> pieces = split(escapeXml(speech.text()), room);
+
+            for (int i = 0; i < pieces.size(); i++) {
+
+                String text = pieces.get(i);
+
+                if (current == null || !current.voice.equals(speech.voice()) || !current.fitsText(text, maxChars)) {
+
+                    if (current != null) requests.add(current.close());
+                    current = new Batch(speech.voice());
+
+                    if (leadingParts > 0) {
+                        current.addBreak(leadingMillis);
+                        current.parts += leadingParts - 1;
+                        leadingMillis = 0;
+                        leadingParts = 0;
+                    }
+                }
+
+                // The pieces of one line count as one part
+                current.addText(text, i == 0);
+            }
+        }
+
+        if (current != null) requests.add(current.close());
+        if (leadingParts > 0) requests.add(pauseOnly(leadingMillis, leadingParts));
+
+        return requests;
+    }
+
+    // ======================
+    // ONE REQUEST BEING FILLED
+    // ======================
+
+    private static final class Batch {
+
+        final String voice;
+        final StringBuilder body = new StringBuilder();
+        int pendingBreakMillis;
+        int parts;
+
+        Batch(String voice) {
+            this.voice = voice;
+        }
+
+        void addBreak(int millis) {
+            pendingBreakMillis += millis;
+            parts++;
+        }
+
+        void addText(String text, boolean newPart) {
+            flushBreak();
+            if (!body.isEmpty() && body.charAt(body.length() - 1) != '>') body.append(' ');
+            body.append(text);
+            if (newPart) parts++;
+        }
+
+        boolean fitsText(String text, int maxChars) {
+            return length(pendingBreakMillis) + 1 + text.length() <= maxChars;
+        }
+
+        boolean fitsBreak(int millis, int maxChars) {
+            return length(pendingBreakMillis + millis) <= maxChars;
+        }
+
+        // SSML length once closed with the given break still pending
+        private int length(int breakMillis) {
+            return OPEN.length() + body.length() + breaks(breakMillis).length() + CLOSE.length();
+        }
+
+        private void flushBreak() {
+            body.append(breaks(pendingBreakMillis));
+            pendingBreakMillis = 0;
+        }
+
+        Request close() {
+            flushBreak();
+            return new Request(voice, OPEN + body + CLOSE, parts);
+        }
+    }
+
+    // ======================
+    // OVER-LONG LINES
+    // ======================
+
+    /**
+     * Splits escaped text into pieces of at most {@code room} characters, cutting after the
+     * last sentence end that fits, else at the last space, else mid-word (never inside an
+     * entity such as {@code &amp;}).
+     */
+    static List<String> split(String text, int room) {
+
+        List<String> pieces = new ArrayList<>();
+        room = Math.max(room, 8);
+
+        String rest = text.strip();
+        while (rest.length() > room) {
+
+            int cut = lastSentenceEnd(rest, room);
+            if (cut <= 0) cut = rest.lastIndexOf(' ', room);
+            if (cut <= 0) {
+                cut = room;
+                int amp = rest.lastIndexOf('&', cut - 1);
+                if (amp > 0 && rest.indexOf(';', amp) >= cut) cut = amp;
+            }
+
+            pieces.add(rest.substring(0, cut).strip());
+            rest = rest.substring(cut).strip();
+        }
+
+        if (!rest.isEmpty() || pieces.isEmpty()) pieces.add(rest);
+        return pieces;
+    }
+
+    // Index just past the last '.', '!' or '?' followed by a space, within the first room characters
+    private static int lastSentenceEnd(String text, int room) {
+        for (int i = Math.min(room, text.length() - 1); i > 0; i--) {
+            char c = text.charAt(i - 1);
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(text.charAt(i))) return i;
+        }
+        return -1;
+    }
+
+    private static String breaks(int millis) {
+        StringBuilder sb = new StringBuilder();
+        while (millis > 0) {
+            int chunk = Math.min(millis, MAX_BREAK_MILLIS);
+            sb.append("<break time=\"").append(chunk).append("ms\"/>");
+            millis -= chunk;
+        }
+        return sb.toString();
+    }
+
+    private static Request pauseOnly(int millis, int parts) {
+        return new Request(null, "<speak>" + breaks(millis) + "</speak>", parts);
+    }
+
+    static String escapeXml(String text) {
+        return text
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;");
+    }
+}
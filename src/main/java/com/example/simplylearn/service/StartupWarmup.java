@@ -0,0 +1,49 @@
+package com.example.simplylearn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * The external clients are built lazily so the context starts (and the instance reports ready)
+ * without them. Once the app is ready this warms them up in the background, so the first
+ * conversion on a fresh instance doesn't pay for client construction either.
+ */
+@Component
+public class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final OpenAIService openAIService;
+    private final PollyService pollyService;
+    private final boolean enabled;
+
+    public StartupWarmup(
+            OpenAIService openAIService,
+            PollyService pollyService,
+            @Value("${startup.warm-up:true}") boolean enabled
+    ) {
+        this.openAIService = openAIService;
+        this.pollyService = pollyService;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+
+        if (!enabled) return;
+
+        long start = System.nanoTime();
+
+        Mono.when(openAIService.warmUp(), Blocking.run(pollyService::warmUp))
+                .doOnSuccess(v -> log.info("Clients warmed up in {} ms",
+                        (System.nanoTime() - start) / 1_000_000))
+                .doOnError(e -> log.warn("Client warm-up failed; clients are built on first use", e))
+                .onErrorComplete()
+                .subscribe();
+    }
+}
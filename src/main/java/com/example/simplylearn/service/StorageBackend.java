@@ -0,0 +1,36 @@
+package com.example.simplylearn.service;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Where uploads and converted files live. Keys are slash-separated, e.g. "uploads/abc.pdf"
+ * or "converted/abc.mp4".
+ *
+ * StorageService keeps a local working copy of every file a job touches (FFmpeg, POI and
+ * Polly all need real files) and uses the backend to publish and fetch them, so the
+ * generators never see which backend is configured (storage.backend=local|memory|s3).
+ */
+public interface StorageBackend {
+
+    void put(String key, Path source) throws Exception;
+
+    void put(String key, InputStream in, long length) throws Exception;
+
+    // Copies the object into a local file (large objects may be fetched in parallel ranges)
+    void download(String key, Path target) throws Exception;
+
+    InputStream open(String key) throws Exception;
+
+    boolean exists(String key) throws Exception;
+
+    void delete(String key) throws Exception;
+
+    /**
+     * The file that holds this key on local disk, or null when the backend is remote.
+     * LocalStorageBackend skips the copy when StorageService's working copy already is that file.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+}
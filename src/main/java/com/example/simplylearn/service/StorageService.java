@@ -1,51 +1,190 @@
 package com.example.simplylearn.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Local working copies of uploads and outputs, published to / fetched from the configured
+ * StorageBackend. With the default local backend the working copy IS the stored file.
+ */
 @Service
 public class StorageService {
 
-    private final Path uploadDir = Path.of("/tmp/uploads");
-    private final Path convertedDir = Path.of("/tmp/converted");
-    private final Path tempDir = Path.of("/tmp/temp"); // ✅ NEW (for video / temp files)
+    private final StorageBackend backend;
+    private final BlobCompression compression;
+
+    private final Path uploadDir;
+    private final Path convertedDir;
+    private final Path tempDir; // ✅ NEW (for video / temp files)
+
+    // storage.root must be a directory every node can see when web and workers run apart
+    // (not needed with a remote backend: there it is only a per-node cache)
+    public StorageService(
+            StorageBackend backend,
+            BlobCompression compression,
+            @Value("${storage.root:/tmp}") String root
+    ) throws Exception {
+        this.backend = backend;
+        this.compression = compression;
+        this.uploadDir = Path.of(root, "uploads");
+        this.convertedDir = Path.of(root, "converted");
+        this.tempDir = Path.of(root, "temp");
 
-    public StorageService() throws Exception {
         Files.createDirectories(uploadDir);
         Files.createDirectories(convertedDir);
         Files.createDirectories(tempDir); // ✅ NEW
     }
 
+    // Free space left for uploads, outputs and temp files (the smallest if they sit on different disks)
+    public long usableSpace() throws Exception {
+        return Math.min(Files.getFileStore(uploadDir).getUsableSpace(),
+                Math.min(Files.getFileStore(convertedDir).getUsableSpace(),
+                        Files.getFileStore(tempDir).getUsableSpace()));
+    }
+
     // ======================
     // UPLOADS
     // ======================
 
     // Stores ONE file, returns stored filename
     public String store(MultipartFile file) throws Exception {
+        try (InputStream in = file.getInputStream()) {
+            return store(file.getOriginalFilename(), in);
+        }
+    }
+
+    /**
+     * Stores several files at once: each one's compression and backend upload run in parallel.
+     * Returns stored filenames in input order, once every file is durable.
+     */
+    public List<String> storeAll(List<MultipartFile> files, int parallelism) {
+        return Flux.fromIterable(files)
+                .flatMapSequential(file -> Blocking.call(() -> store(file)), Math.max(1, parallelism))
+                .collectList()
+                .block();
+    }
+
+    // Stores ONE file read from a stream (e.g. a ZIP entry); the stream is read to its end, not closed
+    public String store(String originalFilename, InputStream in) throws Exception {
         String extension = "";
 
-        if (file.getOriginalFilename() != null && file.getOriginalFilename().contains(".")) {
-            extension = file.getOriginalFilename()
-                    .substring(file.getOriginalFilename().lastIndexOf("."));
+        if (originalFilename != null && originalFilename.contains(".")) {
+            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
         }
 
         String filename = UUID.randomUUID() + extension;
+        Path local = uploadDir.resolve(filename);
 
-        Files.copy(
-                file.getInputStream(),
-                uploadDir.resolve(filename),
-                StandardCopyOption.REPLACE_EXISTING
-        );
+        // Text-like uploads are stored zstd-compressed; media is stored as-is
+        try {
+            compression.write(originalFilename, in, local);
+        } catch (Exception e) {
+            // Cut off or over a limit mid-stream: no half-written file is left behind
+            Files.deleteIfExists(local);
+            throw e;
+        }
+
+        backend.put(uploadKey(filename), local);
 
         return filename;
     }
 
+    // An upload no job refers to (e.g. the rest of a bulk upload that failed)
+    public void deleteUpload(String filename) throws Exception {
+        Files.deleteIfExists(resolve(filename));
+        backend.delete(uploadKey(filename));
+    }
+
+    // Local copy of an uploaded file, fetched from the backend if this node doesn't have it
+    public Path fetch(String filename) throws Exception {
+        Path local = resolve(filename);
+        if (!Files.exists(local)) {
+            backend.download(uploadKey(filename), local);
+        }
+        return local;
+    }
+
+    // ======================
+    // RESUMABLE UPLOADS (see ResumableUploadService)
+    // ======================
+
+    // Where a resumable upload is assembled until it is finalized (under storage.root, so every node sees it)
+    public Path partialUpload(UUID sessionId) {
+        return uploadDir.resolve(sessionId + ".part");
+    }
+
+    /**
+     * Writes ONE chunk into place at {@code position} with positional FileChannel writes, feeding
+     * every byte written to {@code digest}. Fails if the chunk runs past {@code maxBytes}.
+     *
+     * If the client goes away mid-chunk, what arrived is kept: the returned count is what was
+     * written, and the client resumes from there.
+     */
+    public long writeChunk(Path part, long position, InputStream in, long maxBytes, MessageDigest digest) throws IOException {
+
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            while (true) {
+
+                // One byte past the limit, to notice a chunk that is too long
+                int want = (int) Math.min(buffer.length, maxBytes - written + 1);
+                int n;
+                try {
+                    n = in.read(buffer, 0, want);
+                } catch (IOException e) {
+                    break; // connection dropped
+                }
+                if (n < 0) break;
+
+                if (written + n > maxBytes) {
+                    throw new IllegalArgumentException("Chunk runs past the declared upload size");
+                }
+
+                int offset = 0;
+                while (offset < n) {
+                    offset += channel.write(ByteBuffer.wrap(buffer, offset, n - offset), position + written + offset);
+                }
+
+                digest.update(buffer, 0, n);
+                written += n;
+            }
+
+            channel.force(false);
+        }
+
+        return written;
+    }
+
+    // Turns a complete partial file into a stored upload (compressed like any other) and removes it
+    public String storeUpload(Path part, String originalFilename) throws Exception {
+        String stored;
+        try (InputStream in = Files.newInputStream(part)) {
+            stored = store(originalFilename, in);
+        }
+        Files.deleteIfExists(part);
+        return stored;
+    }
+
     // ======================
     // MULTI-FILE HELPERS
     // ======================
@@ -79,10 +218,50 @@ public class StorageService {
         return dir;
     }
 
+    public void deleteTempDirectory(String name) throws Exception {
+        Path dir = tempDir.resolve(name);
+        if (!Files.exists(dir)) return;
+
+        try (var paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
     // ======================
     // CONVERTED OUTPUT
     // ======================
 
+    // Makes a finished output (written at resolveConverted) visible to every node
+    public void publishConverted(String filename) throws Exception {
+        backend.put(convertedKey(filename), resolveConverted(filename));
+    }
+
+    // Publishes every file under a converted sub-directory (e.g. an HLS playlist and its segments)
+    public void publishConvertedDirectory(String directory) throws Exception {
+        Path root = resolveConverted(directory);
+        try (var files = Files.walk(root)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                publishConverted(convertedDir.relativize(file).toString().replace('\\', '/'));
+            }
+        }
+    }
+
+    // Local copy of a converted file, fetched from the backend if this node doesn't have it
+    public Path fetchConverted(String filename) throws Exception {
+        Path local = resolveConverted(filename);
+        if (!Files.exists(local)) {
+            backend.download(convertedKey(filename), local);
+        }
+        return local;
+    }
+
+    // Whether a converted file exists on this node or in the backend, without fetching it
+    public boolean hasConverted(String filename) throws Exception {
+        return Files.exists(resolveConverted(filename)) || backend.exists(convertedKey(filename));
+    }
+
     public void storeConverted(String filename, String content) throws Exception {
         Path p = resolveConverted(filename);
         Files.createDirectories(p.getParent());
@@ -94,16 +273,29 @@ public class StorageService {
                 StandardOpenOption.CREATE,
                 StandardOpenOption.TRUNCATE_EXISTING
         );
+
+        publishConverted(filename);
     }
 
     // ======================
     // FILE READING
     // ======================
 
+    // Uploaded file contents, decompressed while streaming if it was stored compressed
+    public InputStream openUpload(String storedFilename) throws Exception {
+        return compression.read(Files.newInputStream(fetch(storedFilename)));
+    }
+
+    // Decoded text of ONE upload, to be read through a fixed buffer (see ParagraphReader)
+    public Reader openText(String storedFilename) throws Exception {
+        return new InputStreamReader(openUpload(storedFilename), StandardCharsets.UTF_8);
+    }
+
     // Read ONE uploaded file as String (basic text files)
     public String readAsString(String storedFilename) throws Exception {
-        Path p = resolve(storedFilename);
-        return Files.readString(p, StandardCharsets.UTF_8);
+        try (InputStream in = openUpload(storedFilename)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
     }
 
     // Read MANY files and combine into one big string
@@ -122,4 +314,43 @@ public class StorageService {
 
         return sb.toString();
     }
+
+    // ======================
+    // CHUNK CACHE (see ChunkCache)
+    // ======================
+
+    // Cached bytes, or null when the key was never stored
+    public byte[] readCache(String key) throws Exception {
+        if (!backend.exists(cacheKey(key))) return null;
+        try (InputStream in = backend.open(cacheKey(key))) {
+            return in.readAllBytes();
+        }
+    }
+
+    public void writeCache(String key, byte[] bytes) throws Exception {
+        backend.put(cacheKey(key), new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    // Copies a cached file to target; false when the key was never stored
+    public boolean fetchCache(String key, Path target) throws Exception {
+        if (!backend.exists(cacheKey(key))) return false;
+        backend.download(cacheKey(key), target);
+        return true;
+    }
+
+    public void putCache(String key, Path source) throws Exception {
+        backend.put(cacheKey(key), source);
+    }
+
+    private static String uploadKey(String filename) {
+        return "uploads/" + filename;
+    }
+
+    private static String convertedKey(String filename) {
+        return "converted/" + filename;
+    }
+
+    private static String cacheKey(String key) {
+        return "cache/" + key;
+    }
 }
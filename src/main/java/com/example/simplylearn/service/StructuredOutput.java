@@ -0,0 +1,350 @@
+package com.example.simplylearn.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The generators' JSON response format, a streaming parser for it, and per-item validation.
+ *
+ * Every response is one object holding one array of items: summary paragraphs, podcast
+ * segments (the dialogue of one topic), slides or video scenes. OpenAI is asked for exactly
+ * this shape through a strict json_schema response format.
+ *
+ * The parser reads token by token and keeps every item that was complete, so a response cut
+ * off at max_tokens still yields its first items. Items are validated one by one, so
+ * MaterialService can re-request only the broken or missing ones.
+ */
+public class StructuredOutput {
+
+    // ======================
+    // ITEMS
+    // ======================
+
+    public sealed interface Item permits Paragraph, Segment, Slide, Scene {
+
+        /** Empty when the item is usable */
+        List<String> problems();
+
+        /** A few words identifying the item in a follow-up prompt */
+        String label();
+    }
+
+    public record Paragraph(String text) implements Item {
+
+        public List<String> problems() {
+            return blank(text) ? List.of("text is empty") : List.of();
+        }
+
+        public String label() {
+            return shorten(text);
+        }
+    }
+
+    public record Line(String speaker, String text) {}
+
+    public record Segment(List<Line> lines) implements Item {
+
+        public List<String> problems() {
+            List<String> problems = new ArrayList<>();
+            if (lines.isEmpty()) problems.add("lines is empty");
+            for (int i = 0; i < lines.size(); i++) {
+                Line line = lines.get(i);
+                if (!"A".equals(line.speaker()) && !"B".equals(line.speaker())) {
+                    problems.add("line " + (i + 1) + ": speaker must be \"A\" or \"B\"");
+                }
+                if (blank(line.text())) problems.add("line " + (i + 1) + ": text is empty");
+            }
+            return problems;
+        }
+
+        public String label() {
+            return lines.isEmpty() ? "(empty)" : shorten(lines.get(0).text());
+        }
+    }
+
+    public record Slide(String title, List<String> bullets, String image) implements Item {
+
+        public List<String> problems() {
+            List<String> problems = new ArrayList<>();
+            if (blank(title)) problems.add("title is empty");
+            // The slideshow prompt asks for 3 to 5, so anything else is repaired
+            if (bullets.size() < 3 || bullets.size() > 5) problems.add("bullets must have 3 to 5 entries");
+            if (bullets.stream().anyMatch(StructuredOutput::blank)) problems.add("bullets contains an empty bullet");
+            return problems;
+        }
+
+        public String label() {
+            return shorten(title);
+        }
+    }
+
+    public record Scene(String narration, String illustration) implements Item {
+
+        public List<String> problems() {
+            List<String> problems = new ArrayList<>();
+            if (blank(narration)) problems.add("narration is empty");
+            // One scene is one Polly request per line; generative voices take at most 3000 characters
+            else if (narration.length() > MAX_NARRATION_CHARS) {
+                problems.add("narration is longer than " + MAX_NARRATION_CHARS + " characters; shorten it");
+            }
+            if (blank(illustration)) problems.add("illustration is empty");
+            return problems;
+        }
+
+        public String label() {
+            return shorten(narration);
+        }
+    }
+
+    private static final int MAX_NARRATION_CHARS = 2500;
+
+    // ======================
+    // DOCUMENT
+    // ======================
+
+    /**
+     * One parsed response (or several merged). {@code complete} is false when the JSON ended
+     * early or broke after the last item kept.
+     */
+    public record Document(String type, List<Item> items, boolean complete) {
+
+        public boolean isValid() {
+            return complete && !items.isEmpty() && invalidItems().isEmpty();
+        }
+
+        public List<Integer> invalidItems() {
+            List<Integer> invalid = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (!items.get(i).problems().isEmpty()) invalid.add(i);
+            }
+            return invalid;
+        }
+
+        public <T extends Item> List<T> items(Class<T> kind) {
+            return items.stream().filter(kind::isInstance).map(kind::cast).toList();
+        }
+
+        public Document replace(List<Integer> indexes, List<Item> replacements) {
+            List<Item> replaced = new ArrayList<>(items);
+            for (int i = 0; i < Math.min(indexes.size(), replacements.size()); i++) {
+                replaced.set(indexes.get(i), replacements.get(i));
+            }
+            return new Document(type, replaced, complete);
+        }
+
+        public Document append(Document continuation) {
+            List<Item> all = new ArrayList<>(items);
+            all.addAll(continuation.items());
+            return new Document(type, all, continuation.complete());
+        }
+
+        public Document withoutInvalid() {
+            return new Document(type, items.stream().filter(item -> item.problems().isEmpty()).toList(), true);
+        }
+
+        public static Document merge(String type, List<Document> parts) {
+            List<Item> all = new ArrayList<>();
+            boolean complete = true;
+            for (Document part : parts) {
+                all.addAll(part.items());
+                complete &= part.complete();
+            }
+            return new Document(type, all, complete);
+        }
+
+        public String toJson() {
+            return write(Map.of(arrayField(type), items));
+        }
+    }
+
+    public static String toJson(Item item) {
+        return write(item);
+    }
+
+    private static String write(Object value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ======================
+    // SCHEMAS (OpenAI response_format)
+    // ======================
+
+    private static final Map<String, Object> STRING = Map.of("type", "string");
+
+    public static String arrayField(String type) {
+        return switch (type) {
+            case "summary" -> "paragraphs";
+            case "podcast" -> "segments";
+            case "slideshow" -> "slides";
+            case "video" -> "scenes";
+            default -> throw new UnsupportedOperationException("No structured output for " + type);
+        };
+    }
+
+    /** The whole response: {"slides": [...]} and so on */
+    public static Map<String, Object> responseFormat(String type) {
+        return jsonSchema(type, object(Map.of(arrayField(type), array(itemSchema(type)))));
+    }
+
+    /** Replacements for specific items: {"items": [...]} */
+    public static Map<String, Object> repairFormat(String type) {
+        return jsonSchema(type + "_repair", object(Map.of("items", array(itemSchema(type)))));
+    }
+
+    private static Map<String, Object> itemSchema(String type) {
+        return switch (type) {
+            case "summary" -> object(Map.of("text", STRING));
+            case "podcast" -> object(Map.of("lines", array(object(Map.of(
+                    "speaker", Map.of("type", "string", "enum", List.of("A", "B")),
+                    "text", STRING)))));
+            case "slideshow" -> object(Map.of("title", STRING, "bullets", array(STRING), "image", STRING));
+            case "video" -> object(Map.of("narration", STRING, "illustration", STRING));
+            default -> throw new UnsupportedOperationException("No structured output for " + type);
+        };
+    }
+
+    // Strict mode: every property required, nothing else allowed
+    private static Map<String, Object> object(Map<String, Object> properties) {
+        return Map.of(
+                "type", "object",
+                "properties", properties,
+                "required", List.copyOf(properties.keySet()),
+                "additionalProperties", false
+        );
+    }
+
+    private static Map<String, Object> array(Map<String, Object> items) {
+        return Map.of("type", "array", "items", items);
+    }
+
+    private static Map<String, Object> jsonSchema(String name, Map<String, Object> schema) {
+        return Map.of(
+                "type", "json_schema",
+                "json_schema", Map.of("name", name, "strict", true, "schema", schema)
+        );
+    }
+
+    // ======================
+    // STREAMING PARSER
+    // ======================
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final JsonFactory FACTORY = JSON.getFactory();
+
+    public static Document parse(String type, String json) {
+        return parse(type, json, arrayField(type));
+    }
+
+    /** A repair response ({"items": [...]}); only its items matter */
+    public static List<Item> parseRepair(String type, String json) {
+        return parse(type, json, "items").items();
+    }
+
+    private static Document parse(String type, String json, String field) {
+
+        List<Item> items = new ArrayList<>();
+
+        // Tolerates anything around the object (e.g. a code fence from a non-strict model)
+        int start = json.indexOf('{');
+        if (start < 0) return new Document(type, items, false);
+
+        try (JsonParser p = FACTORY.createParser(json.substring(start))) {
+
+            if (p.nextToken() != JsonToken.START_OBJECT) return new Document(type, items, false);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+
+                boolean ours = field.equals(p.currentName());
+                JsonToken value = p.nextToken();
+
+                if (!ours || value != JsonToken.START_ARRAY) {
+                    p.skipChildren();
+                    continue;
+                }
+
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    items.add(toItem(type, readObject(p)));
+                }
+                return new Document(type, items, true);
+            }
+
+            return new Document(type, items, false);
+
+        } catch (IOException | RuntimeException e) {
+            // Cut off or malformed: keep the items completed before the break
+            return new Document(type, items, false);
+        }
+    }
+
+    // Called on START_OBJECT; values are String, List or Map
+    private static Map<String, Object> readObject(JsonParser p) throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            object.put(name, readValue(p));
+        }
+        return object;
+    }
+
+    private static Object readValue(JsonParser p) throws IOException {
+        return switch (p.currentToken()) {
+            case START_OBJECT -> readObject(p);
+            case START_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(p));
+                }
+                yield list;
+            }
+            case VALUE_NULL -> null;
+            default -> p.getText();
+        };
+    }
+
+    private static Item toItem(String type, Map<String, Object> o) {
+        return switch (type) {
+            case "summary" -> new Paragraph(string(o, "text"));
+            case "podcast" -> new Segment(list(o, "lines").stream()
+                    .map(line -> line instanceof Map<?, ?> m
+                            ? new Line(string(m, "speaker"), string(m, "text"))
+                            : new Line(null, String.valueOf(line)))
+                    .toList());
+            case "slideshow" -> new Slide(string(o, "title"),
+                    list(o, "bullets").stream().map(String::valueOf).toList(),
+                    string(o, "image"));
+            case "video" -> new Scene(string(o, "narration"), string(o, "illustration"));
+            default -> throw new UnsupportedOperationException("No structured output for " + type);
+        };
+    }
+
+    private static String string(Map<?, ?> o, String key) {
+        Object value = o.get(key);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private static List<?> list(Map<?, ?> o, String key) {
+        return o.get(key) instanceof List<?> list ? list : List.of();
+    }
+
+    private static boolean blank(String text) {
+        return text == null || text.isBlank();
+    }
+
+    private static String shorten(String text) {
+        if (text == null) return "";
+        return text.length() <= 60 ? text : text.substring(0, 60) + "…";
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.simplylearn.service;
+
+import java.util.List;
+
+/**
+ * What the generators are fed for one upload: either one block of text
+ * (raw input or a shared outline), or one focused block per outline section.
+ */
+public record StudyMaterial(String text, List<Section> sections) {
+
+    public record Section(String title, String text) {}
+
+    public static StudyMaterial whole(String text) {
+        return new StudyMaterial(text, null);
+    }
+
+    public static StudyMaterial sectioned(List<Section> sections) {
+        return new StudyMaterial(null, sections);
+    }
+
+    public boolean isSectioned() {
+        return sections != null;
+    }
+
+    public long chars() {
+        if (!isSectioned()) return text.length();
+        return sections.stream().mapToLong(section -> section.title().length() + section.text().length()).sum();
+    }
+}
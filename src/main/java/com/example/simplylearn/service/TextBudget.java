@@ -0,0 +1,53 @@
+package com.example.simplylearn.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimated heap held by ONE job's text (extracted paragraphs, dedup fingerprints, passages,
+ * prepared material), the most it held at once, and the ceiling it may not pass.
+ *
+ * Going over the ceiling fails that job with a clear error instead of letting a few large
+ * uploads run the whole JVM out of memory. Text is counted at 2 bytes per char; Latin-1
+ * strings take half that, so the estimate errs high.
+ */
+public class TextBudget {
+
+    private final long maxBytes;
+
+    private final AtomicLong retained = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+
+    public TextBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static TextBudget unlimited() {
+        return new TextBudget(Long.MAX_VALUE);
+    }
+
+    public void retain(long chars) {
+        retainBytes(chars * 2);
+    }
+
+    public void release(long chars) {
+        releaseBytes(chars * 2);
+    }
+
+    public void retainBytes(long bytes) {
+
+        long now = retained.addAndGet(bytes);
+        peak.accumulateAndGet(now, Math::max);
+
+        if (now > maxBytes) {
+            throw new IllegalStateException("Upload is too large to convert: its text needs more than "
+                    + maxBytes / (1024 * 1024) + " MB of memory (job.memory.max-text)");
+        }
+    }
+
+    public void releaseBytes(long bytes) {
+        retained.addAndGet(-bytes);
+    }
+
+    public long retainedBytes() { return retained.get(); }
+    public long peakBytes() { return peak.get(); }
+}
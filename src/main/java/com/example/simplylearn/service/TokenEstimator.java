@@ -0,0 +1,49 @@
+package com.example.simplylearn.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local token counting with the same BPE vocabulary as gpt-4o-mini (o200k_base),
+ * so prompts can be sized before they are sent.
+ */
+@Component
+public class TokenEstimator {
+
+    // Chat framing: per-message wrapper tokens plus the reply primer
+    private static final int MESSAGE_OVERHEAD = 7;
+
+    private final Encoding encoding =
+            Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.O200K_BASE);
+
+    public int count(String text) {
+        return encoding.countTokensOrdinary(text);
+    }
+
+    public int countMessage(String content) {
+        return count(content) + MESSAGE_OVERHEAD;
+    }
+
+    /**
+     * Cuts text down to at most {@code maxTokens}, preferring to stop at a paragraph boundary.
+     */
+    public String truncate(String text, int maxTokens) {
+
+        if (maxTokens <= 0) return "";
+
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        if (!result.isTruncated()) return text;
+
+        String cut = encoding.decode(result.getTokens());
+
+        int paragraph = cut.lastIndexOf("\n\n");
+        if (paragraph > cut.length() * 0.8) {
+            cut = cut.substring(0, paragraph);
+        }
+
+        return cut.trim();
+    }
+}
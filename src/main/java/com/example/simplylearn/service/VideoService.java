@@ -1,154 +1,317 @@
 package com.example.simplylearn.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.nio.file.*;
-        import java.util.ArrayList;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class VideoService {
 
     private final PollyService pollyService;
-
-    public VideoService(PollyService pollyService) {
+    private final ChunkCache cache;
+    private final EncodingProfiles profiles;
+
+    private final Duration sceneTimeout;
+    private final Duration concatTimeout;
+
+    private final boolean hlsEnabled;
+    private final int segmentSeconds;
+
+    public VideoService(
+            PollyService pollyService,
+            ChunkCache cache,
+            EncodingProfiles profiles,
+            @Value("${job.timeout.ffmpeg-scene:10m}") Duration sceneTimeout,
+            @Value("${job.timeout.ffmpeg-concat:20m}") Duration concatTimeout,
+            @Value("${video.hls.enabled:false}") boolean hlsEnabled,
+            @Value("${video.hls.segment-seconds:6}") int segmentSeconds
+    ) {
         this.pollyService = pollyService;
+        this.cache = cache;
+        this.profiles = profiles;
+        this.sceneTimeout = sceneTimeout;
+        this.concatTimeout = concatTimeout;
+        this.hlsEnabled = hlsEnabled;
+        this.segmentSeconds = segmentSeconds;
     }
-    public record VideoScene(
-            String narration,
-            String illustration
-    ) {}
-
 
     // ======================
     // 🎬 MAIN ENTRY
     // ======================
-    public void createVideo(
-            String videoScript,
+    public Mono<Void> createVideo(
+            List<StructuredOutput.Scene> scenes,
             Path imagesDir,
-            Path outputVideo
-    ) throws Exception {
+            Path outputVideo,
+            long voiceSeed
+    ) {
 
-        List<VideoScene> scenes = parseScenes(videoScript);
+        if (scenes.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Video script has no scenes"));
+        }
 
-        List<Path> sceneVideos = new ArrayList<>();
+        String voice = pollyService.narrationVoice(voiceSeed).toString();
+        // Every scene of one video uses the same profile: concat copies the streams as they are
+        EncodingProfile profile = profiles.active();
+
+        return Flux.range(0, scenes.size())
+                .concatMap(index -> {
+
+                    StructuredOutput.Scene scene = scenes.get(index);
+
+                    Path sceneAudio = imagesDir.resolve("scene-" + index + ".mp3");
+                    Path sceneImage = imagesDir.resolve("scene-" + index + ".png");
+                    Path sceneVideo = imagesDir.resolve("scene-" + index + ".mp4");
+
+                    // Unchanged scenes of a re-converted upload are reused as rendered
+                    String sceneKey = ChunkCache.key(voice, profile.toString(), "keyframes=" + segmentSeconds,
+                            scene.narration(), scene.illustration());
+                    Map<String, Object> encode = new ConcurrentHashMap<>();
+
+                    // 1️⃣ Generate audio (single speaker, generative)
+                    return JobTrace.span("scene " + index, cache.file("scene", sceneKey, sceneVideo, () ->
+                                    pollyService.synthesizeSingleSpeakerPodcast(
+                                                    scene.narration(),
+                                                    sceneAudio,
+                                                    voiceSeed
+                                            )
+                                            .then(JobTrace.span("encode", encode,
+                                                    // 2️⃣ Create placeholder image (text-based for now)
+                                                    renderImage(sceneImage, scene.illustration())
+                                                            // 3️⃣ Create scene video with exact timing
+                                                            .then(encodeScene(profile, sceneImage, sceneAudio, sceneVideo))
+                                                            .then(Blocking.run(() ->
+                                                                    encode.put("bytes", Files.size(sceneVideo))))))))
+                            .thenReturn(sceneVideo);
+                })
+                .collectList()
+                // 4️⃣ Concatenate all scenes
+                .flatMap(sceneVideos -> {
+                    Map<String, Object> concat = new ConcurrentHashMap<>();
+                    concat.put("scenes", sceneVideos.size());
+
+                    Mono<Void> mp4 = JobTrace.span("concat", concat, concatVideos(sceneVideos, imagesDir, outputVideo)
+                            .then(Blocking.run(() -> concat.put("bytes", Files.size(outputVideo)))));
+
+                    if (!hlsEnabled) return mp4;
+
+                    return mp4.then(JobTrace.span("hls", segmentHls(sceneVideos, hlsDirectory(outputVideo))));
+                });
+    }
 
-        int index = 0;
-        for (VideoScene scene : scenes) {
+    public boolean hlsEnabled() {
+        return hlsEnabled;
+    }
+
+    // "abc.mp4" → "abc-hls/" beside it, holding index.m3u8 and the segments
+    public static Path hlsDirectory(Path outputVideo) {
+        String name = outputVideo.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return outputVideo.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + "-hls");
+    }
 
-            Path sceneAudio = imagesDir.resolve("scene-" + index + ".mp3");
-            Path sceneImage = imagesDir.resolve("scene-" + index + ".png");
-            Path sceneVideo = imagesDir.resolve("scene-" + index + ".mp4");
+    // ======================
+    // 📺 HLS
+    // ======================
 
-            // 1️⃣ Generate audio (single speaker, generative)
-            pollyService.synthesizeSingleSpeakerPodcast(
-                    scene.narration(),
-                    sceneAudio
-            );
+    /**
+     * Cuts every scene into MPEG-TS segments of about video.hls.segment-seconds on its own, so
+     * every scene starts a new segment (seeking to a scene fetches nothing of the one before),
+     * then joins the scenes' lists into one VOD playlist. Segments are stream copies: scenes
+     * carry a keyframe every segment-seconds (see encodeScene), so nothing is re-encoded.
+     */
+    private Mono<Void> segmentHls(List<Path> sceneVideos, Path hlsDir) {
+
+        List<HlsSegment> playlist = new ArrayList<>();
+
+        return Blocking.run(() -> Files.createDirectories(hlsDir))
+                .thenMany(Flux.range(0, sceneVideos.size()))
+                .concatMap(index -> Mono.defer(() -> {
+
+                    String prefix = "scene-%03d".formatted(index);
+                    Path sceneList = hlsDir.resolve(prefix + ".m3u8");
+                    // Timestamps continue where the previous scene ended: one timeline, no discontinuities
+                    double offset = playlist.stream().mapToDouble(HlsSegment::seconds).sum();
+
+                    return runFFmpeg(List.of(
+                                    "ffmpeg",
+                                    "-y",
+                                    "-i", sceneVideos.get(index).toString(),
+                                    "-c", "copy",
+                                    "-output_ts_offset", String.valueOf(offset),
+                                    "-f", "segment",
+                                    "-segment_time", String.valueOf(segmentSeconds),
+                                    "-segment_format", "mpegts",
+                                    "-segment_list", sceneList.toString(),
+                                    "-segment_list_type", "m3u8",
+                                    hlsDir.resolve(prefix + "-%03d.ts").toString()
+                            ), hlsDir.resolve(prefix + ".log"), sceneTimeout)
+                            .then(Blocking.run(() -> {
+                                playlist.addAll(readSegments(Files.readAllLines(sceneList)));
+                                Files.delete(sceneList);
+                                Files.delete(hlsDir.resolve(prefix + ".log"));
+                            }));
+                }))
+                .then(Blocking.run(() -> Files.writeString(hlsDir.resolve("index.m3u8"), playlist(playlist))));
+    }
 
-            // 2️⃣ Create placeholder image (text-based for now)
-            ImageUtil.createPlaceholderImage(
-                    sceneImage,
-                    scene.illustration()
-            );
+    record HlsSegment(double seconds, String uri) {}
 
-            // 3️⃣ Create scene video with exact timing
-            runFFmpegScene(sceneImage, sceneAudio, sceneVideo);
+    // The #EXTINF entries of an ffmpeg segment list
+    static List<HlsSegment> readSegments(List<String> lines) {
+        List<HlsSegment> segments = new ArrayList<>();
+        for (int i = 0; i < lines.size() - 1; i++) {
+            String line = lines.get(i).trim();
+            if (!line.startsWith("#EXTINF:")) continue;
 
-            sceneVideos.add(sceneVideo);
-            index++;
+            String duration = line.substring("#EXTINF:".length()).split(",")[0];
+            segments.add(new HlsSegment(Double.parseDouble(duration), lines.get(i + 1).trim()));
         }
-
-        // 4️⃣ Concatenate all scenes
-        concatVideos(sceneVideos, outputVideo);
+        return segments;
     }
 
-    // ======================
-    // 🧠 PARSER
-    // ======================
-    private List<VideoScene> parseScenes(String script) {
-
-        List<VideoScene> scenes = new ArrayList<>();
-
-        String narration = null;
-        String illustration = null;
-
-        for (String line : script.split("\\r?\\n")) {
-            line = line.trim();
-
-            if (line.equals("SCENE:")) {
-                if (narration != null && illustration != null) {
-                    scenes.add(new VideoScene(narration, illustration));
-                }
-                narration = null;
-                illustration = null;
-            }
-            else if (line.startsWith("Narration:")) {
-                narration = line.substring(10).trim();
-            }
-            else if (line.startsWith("Illustration:")) {
-                illustration = line.substring(13).trim();
-            }
-        }
+    static String playlist(List<HlsSegment> segments) {
 
-        if (narration != null && illustration != null) {
-            scenes.add(new VideoScene(narration, illustration));
+        long target = (long) Math.ceil(segments.stream().mapToDouble(HlsSegment::seconds).max().orElse(1));
+
+        StringBuilder sb = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:3\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-TARGETDURATION:").append(target).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n");
+
+        for (HlsSegment segment : segments) {
+            sb.append("#EXTINF:").append(String.format(Locale.ROOT, "%.3f", segment.seconds())).append(",\n")
+                    .append(segment.uri()).append('\n');
         }
 
-        return scenes;
+        return sb.append("#EXT-X-ENDLIST\n").toString();
     }
 
     // ======================
     // 🎥 FFmpeg HELPERS
     // ======================
-    private void runFFmpegScene(Path image, Path audio, Path output) throws Exception {
+    Mono<Void> encodeScene(EncodingProfile profile, Path image, Path audio, Path output) {
 
-        ProcessBuilder pb = new ProcessBuilder(
+        List<String> command = new ArrayList<>(List.of(
                 "ffmpeg",
                 "-y",
                 "-loop", "1",
+                "-framerate", String.valueOf(profile.fps()),
                 "-i", image.toString(),
-                "-i", audio.toString(),
-                "-c:v", "libx264",
+                "-i", audio.toString()
+        ));
+        command.addAll(profile.x264Args());
+        // A keyframe every HLS segment length: segments cut there without re-encoding, and MP4 seeks land close
+        command.addAll(List.of("-force_key_frames", "expr:gte(t,n_forced*" + segmentSeconds + ")"));
+        command.addAll(List.of(
                 "-c:a", "aac",
                 "-shortest",
-                "-pix_fmt", "yuv420p",
                 output.toString()
-        );
+        ));
 
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
-
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-            while (r.readLine() != null) {}
-        }
-
-        p.waitFor();
+        return runFFmpeg(command, output.resolveSibling(output.getFileName() + ".log"), sceneTimeout);
     }
 
-    private void concatVideos(List<Path> videos, Path output) throws Exception {
+    private static Mono<Void> renderImage(Path image, String text) {
+        return PipelineEvents.record(() -> new PipelineEvents.ImageRenderEvent(text.length()),
+                event -> Blocking.run(() -> {
+                    ImageUtil.createPlaceholderImage(image, text);
+                    event.imageBytes = Files.size(image);
+                }));
+    }
 
-        Path listFile = Files.createTempFile("ffmpeg-list", ".txt");
+    private Mono<Void> concatVideos(List<Path> videos, Path workDir, Path output) {
+
+        Path listFile = workDir.resolve("scenes.txt");
+
+        return Blocking.run(() -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (Path v : videos) {
+                        sb.append("file '").append(v.toAbsolutePath()).append("'\n");
+                    }
+
+                    Files.writeString(listFile, sb.toString());
+                })
+                .then(runFFmpeg(List.of(
+                        "ffmpeg",
+                        "-y",
+                        "-f", "concat",
+                        "-safe", "0",
+                        "-i", listFile.toString(),
+                        "-c", "copy",
+                        // moov atom up front: playback starts before the download finishes
+                        "-movflags", "+faststart",
+                        output.toString()
+                ), workDir.resolve("concat.log"), concatTimeout));
+    }
 
-        StringBuilder sb = new StringBuilder();
-        for (Path v : videos) {
-            sb.append("file '").append(v.toAbsolutePath()).append("'\n");
-        }
+    /**
+     * Runs ffmpeg without holding a thread while it works. Output goes to a log file (its tail
+     * is included if ffmpeg fails). On timeout or job cancellation the whole process tree is killed.
+     */
+    static Mono<Void> runFFmpeg(List<String> command, Path log, Duration timeout) {
+
+        Path output = Path.of(command.get(command.size() - 1));
+
+        return PipelineEvents.record(() -> new PipelineEvents.FfmpegEvent(String.join(" ", command)),
+                event -> Mono.<Void>create(sink -> {
+
+                            Process process;
+                            try {
+                                process = new ProcessBuilder(command)
+                                        .redirectErrorStream(true)
+                                        .redirectOutput(log.toFile())
+                                        .start();
+                            } catch (IOException e) {
+                                sink.error(e);
+                                return;
+                            }
+
+                            event.pid = process.pid();
+                            sink.onDispose(() -> destroyTree(process));
+
+                            process.onExit().thenAccept(exited -> {
+                                event.exitCode = exited.exitValue();
+                                if (exited.exitValue() == 0) {
+                                    event.outputBytes = output.toFile().length();
+                                    sink.success();
+                                } else {
+                                    sink.error(new IllegalStateException(
+                                            "ffmpeg exited with " + exited.exitValue() + ":\n" + tail(log)));
+                                }
+                            });
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        // Its own message: a stage timeout further up must not claim this one
+                        .timeout(timeout, Mono.error(() -> new IllegalStateException(
+                                "ffmpeg timed out after " + timeout + " writing " + output.getFileName()))));
+    }
 
-        Files.writeString(listFile, sb.toString());
+    private static void destroyTree(Process process) {
+        if (!process.isAlive()) return;
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg",
-                "-y",
-                "-f", "concat",
-                "-safe", "0",
-                "-i", listFile.toString(),
-                "-c", "copy",
-                output.toString()
-        );
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
 
-        pb.inheritIO().start().waitFor();
+    private static String tail(Path log) {
+        try {
+            List<String> lines = Files.readAllLines(log);
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - 15), lines.size()));
+        } catch (IOException e) {
+            return "(no ffmpeg log)";
+        }
     }
 }
@@ -0,0 +1,74 @@
+package com.example.simplylearn.controller;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// app.role=web: jobs are queued here but never run
+@SpringBootTest(properties = {
+		"app.role=web",
+		"admission.enabled=false",
+		"storage.root=${java.io.tmpdir}/simplylearn-file-controller-test"
+})
+@AutoConfigureMockMvc
+class FileControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private FileUploadRepository repo;
+
+	@Test
+	void apiUploadAnswers202ThenQueues() throws Exception {
+		MockMultipartFile file = new MockMultipartFile("files", "notes.txt", "text/plain",
+				"Cells divide by mitosis.".getBytes());
+
+		MvcResult result = mvc.perform(multipart("/upload")
+						.file(file)
+						.param("conversion", "summary")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isAccepted())
+				.andExpect(header().exists("Location"))
+				.andExpect(jsonPath("$.status").value("UPLOADED"))
+				.andReturn();
+
+		String body = result.getResponse().getContentAsString();
+		UUID id = UUID.fromString(body.replaceAll(".*\"jobId\":\"([^\"]+)\".*", "$1"));
+
+		// Queued off the request thread, after the response
+		String status = null;
+		for (int i = 0; i < 50 && !"QUEUED".equals(status); i++) {
+			Thread.sleep(100);
+			status = repo.findById(id).map(FileUpload::getStatus).orElse(null);
+		}
+		assertEquals("QUEUED", status);
+	}
+
+	@Test
+	void browserUploadRedirects() throws Exception {
+		MockMultipartFile file = new MockMultipartFile("files", "notes.txt", "text/plain",
+				"Cells divide by mitosis.".getBytes());
+
+		mvc.perform(multipart("/upload")
+						.file(file)
+						.param("conversion", "summary")
+						.accept(MediaType.TEXT_HTML))
+				.andExpect(status().is3xxRedirection());
+	}
+}
@@ -0,0 +1,160 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.service.AdaptiveLimiter.Failure;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+
+	private final VirtualTimeScheduler clock = VirtualTimeScheduler.create();
+
+	@Test
+	void throttleHalvesConcurrencyOncePerCooldown() {
+		AdaptiveLimiter limiter = limiter(8, 1);
+
+		throttle(limiter);
+		assertEquals(4, limiter.currentConcurrencyLimit());
+
+		// A burst of 429s within the cooldown counts once
+		throttle(limiter);
+		assertEquals(4, limiter.currentConcurrencyLimit());
+
+		clock.advanceTimeBy(Duration.ofSeconds(1));
+		throttle(limiter);
+		assertEquals(2, limiter.currentConcurrencyLimit());
+	}
+
+	@Test
+	void successesWinConcurrencyBack() {
+		AdaptiveLimiter limiter = limiter(8, 1);
+		throttle(limiter);
+
+		// About +1 per window of "limit" successes
+		for (int i = 0; i < 4; i++) succeed(limiter);
+		assertEquals(4, limiter.currentConcurrencyLimit());
+		succeed(limiter);
+		assertEquals(5, limiter.currentConcurrencyLimit());
+
+		for (int i = 0; i < 100; i++) succeed(limiter);
+		assertEquals(8, limiter.currentConcurrencyLimit());
+	}
+
+	@Test
+	void retryAfterPausesTheWholeLimiter() {
+		AdaptiveLimiter limiter = limiter(8, 2);
+		List<Long> sentAt = new CopyOnWriteArrayList<>();
+		List<String> results = new CopyOnWriteArrayList<>();
+		AtomicInteger attempts = new AtomicInteger();
+
+		limiter.call(1, () -> {
+			sentAt.add(now());
+			return attempts.getAndIncrement() == 0
+					? Mono.<String>error(new Throttled(Duration.ofSeconds(5)))
+					: Mono.just("retried");
+		}).subscribe(results::add);
+
+		clock.advanceTimeBy(Duration.ofSeconds(1));
+		limiter.call(1, () -> {
+			sentAt.add(now());
+			return Mono.just("other");
+		}).subscribe(results::add);
+
+		// Backoff alone would have retried after 100ms at most
+		clock.advanceTimeBy(Duration.ofMillis(3_900));
+		assertEquals(List.of(0L), sentAt);
+		assertTrue(results.isEmpty());
+
+		clock.advanceTimeBy(Duration.ofMillis(100));
+		assertEquals(List.of(0L, 5_000L, 5_000L), sentAt);
+		assertEquals(2, results.size());
+		assertTrue(results.containsAll(List.of("retried", "other")));
+	}
+
+	@Test
+	void retriesStopAtMaxAttempts() {
+		AdaptiveLimiter limiter = limiter(8, 3);
+		AtomicInteger attempts = new AtomicInteger();
+
+		StepVerifier.create(limiter.call(1, () -> {
+					attempts.incrementAndGet();
+					return Mono.error(new IllegalStateException("503"));
+				}))
+				.then(() -> clock.advanceTimeBy(Duration.ofMinutes(1)))
+				.expectError(IllegalStateException.class)
+				.verify(Duration.ofSeconds(5));
+
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	void fatalErrorsAreNotRetried() {
+		AdaptiveLimiter limiter = limiter(8, 3);
+		AtomicInteger attempts = new AtomicInteger();
+
+		StepVerifier.create(limiter.call(1, () -> {
+					attempts.incrementAndGet();
+					return Mono.error(new IllegalArgumentException("400"));
+				}))
+				.expectError(IllegalArgumentException.class)
+				.verify(Duration.ofSeconds(5));
+
+		assertEquals(1, attempts.get());
+		assertEquals(8, limiter.currentConcurrencyLimit());
+	}
+
+	// ======================
+	// HELPERS
+	// ======================
+
+	private static final class Throttled extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Duration retryAfter;
+
+		Throttled(Duration retryAfter) {
+			super("429");
+			this.retryAfter = retryAfter;
+		}
+	}
+
+	private static Failure classify(Throwable error) {
+		if (error instanceof Throttled throttled) return Failure.throttled(throttled.retryAfter);
+		if (error instanceof IllegalStateException) return Failure.transientError();
+		return Failure.fatal();
+	}
+
+	// Rate buckets large enough that only the concurrency limit and retries matter
+	private AdaptiveLimiter limiter(int maxConcurrency, int maxAttempts) {
+		return new AdaptiveLimiter("test", 1_000, 60_000_000, maxConcurrency,
+				new AdaptiveLimiter.RetrySettings(maxAttempts, Duration.ofMillis(100), Duration.ofSeconds(1)),
+				AdaptiveLimiterTest::classify, clock, () -> clock.now(TimeUnit.NANOSECONDS));
+	}
+
+	private long now() {
+		return clock.now(TimeUnit.MILLISECONDS);
+	}
+
+	private static void throttle(AdaptiveLimiter limiter) {
+		StepVerifier.create(limiter.call(1, () -> Mono.error(new Throttled(null))))
+				.expectError(Throttled.class)
+				.verify(Duration.ofSeconds(5));
+	}
+
+	private static void succeed(AdaptiveLimiter limiter) {
+		StepVerifier.create(limiter.call(1, () -> Mono.just("ok")))
+				.expectNext("ok")
+				.verifyComplete();
+	}
+}
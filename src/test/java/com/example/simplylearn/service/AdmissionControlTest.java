@@ -0,0 +1,70 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+	private static final long GB = 1024L * 1024 * 1024;
+
+	private final AdmissionControl admission = new AdmissionControl(
+			null, null, new PromptBudgets(new StandardEnvironment()),
+			true, DataSize.ofMegabytes(256), DataSize.ofGigabytes(1), 4,
+			Duration.ofMinutes(30), Duration.ofMinutes(20), 200_000, 300_000,
+			2.0, DataSize.ofMegabytes(6));
+
+	private AdmissionControl.Snapshot idle() {
+		return new AdmissionControl.Snapshot(50 * GB, 4 * GB, 0, 0, 0, 0, 0);
+	}
+
+	@Test
+	void acceptsSmallUploadOnIdleServer() {
+		AdmissionControl.Estimate estimate = admission.estimate(List.of("summary", "video"), 200_000);
+
+		assertTrue(admission.decide(estimate, idle()).accepted());
+		assertTrue(estimate.ttsChars() > 0);
+		assertTrue(estimate.encodeSeconds() > 0);
+	}
+
+	@Test
+	void rejectsUploadOverTextLimit() {
+		AdmissionControl.Estimate estimate = admission.estimate(List.of("summary"), 200L * 1024 * 1024);
+
+		AdmissionControl.Decision decision = admission.decide(estimate, idle());
+
+		assertEquals(AdmissionControl.Outcome.REJECT, decision.outcome());
+		assertEquals(413, decision.status());
+	}
+
+	@Test
+	void defersWhenQueueIsLong() {
+		AdmissionControl.Estimate estimate = admission.estimate(List.of("podcast"), 100_000);
+		// 4 slots, 3 hours of queued work → 45 minutes wait, 15 over the limit
+		AdmissionControl.Snapshot busy = new AdmissionControl.Snapshot(50 * GB, 4 * GB, 40, 3 * 3600, 0, 0, 0);
+
+		AdmissionControl.Decision decision = admission.decide(estimate, busy);
+
+		assertEquals(AdmissionControl.Outcome.DEFER, decision.outcome());
+		assertEquals(503, decision.status());
+		assertEquals(Duration.ofMinutes(15), decision.retryAfter());
+	}
+
+	@Test
+	void defersOnDiskOnlyWhileOtherJobsHoldIt() {
+		AdmissionControl.Estimate estimate = admission.estimate(List.of("video"), 1_000_000);
+		long disk = estimate.diskBytes() + GB + 1;
+
+		AdmissionControl.Snapshot pending = new AdmissionControl.Snapshot(disk, 4 * GB, 2, 600, disk, 0, 0);
+		AdmissionControl.Snapshot tooSmall = new AdmissionControl.Snapshot(disk - 2, 4 * GB, 0, 0, 0, 0, 0);
+
+		assertEquals(AdmissionControl.Outcome.DEFER, admission.decide(estimate, pending).outcome());
+		assertEquals(507, admission.decide(estimate, tooSmall).status());
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AudioVariantsTest {
+
+	private final AudioVariants variants = new AudioVariants(null, "48k", "32k", Duration.ofMinutes(5));
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void variantIsStoredNextToOriginal() {
+		assertEquals("abc.low.mp3", AudioVariants.variantFilename("abc.mp3", variants.variant("low")));
+		assertEquals("abc.opus", AudioVariants.variantFilename("abc.mp3", variants.variant("OPUS")));
+	}
+
+	@Test
+	void negotiatesFromAcceptAndSaveData() {
+		assertEquals("opus", variants.negotiate("audio/ogg, audio/mpeg;q=0.5", null).name());
+		assertEquals("low", variants.negotiate("audio/mpeg, audio/ogg", "on").name());
+		assertNull(variants.negotiate("*/*", null));
+		assertNull(variants.variant("flac"));
+	}
+
+	@Test
+	void failedTranscodeLeavesNoWorkDirectory() throws Exception {
+		StorageService storage = mock(StorageService.class);
+		Path temp = Files.createDirectories(dir.resolve("temp"));
+		Path source = Files.writeString(dir.resolve("abc.mp3"), "not audio");
+
+		when(storage.hasConverted("abc.low.mp3")).thenReturn(false);
+		when(storage.fetchConverted("abc.mp3")).thenReturn(source);
+		when(storage.resolveConverted(anyString())).thenAnswer(call -> dir.resolve(call.<String>getArgument(0)));
+		when(storage.createTempDirectory(anyString()))
+				.thenAnswer(call -> Files.createDirectories(temp.resolve(call.<String>getArgument(0))));
+		doAnswer(call -> {
+			Path work = temp.resolve(call.<String>getArgument(0));
+			Files.deleteIfExists(work.resolve("abc.low.mp3.log"));
+			return Files.deleteIfExists(work);
+		}).when(storage).deleteTempDirectory(anyString());
+
+		AudioVariants audio = new AudioVariants(storage, "48k", "32k", Duration.ofSeconds(30));
+
+		// No ffmpeg, or ffmpeg refusing the input: either way the transcode fails
+		assertThrows(Exception.class, () -> audio.fetch("abc.mp3", audio.variant("low")).block(Duration.ofSeconds(30)));
+
+		// Cleanup runs just after the error reaches the caller
+		for (int i = 0; i < 50 && Files.exists(temp.resolve("variants-abc.low.mp3")); i++) {
+			Thread.sleep(100);
+		}
+		try (var left = Files.list(temp)) {
+			assertEquals(0, left.count());
+		}
+		assertFalse(Files.exists(dir.resolve("abc.low.mp3")));
+	}
+
+	@Test
+	void callerThatStopsWaitingLeavesTheWorkRunning() throws Exception {
+		StorageService storage = mock(StorageService.class);
+		CountDownLatch stored = new CountDownLatch(1);
+		Path variant = dir.resolve("abc.low.mp3");
+
+		when(storage.hasConverted("abc.low.mp3")).thenAnswer(call -> stored.await(5, TimeUnit.SECONDS));
+		when(storage.fetchConverted("abc.low.mp3")).thenReturn(variant);
+
+		AudioVariants audio = new AudioVariants(storage, "48k", "32k", Duration.ofSeconds(30));
+
+		// What the download endpoint does before answering 503 + Retry-After
+		assertNull(audio.fetch("abc.mp3", audio.variant("low"))
+				.timeout(Duration.ofMillis(50), Mono.empty())
+				.block());
+
+		stored.countDown();
+		verify(storage, timeout(5_000)).fetchConverted("abc.low.mp3");
+		assertTrue(audio.fetch("abc.mp3", audio.variant("low")).block(Duration.ofSeconds(5)).endsWith("abc.low.mp3"));
+	}
+}
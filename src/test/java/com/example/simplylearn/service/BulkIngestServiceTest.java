@@ -0,0 +1,134 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.repository.StageRateRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkIngestServiceTest {
+
+	@Autowired
+	private FileUploadRepository repo;
+
+	@Autowired
+	private StageRateRepository rates;
+
+	@TempDir
+	Path root;
+
+	@Test
+	void skipsOsMetadataAndMedia() {
+		assertTrue(BulkIngestService.ignored("__MACOSX/week1/._notes.txt"));
+		assertTrue(BulkIngestService.ignored("week1/.DS_Store"));
+		assertTrue(BulkIngestService.ignored("week1/.git/config"));
+		assertTrue(BulkIngestService.ignored("week1/lecture.mp4"));
+		assertFalse(BulkIngestService.ignored("week1/notes.txt"));
+		assertFalse(BulkIngestService.ignored("README"));
+	}
+
+	@Test
+	void splitsEntryPaths() {
+		assertEquals("notes.txt", BulkIngestService.fileName("course/week1/notes.txt"));
+		assertEquals("course/week1", BulkIngestService.folderName("course/week1/notes.txt"));
+		assertEquals("", BulkIngestService.folderName("notes.txt"));
+	}
+
+	@Test
+	void failureAfterSubmittingCancelsTheBatch() throws Exception {
+		// Queued one by one, so the first two jobs are out before the third entry breaks the cap
+		BulkIngestService bulk = service(1, 2, DataSize.ofMegabytes(1));
+		byte[] zip = zip("a.txt", "Cells.", "b.txt", "Mitosis.", "c.txt", "Meiosis.");
+
+		BulkIngestService.BatchFailedException e = assertThrows(BulkIngestService.BatchFailedException.class,
+				() -> bulk.ingest(new ByteArrayInputStream(zip), List.of("summary"), BulkIngestService.Grouping.ENTRY, "dana"));
+
+		List<FileUpload> jobs = repo.findByBatchIdOrderByOriginalFilename(e.batchId());
+		assertEquals(2, jobs.size());
+		assertEquals(2, e.cancelledJobs());
+		assertTrue(jobs.stream().allMatch(job -> "CANCELLED".equals(job.getStatus())));
+		assertInstanceOf(IllegalArgumentException.class, e.getCause());
+	}
+
+	@Test
+	void oversizedEntryLeavesNoOrphanedFiles() throws Exception {
+		BulkIngestService bulk = service(1, 10, DataSize.ofBytes(100));
+		byte[] zip = zip("a.txt", "Cells.", "b.txt", "x".repeat(1000), "c.txt", "Meiosis.");
+
+		BulkIngestService.BatchFailedException e = assertThrows(BulkIngestService.BatchFailedException.class,
+				() -> bulk.ingest(new ByteArrayInputStream(zip), List.of("summary"), BulkIngestService.Grouping.ENTRY, "erin"));
+
+		// Only the cancelled job's file is left: the oversized entry's partial file is gone
+		List<FileUpload> jobs = repo.findByBatchIdOrderByOriginalFilename(e.batchId());
+		assertEquals(1, jobs.size());
+		assertEquals("CANCELLED", jobs.get(0).getStatus());
+		try (var files = Files.list(root.resolve("uploads"))) {
+			assertEquals(List.of(jobs.get(0).getStoredFilename()),
+					files.map(p -> p.getFileName().toString()).toList());
+		}
+	}
+
+	@Test
+	void truncatedArchiveDeletesUnsubmittedFiles() throws Exception {
+		// Nothing is submitted until the end, so nothing should survive
+		BulkIngestService bulk = service(25, 10, DataSize.ofMegabytes(1));
+		byte[] zip = zip("a.txt", "Cells divide. ".repeat(200), "b.txt", "Mitosis. ".repeat(200));
+		// Cut inside b.txt's compressed data
+		int second = new String(zip, StandardCharsets.ISO_8859_1).indexOf("b.txt");
+		byte[] truncated = Arrays.copyOf(zip, second + 20);
+
+		BulkIngestService.BatchFailedException e = assertThrows(BulkIngestService.BatchFailedException.class,
+				() -> bulk.ingest(new ByteArrayInputStream(truncated), List.of("summary"), BulkIngestService.Grouping.ENTRY, "fay"));
+
+		assertEquals(0, e.cancelledJobs());
+		assertTrue(repo.findByBatchIdOrderByOriginalFilename(e.batchId()).isEmpty());
+		try (var files = Files.list(root.resolve("uploads"))) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	private BulkIngestService service(int submitBatchSize, int maxEntries, DataSize maxEntrySize) throws Exception {
+		StorageService storage = new StorageService(new InMemoryStorageBackend(), new BlobCompression(true, 3), root.toString());
+		// app.role=web: queues only, nothing runs
+		JobScheduler scheduler = new JobScheduler(repo, null, new JobCostModel(rates), null,
+				"web", "test", 4, 2, 1.0, 0.5, Duration.ofMinutes(2));
+		return new BulkIngestService(storage, repo, scheduler, submitBatchSize, maxEntries, maxEntrySize, DataSize.ofGigabytes(1));
+	}
+
+	private static byte[] zip(String... namesAndContents) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+				zip.write(namesAndContents[i + 1].getBytes());
+				zip.closeEntry();
+			}
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,314 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.model.StageRate;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.repository.StageRateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Real extraction, MaterialService and storage; only the providers and media tools are mocked
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConversionServiceTest {
+
+	private static final String OUTLINE = "1. Cells\n- Membrane\n- Nucleus";
+
+	@Autowired
+	private FileUploadRepository repo;
+
+	@Autowired
+	private StageRateRepository rates;
+
+	@TempDir
+	Path root;
+
+	private final OpenAIService openAI = mock(OpenAIService.class);
+	private final PollyService polly = mock(PollyService.class);
+	private final SlideshowService slides = mock(SlideshowService.class);
+	private final VideoService video = mock(VideoService.class);
+
+	private final StorageBackend backend = new InMemoryStorageBackend();
+
+	private StorageService storage;
+	private ConversionService conversions;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		storage = new StorageService(backend, new BlobCompression(true, 3), root.resolve("worker").toString());
+
+		MaterialService material = new MaterialService(openAI, new TokenEstimator(), new ChunkCache(storage, false, "1"),
+				12_000, 180, 6, 40_000, 4, 3);
+
+		conversions = new ConversionService(repo, storage, material, new JobCostModel(rates), polly, slides, video,
+				new JobRecordings(storage, "profile", Duration.ofMinutes(5)),
+				true, 0.8, new MockEnvironment(), Duration.ofMinutes(1), DataSize.ofMegabytes(16), 20_000, true);
+
+		when(openAI.createOutline(anyString())).thenReturn(Mono.just(OUTLINE));
+		when(openAI.generate(eq("summary"), anyString(), isNull())).thenReturn(Mono.just(
+				"{\"paragraphs\": [{\"text\": \"Cells have a membrane.\"}]}"));
+		when(openAI.generate(eq("slideshow"), anyString(), isNull())).thenReturn(Mono.just(
+				"{\"slides\": [{\"title\": \"Cells\", \"bullets\": [\"Membrane\", \"Nucleus\", \"DNA\"], \"image\": \"A cell\"}]}"));
+		when(openAI.generate(eq("podcast"), anyString(), isNull())).thenReturn(Mono.just(
+				"{\"segments\": [{\"lines\": [{\"speaker\": \"A\", \"text\": \"Welcome.\"}, {\"speaker\": \"B\", \"text\": \"Hi!\"}]}]}"));
+
+		doAnswer(call -> Files.writeString(call.getArgument(1, Path.class), "pptx"))
+				.when(slides).createSlideshow(any(), any());
+		when(polly.synthesizePodcastToMp3(any(), any(), anyLong())).thenAnswer(call -> Mono.fromCallable(() ->
+				Files.writeString(call.getArgument(1, Path.class), "mp3")).then());
+	}
+
+	@AfterEach
+	void clear() {
+		repo.deleteAll();
+		rates.deleteAll();
+	}
+
+	@Test
+	void oneOutlineFeedsEveryRequestedType() throws Exception {
+		FileUpload upload = processing("summary|slideshow|podcast",
+				"Cells are the basic unit of life.\n\nEvery cell has a membrane.",
+				"Ribosomes build proteins.\n\nThe nucleus holds DNA.");
+
+		conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+
+		// Both files read into one text, outlined once, and that outline sent to every generator
+		verify(openAI, times(1)).createOutline(argThat(text ->
+				text.contains("Every cell has a membrane.") && text.contains("The nucleus holds DNA.")));
+		for (String type : List.of("summary", "slideshow", "podcast")) {
+			verify(openAI, times(1)).generate(type, OUTLINE, null);
+		}
+
+		// Every output recorded, in the order the types were asked for
+		FileUpload done = repo.findById(upload.getId()).orElseThrow();
+		assertEquals("COMPLETED", done.getStatus());
+		assertNull(done.getLeaseOwner());
+
+		String id = upload.getId().toString();
+		assertEquals(id + ".txt|" + id + ".pptx|" + id + ".mp3", done.getConvertedFilename());
+		assertEquals(id + ".pptx", done.getConvertedFilename("slideshow"));
+		assertEquals("Cells have a membrane.", Files.readString(storage.resolveConverted(id + ".txt")));
+	}
+
+	@Test
+	void singleTypeGetsTheRawTextWithoutAnOutline() throws Exception {
+		FileUpload upload = processing("summary", "Cells are the basic unit of life.");
+
+		conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+
+		verify(openAI, times(0)).createOutline(anyString());
+		verify(openAI).generate("summary", "Cells are the basic unit of life.", null);
+		assertEquals("COMPLETED", repo.findById(upload.getId()).orElseThrow().getStatus());
+	}
+
+	@Test
+	void outputsArePublishedForTheWebNode() throws Exception {
+		FileUpload upload = processing("summary|slideshow", "Cells are the basic unit of life.");
+
+		conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+
+		// The web node shares only the backend with the worker
+		StorageService web = new StorageService(backend, new BlobCompression(true, 3), root.resolve("web").toString());
+		String converted = repo.findById(upload.getId()).orElseThrow().getConvertedFilename();
+		for (String name : converted.split("\\|")) {
+			assertTrue(web.hasConverted(name), name);
+		}
+		assertEquals("Cells have a membrane.", Files.readString(web.fetchConverted(upload.getId() + ".txt")));
+	}
+
+	@Test
+	void completedJobTeachesTheCostModel() throws Exception {
+		FileUpload upload = processing("summary|podcast", "Cells are the basic unit of life.");
+
+		conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+
+		assertEquals(List.of("extract", "podcast", "prepare", "summary"),
+				rates.findAll().stream().map(StageRate::getStage).sorted().toList());
+	}
+
+	@Test
+	void mediumUploadIsGeneratedInOneCall() throws Exception {
+		// Well past the old 8000-char chunks, still under retrieval.min-corpus-tokens
+		StringBuilder notes = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			notes.append("Paragraph ").append(i).append(" describes how cells divide and grow.\n\n");
+		}
+		FileUpload upload = processing("summary", notes.toString());
+
+		conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+
+		verify(openAI, times(1)).generate(eq("summary"), argThat(text ->
+				text.startsWith("Paragraph 0 ") && text.endsWith("Paragraph 299 describes how cells divide and grow.")), isNull());
+		verify(openAI, times(0)).createOutline(anyString());
+		assertEquals("COMPLETED", repo.findById(upload.getId()).orElseThrow().getStatus());
+	}
+
+	@Test
+	void voicesFollowTheContentNotTheFilename() throws Exception {
+		FileUpload first = processing("podcast", "Cells are the basic unit of life.");
+		FileUpload sameText = processing("podcast", "Cells are the basic unit of life.");
+		FileUpload otherText = processing("podcast", "The French Revolution began in 1789.");
+		otherText.setOriginalFilename(first.getOriginalFilename());
+		repo.save(otherText);
+		sameText.setOriginalFilename("copy of notes.txt");
+		repo.save(sameText);
+
+		for (FileUpload upload : List.of(first, sameText, otherText)) {
+			conversions.run(upload.getId()).block(Duration.ofSeconds(30));
+		}
+
+		ArgumentCaptor<Long> seeds = ArgumentCaptor.forClass(Long.class);
+		verify(polly, times(3)).synthesizePodcastToMp3(any(), any(), seeds.capture());
+
+		assertEquals(seeds.getAllValues().get(0), seeds.getAllValues().get(1));
+		assertNotEquals(seeds.getAllValues().get(0), seeds.getAllValues().get(2));
+		assertEquals(repo.findById(first.getId()).orElseThrow().getContentSha256(),
+				repo.findById(sameText.getId()).orElseThrow().getContentSha256());
+	}
+
+	@Test
+	void cancelStopsTheRunningStage() throws Exception {
+		FileUpload upload = processing("summary|podcast", "Cells are the basic unit of life.");
+
+		CountDownLatch synthesizing = new CountDownLatch(1);
+		AtomicBoolean synthesisCancelled = new AtomicBoolean();
+		when(polly.synthesizePodcastToMp3(any(), any(), anyLong())).thenReturn(Mono.<Void>never()
+				.doOnSubscribe(s -> synthesizing.countDown())
+				.doOnCancel(() -> synthesisCancelled.set(true)));
+
+		Mono<Void> run = conversions.run(upload.getId()).cache();
+		run.subscribe();
+
+		assertTrue(synthesizing.await(30, TimeUnit.SECONDS));
+		assertTrue(conversions.cancel(upload.getId()));
+
+		run.block(Duration.ofSeconds(30));
+
+		assertTrue(synthesisCancelled.get());
+		FileUpload row = repo.findById(upload.getId()).orElseThrow();
+		assertEquals("CANCELLED", row.getStatus());
+		assertNull(row.getConvertedFilename());
+
+		// No longer running here
+		assertFalse(conversions.cancel(upload.getId()));
+		assertNull(conversions.liveTrace(upload.getId()));
+	}
+
+	@Test
+	void waitingJobsHoldNoThread() throws Exception {
+		List<Sinks.One<String>> pending = new CopyOnWriteArrayList<>();
+		when(openAI.generate(eq("summary"), anyString(), isNull())).thenAnswer(call -> {
+			Sinks.One<String> reply = Sinks.one();
+			pending.add(reply);
+			return reply.asMono();
+		});
+
+		List<FileUpload> uploads = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			uploads.add(processing("summary", "Cells divide, note " + i + "."));
+		}
+
+		CountDownLatch finished = new CountDownLatch(uploads.size());
+		for (FileUpload upload : uploads) {
+			conversions.run(upload.getId()).doFinally(signal -> finished.countDown()).subscribe();
+		}
+
+		// Every job is waiting on OpenAI at once, and no thread is parked inside the pipeline
+		waitUntil(() -> pending.size() == uploads.size());
+		waitUntil(() -> threadsInPipeline().isEmpty());
+
+		for (Sinks.One<String> reply : pending) {
+			reply.tryEmitValue("{\"paragraphs\": [{\"text\": \"Cells divide.\"}]}");
+		}
+
+		assertTrue(finished.await(30, TimeUnit.SECONDS));
+		for (FileUpload upload : uploads) {
+			assertEquals("COMPLETED", repo.findById(upload.getId()).orElseThrow().getStatus());
+		}
+	}
+
+	// Stored and claimed, as JobLeaseService leaves it before ConversionService.run
+	private FileUpload processing(String types, String... files) throws Exception {
+		StringBuilder stored = new StringBuilder();
+		long bytes = 0;
+		for (int i = 0; i < files.length; i++) {
+			byte[] content = files[i].getBytes(StandardCharsets.UTF_8);
+			if (i > 0) stored.append('|');
+			stored.append(storage.store("notes-" + i + ".txt", new ByteArrayInputStream(content)));
+			bytes += content.length;
+		}
+
+		FileUpload upload = new FileUpload();
+		upload.setOriginalFilename("notes.txt");
+		upload.setStoredFilename(stored.toString());
+		upload.setConversionType(types);
+		upload.setStatus("PROCESSING");
+		upload.setUploadedAt(Instant.now());
+		upload.setInputBytes(bytes);
+		upload.setLeaseOwner("worker-1");
+		upload.setLeaseExpiresAt(Instant.now().plusSeconds(60));
+		return repo.save(upload);
+	}
+
+	// Threads (other than this one) with a frame of the application on their stack
+	private static List<Thread> threadsInPipeline() {
+		return Thread.getAllStackTraces().entrySet().stream()
+				.filter(thread -> thread.getKey() != Thread.currentThread())
+				.filter(thread -> Arrays.stream(thread.getValue())
+						.anyMatch(frame -> frame.getClassName().startsWith("com.example.simplylearn.")))
+				.map(Map.Entry::getKey)
+				.toList();
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
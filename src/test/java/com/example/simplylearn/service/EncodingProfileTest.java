@@ -0,0 +1,43 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EncodingProfileTest {
+
+	@Test
+	void parsesProfileSpec() {
+		EncodingProfile profile = EncodingProfile.parse("draft", "preset=veryfast crf=30 size=854x480 fps=10");
+
+		assertEquals("veryfast", profile.preset());
+		assertEquals(30, profile.crf());
+		assertEquals(854, profile.width());
+		assertEquals(480, profile.height());
+		assertEquals(10, profile.fps());
+	}
+
+	@Test
+	void missingSettingsUseX264Defaults() {
+		EncodingProfile profile = EncodingProfile.parse("plain", "crf=20");
+
+		assertEquals("medium", profile.preset());
+		assertEquals(1280, profile.width());
+	}
+
+	@Test
+	void rejectsMalformedSpec() {
+		assertThrows(IllegalArgumentException.class, () -> EncodingProfile.parse("bad", "veryfast"));
+	}
+
+	@Test
+	void readsOverallSsimFromFfmpegOutput() {
+		String output = """
+				frame=  300 fps=0.0 q=-0.0 Lsize=N/A time=00:00:30.00 bitrate=N/A speed= 120x
+				[Parsed_ssim_4 @ 0x55d] SSIM Y:0.991021 (20.470) U:0.997 (25.2) V:0.996 (24.9) All:0.993104 (21.612)
+				""";
+
+		assertEquals(0.993104, EncodingCalibrator.parseSsim(output), 1e-9);
+	}
+}
@@ -0,0 +1,55 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.repository.StageRateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobCostModelTest {
+
+	@Autowired
+	private StageRateRepository rates;
+
+	@Test
+	void ratesLearnedOnWorkersReachWebNodesAndSurviveRestart() {
+		JobCostModel worker = new JobCostModel(rates);
+		JobCostModel web = new JobCostModel(rates);
+
+		double untrained = web.estimateSeconds(List.of("podcast"), 100 * 1024);
+
+		// Podcasts of 100 KB take far longer than the default rate says
+		for (int i = 0; i < 10; i++) worker.record("podcast", 100 * 1024, 1000);
+
+		assertEquals(untrained, web.estimateSeconds(List.of("podcast"), 100 * 1024));
+		web.refresh();
+		double learned = web.estimateSeconds(List.of("podcast"), 100 * 1024);
+		assertTrue(learned > untrained);
+		assertEquals(learned, worker.estimateSeconds(List.of("podcast"), 100 * 1024), 1e-9);
+
+		// A restarted node starts from the table, not the defaults
+		JobCostModel restarted = new JobCostModel(rates);
+		restarted.refresh();
+		assertEquals(learned, restarted.estimateSeconds(List.of("podcast"), 100 * 1024), 1e-9);
+	}
+
+	@Test
+	void blendsObservationsAsMovingAverage() {
+		JobCostModel model = new JobCostModel(rates);
+
+		// (seconds - 10 base) / KB: 1.0 s/KB, then 2.0 s/KB
+		model.record("summary", 1024 * 100, 110);
+		model.record("summary", 1024 * 100, 210);
+
+		assertEquals(0.8 * 1.0 + 0.2 * 2.0, rates.findById("summary").orElseThrow().getSecondsPerKb(), 1e-9);
+		assertEquals(2, rates.findById("summary").orElseThrow().getSamples());
+	}
+}
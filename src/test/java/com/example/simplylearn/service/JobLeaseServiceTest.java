@@ -0,0 +1,167 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every claim commits on its own, as it does between nodes
+@DataJpaTest
+@Import(JobLeaseService.class)
+@TestPropertySource(properties = {"scheduler.lease-duration=60s", "scheduler.max-attempts=2"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLeaseServiceTest {
+
+	@Autowired
+	private FileUploadRepository repo;
+
+	@Autowired
+	private JobLeaseService leases;
+
+	@AfterEach
+	void clear() {
+		repo.deleteAll();
+	}
+
+	private FileUpload queued(String owner, double scheduleKey) {
+		FileUpload upload = new FileUpload();
+		upload.setOriginalFilename("notes.txt");
+		upload.setConversionType("summary");
+		upload.setStatus("QUEUED");
+		upload.setUploadedAt(Instant.now());
+		upload.setOwner(owner);
+		upload.setScheduleKey(scheduleKey);
+		return repo.save(upload);
+	}
+
+	@Test
+	void concurrentClaimersNeverShareAJob() throws Exception {
+		for (int i = 0; i < 40; i++) queued("user-" + i, i);
+
+		CyclicBarrier start = new CyclicBarrier(2);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<List<UUID>>> nodes = new ArrayList<>();
+			for (String node : List.of("node-a", "node-b")) {
+				Callable<List<UUID>> claimer = () -> {
+					start.await();
+					List<UUID> mine = new ArrayList<>();
+					for (int round = 0; round < 20; round++) {
+						mine.addAll(leases.claim(node, 3, 10));
+					}
+					return mine;
+				};
+				nodes.add(pool.submit(claimer));
+			}
+
+			List<UUID> all = new ArrayList<>();
+			for (Future<List<UUID>> node : nodes) all.addAll(node.get());
+
+			assertEquals(40, all.size());
+			assertEquals(40, new HashSet<>(all).size());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		for (FileUpload job : repo.findAll()) {
+			assertEquals("PROCESSING", job.getStatus());
+			assertEquals(1, job.getAttempts());
+		}
+	}
+
+	@Test
+	void perOwnerCapHoldsAcrossNodes() {
+		for (int i = 0; i < 5; i++) queued("heavy", i);
+		FileUpload light = queued("light", 10);
+
+		List<UUID> first = leases.claim("node-a", 10, 2);
+		List<UUID> second = leases.claim("node-b", 10, 2);
+
+		// Two of heavy's jobs on node-a, none on node-b; light's job is never blocked behind them
+		assertEquals(3, first.size());
+		assertTrue(first.contains(light.getId()));
+		assertTrue(second.isEmpty());
+		assertEquals(2, repo.countByOwnerAndStatus("heavy", "PROCESSING"));
+	}
+
+	@Test
+	void deadWorkersJobsDoNotHoldTheOwnerAtTheCap() {
+		FileUpload first = queued("erin", 1);
+		FileUpload second = queued("erin", 2);
+		assertEquals(2, leases.claim("node-a", 10, 2).size());
+
+		// node-a dies holding both of erin's slots; erin uploads again
+		expireLease(first.getId());
+		expireLease(second.getId());
+		FileUpload third = queued("erin", 3);
+
+		// The stranded jobs are re-leased first, and only they fill erin's cap
+		List<UUID> claimed = leases.claim("node-b", 10, 2);
+		assertEquals(List.of(first.getId(), second.getId()), claimed);
+		assertEquals("QUEUED", repo.findById(third.getId()).orElseThrow().getStatus());
+
+		// Once they finish, erin's new job runs
+		for (UUID id : claimed) {
+			FileUpload done = repo.findById(id).orElseThrow();
+			done.setStatus("COMPLETED");
+			repo.save(done);
+		}
+		assertEquals(List.of(third.getId()), leases.claim("node-b", 10, 2));
+	}
+
+	@Test
+	void expiredLeaseIsReclaimedUntilMaxAttempts() {
+		FileUpload job = queued("dana", 1);
+
+		assertEquals(List.of(job.getId()), leases.claim("node-a", 1, 2));
+
+		// node-a renews while alive: nobody else can take it
+		leases.renew("node-a", Set.of(job.getId()));
+		assertTrue(leases.claim("node-b", 1, 2).isEmpty());
+
+		// node-a dies: its lease runs out and node-b takes over (attempt 2)
+		expireLease(job.getId());
+		assertEquals(List.of(job.getId()), leases.claim("node-b", 1, 2));
+		FileUpload reclaimed = repo.findById(job.getId()).orElseThrow();
+		assertEquals("node-b", reclaimed.getLeaseOwner());
+		assertEquals(2, reclaimed.getAttempts());
+
+		// node-a can no longer renew a lease it lost
+		leases.renew("node-a", Set.of(job.getId()));
+		assertEquals("node-b", repo.findById(job.getId()).orElseThrow().getLeaseOwner());
+
+		// node-b dies too: max-attempts=2, so the job fails instead of being leased a third time
+		expireLease(job.getId());
+		assertTrue(leases.claim("node-c", 1, 2).isEmpty());
+		FileUpload failed = repo.findById(job.getId()).orElseThrow();
+		assertEquals("FAILED", failed.getStatus());
+		assertEquals(null, failed.getLeaseOwner());
+	}
+
+	private void expireLease(UUID id) {
+		FileUpload job = repo.findById(id).orElseThrow();
+		job.setLeaseExpiresAt(Instant.now().minusSeconds(1));
+		repo.save(job);
+	}
+}
@@ -0,0 +1,140 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.model.FileUpload;
+import com.example.simplylearn.repository.FileUploadRepository;
+import com.example.simplylearn.repository.StageRateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every repository call commits on its own, as it does between nodes
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobSchedulerTest {
+
+	@Autowired
+	private FileUploadRepository repo;
+
+	@Autowired
+	private StageRateRepository rates;
+
+	// app.role=web: queues only, so nothing is dispatched or run here
+	private JobScheduler node(String id) {
+		return new JobScheduler(repo, null, new JobCostModel(rates), null,
+				"web", id, 4, 2, 1.0, 0.5, Duration.ZERO);
+	}
+
+	private FileUpload stored(String owner) {
+		FileUpload upload = new FileUpload();
+		upload.setOriginalFilename("notes.txt");
+		upload.setConversionType("summary");
+		upload.setStatus("UPLOADED");
+		upload.setUploadedAt(Instant.now().minusSeconds(600));
+		upload.setInputBytes(4096);
+		upload.setOwner(owner);
+		return repo.save(upload);
+	}
+
+	@Test
+	void queuesStoredUploadOnce() {
+		FileUpload upload = stored("alice");
+
+		assertEquals(1, node("a").submitAll(List.of(upload)));
+		// The other node's copy (or a late submitLater) finds it queued already
+		assertEquals(0, node("b").submitAll(List.of(upload)));
+
+		FileUpload row = repo.findById(upload.getId()).orElseThrow();
+		assertEquals("QUEUED", row.getStatus());
+		assertNotNull(row.getScheduleKey());
+	}
+
+	@Test
+	void staleCopyDoesNotResetClaimedJob() {
+		FileUpload stale = stored("bob");
+		node("a").submit(stale);
+
+		// A worker claims it
+		FileUpload claimed = repo.findById(stale.getId()).orElseThrow();
+		claimed.setStatus("PROCESSING");
+		claimed.setLeaseOwner("worker-1");
+		claimed.setLeaseExpiresAt(Instant.now().plusSeconds(60));
+		repo.save(claimed);
+
+		node("b").resubmitStranded();
+		assertEquals(0, node("b").submitAll(List.of(stale)));
+
+		FileUpload row = repo.findById(stale.getId()).orElseThrow();
+		assertEquals("PROCESSING", row.getStatus());
+		assertEquals("worker-1", row.getLeaseOwner());
+	}
+
+	@Test
+	void strandedUploadsAreQueuedByOneNode() {
+		FileUpload first = stored("carol");
+		FileUpload second = stored("carol");
+
+		node("a").resubmitStranded();
+		node("b").resubmitStranded();
+
+		assertEquals("QUEUED", repo.findById(first.getId()).orElseThrow().getStatus());
+		assertEquals("QUEUED", repo.findById(second.getId()).orElseThrow().getStatus());
+		assertEquals(0, node("c").submitAll(List.of(first, second)));
+	}
+
+	// ======================
+	// SCORING
+	// ======================
+
+	private FileUpload job(String owner, String types, long bytes) {
+		FileUpload upload = new FileUpload();
+		upload.setOriginalFilename("notes.txt");
+		upload.setConversionType(types);
+		upload.setStatus("UPLOADED");
+		upload.setUploadedAt(Instant.now());
+		upload.setInputBytes(bytes);
+		upload.setOwner(owner);
+		return upload;
+	}
+
+	@Test
+	void keyIsEnqueueTimePlusCost() {
+		FileUpload video = job("gail", "video", 512 * 1024);
+
+		double before = System.currentTimeMillis() / 1000.0;
+		node("a").submitAll(List.of(video));
+		double after = System.currentTimeMillis() / 1000.0;
+
+		// Aging: an expensive job is overtaken only by jobs queued less than its cost difference later
+		double enqueued = video.getScheduleKey() - video.getEstimatedCostSeconds();
+		assertTrue(enqueued >= before && enqueued <= after);
+	}
+
+	@Test
+	void cheapJobsGoFirstAndOwnersShareTheQueue() {
+		FileUpload video = job("hana", "video", 512 * 1024);
+		FileUpload summary = job("hana", "summary", 512 * 1024);
+		node("a").submitAll(List.of(video, summary));
+
+		assertTrue(summary.getScheduleKey() < video.getScheduleKey());
+
+		// One owner's batch: every job waits behind the ones before it (fairness-weight 0.5)
+		List<FileUpload> heavy = List.of(job("ivan", "summary", 4096), job("ivan", "summary", 4096), job("ivan", "summary", 4096));
+		FileUpload light = job("jo", "summary", 4096);
+		node("a").submitAll(List.of(heavy.get(0), heavy.get(1), heavy.get(2), light));
+
+		double cost = light.getEstimatedCostSeconds();
+		assertEquals(heavy.get(0).getScheduleKey() + 0.5 * cost, heavy.get(1).getScheduleKey(), 0.1);
+		assertEquals(heavy.get(1).getScheduleKey() + 0.5 * cost, heavy.get(2).getScheduleKey(), 0.1);
+		assertTrue(light.getScheduleKey() < heavy.get(1).getScheduleKey());
+	}
+}
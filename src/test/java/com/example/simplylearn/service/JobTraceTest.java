@@ -0,0 +1,40 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JobTraceTest {
+
+	@Test
+	void nestsSpansThroughTheReactorContext() {
+		JobContext job = new JobContext(UUID.randomUUID());
+
+		Mono<List<byte[]>> lines = Flux.range(0, 3)
+				.flatMapSequential(i -> JobTrace.span("tts", Mono.fromSupplier(() -> new byte[10])))
+				.collectList();
+
+		JobTrace.span("podcast", lines)
+				.contextWrite(Context.of(JobContext.class, job))
+				.block();
+
+		List<JobTrace.Span> spans = JobTrace.fromJson(job.trace().toJson());
+		List<JobTrace.Row> rows = JobTrace.waterfall(spans);
+
+		assertEquals(4, spans.size());
+		assertEquals("podcast", rows.get(0).span().name());
+		assertEquals(0, rows.get(0).depth());
+
+		for (JobTrace.Row row : rows.subList(1, 4)) {
+			assertEquals(1, row.depth());
+			assertEquals("OK", row.span().status());
+			assertEquals(10, row.span().attributes().get("bytes"));
+		}
+	}
+}
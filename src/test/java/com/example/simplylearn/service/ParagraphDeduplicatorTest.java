@@ -0,0 +1,42 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParagraphDeduplicatorTest {
+
+	private static final String MITOCHONDRIA =
+			"Mitochondria are the powerhouse of the cell and produce most of the ATP the cell needs through cellular respiration.";
+
+	private static final String RIBOSOMES =
+			"Ribosomes read messenger RNA and assemble amino acids into proteins in the cytoplasm and on the rough endoplasmic reticulum.";
+
+	@Test
+	void dropsNearDuplicateParagraphFromLaterFile() {
+		String slides = MITOCHONDRIA + "\n\n" + RIBOSOMES;
+		String notes = "Mitochondria are the powerhouse of the cell, and produce most of the ATP the cell needs through cellular respiration!"
+				+ "\n\nThe Golgi apparatus packages proteins into vesicles and ships them to where they are needed in the cell.";
+
+		ParagraphDeduplicator.Result result = ParagraphDeduplicator.dedupe(List.of(slides, notes), 0.8);
+
+		assertEquals(4, result.paragraphs());
+		assertEquals(1, result.removedParagraphs());
+		assertTrue(result.removedChars() > 0);
+		assertTrue(result.text().indexOf("Ribosomes") < result.text().indexOf("Golgi"), "order is kept");
+		assertEquals(result.text().indexOf("Mitochondria"), result.text().lastIndexOf("Mitochondria"));
+	}
+
+	@Test
+	void keepsRepetitionInsideOneFileAndShortParagraphs() {
+		String recap = MITOCHONDRIA + "\n\nSummary\n\n" + MITOCHONDRIA;
+		String other = "Summary\n\n" + RIBOSOMES;
+
+		ParagraphDeduplicator.Result result = ParagraphDeduplicator.dedupe(List.of(recap, other), 0.8);
+
+		assertEquals(0, result.removedParagraphs());
+	}
+}
@@ -0,0 +1,74 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParagraphReaderTest {
+
+	@Test
+	void splitsOnBlankLinesAndCollapsesSpaces() throws Exception {
+		List<String> paragraphs = read("  Cells   are\tsmall.\r\nThey divide.\r\n \r\n\r\n\nMitochondria make ATP.  \n", 1000);
+
+		assertEquals(List.of("Cells are small.\nThey divide.", "Mitochondria make ATP."), paragraphs);
+	}
+
+	@Test
+	void keepsFormFeedAsPageBreak() throws Exception {
+		List<String> paragraphs = read("End of page one.\fHeader\nPage two.", 1000);
+
+		assertEquals(List.of("End of page one.", "\fHeader\nPage two."), paragraphs);
+	}
+
+	@Test
+	void splitsLongParagraphsAtWordBoundaries() throws Exception {
+		String text = "word ".repeat(1000);
+
+		List<String> paragraphs = read(text, 100);
+
+		assertTrue(paragraphs.size() >= 50);
+		for (String paragraph : paragraphs) {
+			assertTrue(paragraph.length() <= 100);
+			assertTrue(paragraph.matches("word( word)*"), paragraph);
+		}
+		assertEquals(1000, String.join(" ", paragraphs).split(" ").length);
+	}
+
+	@Test
+	void sourceTextEnforcesTheJobCeiling() {
+		TextBudget budget = new TextBudget(1000);
+		SourceText source = new SourceText(budget);
+
+		source.add("a".repeat(400));
+		assertEquals(800, budget.retainedBytes());
+
+		assertThrows(IllegalStateException.class, () -> source.add("b".repeat(200)));
+	}
+
+	@Test
+	void drainingReleasesAsItGoes() {
+		TextBudget budget = TextBudget.unlimited();
+		SourceText source = new SourceText(budget);
+		source.add("first");
+		source.add("second");
+
+		List<String> seen = new ArrayList<>();
+		for (String paragraph : source.drain()) seen.add(paragraph);
+
+		assertEquals(List.of("first", "second"), seen);
+		assertEquals(0, budget.retainedBytes());
+		assertEquals(22, budget.peakBytes());
+	}
+
+	private static List<String> read(String text, int maxChars) throws Exception {
+		List<String> paragraphs = new ArrayList<>();
+		ParagraphReader.read(new StringReader(text), maxChars, paragraphs::add);
+		return paragraphs;
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PassageIndexTest {
+
+	private static final String COURSE = """
+			Photosynthesis converts light energy into chemical energy stored in glucose inside chloroplasts.
+
+			The Krebs cycle runs in the mitochondria and releases carbon dioxide while producing NADH.
+
+			Chloroplasts contain chlorophyll, the pigment that absorbs light for photosynthesis.
+
+			The French Revolution began in 1789 and ended the absolute monarchy of Louis XVI.
+			""";
+
+	@Test
+	void returnsTopPassagesInDocumentOrder() {
+		PassageIndex index = PassageIndex.build(COURSE, 5);
+
+		assertEquals(4, index.size());
+
+		List<PassageIndex.Passage> hits = index.search("chloroplasts light photosynthesis", 2);
+
+		assertEquals(2, hits.size());
+		assertEquals(0, hits.get(0).position());
+		assertEquals(2, hits.get(1).position());
+	}
+
+	@Test
+	void digestCoversEveryPassageWithinBudget() {
+		PassageIndex index = PassageIndex.build(COURSE, 5);
+
+		String digest = index.digest(400);
+
+		assertTrue(digest.length() <= 400 + 100);
+		assertTrue(digest.contains("Photosynthesis"));
+		assertTrue(digest.contains("French Revolution"));
+	}
+
+	@Test
+	void digestOfLargeUploadSpansEveryChapter() {
+		List<String> paragraphs = new ArrayList<>();
+		for (int chapter = 1; chapter <= 50; chapter++) {
+			for (int p = 0; p < 100; p++) {
+				paragraphs.add("Chapter " + chapter + " passage " + p + " explains one more idea in enough words to stand alone.");
+			}
+		}
+		PassageIndex index = PassageIndex.build(paragraphs, 5);
+		assertEquals(5_000, index.size());
+
+		String digest = index.digest(40_000);
+
+		assertTrue(digest.length() <= 40_000);
+		assertTrue(digest.startsWith("Chapter 1 passage 0 "));
+		assertTrue(digest.endsWith("Chapter 50 passage 99 explains one more idea in enough words to stand alone."));
+
+		// Evenly sampled: every chapter shows up, not just the opening ones
+		Matcher chapters = Pattern.compile("Chapter (\\d+) ").matcher(digest);
+		List<Integer> seen = new ArrayList<>();
+		while (chapters.find()) {
+			int chapter = Integer.parseInt(chapters.group(1));
+			if (!seen.contains(chapter)) seen.add(chapter);
+		}
+		assertEquals(50, seen.size());
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.simplylearn.service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PipelineEventsTest {
+
+	@Test
+	void eventCarriesJobTypeAndPayload(@TempDir Path dir) throws Exception {
+		UUID jobId = UUID.randomUUID();
+		Path file = dir.resolve("test.jfr");
+
+		try (Recording recording = new Recording()) {
+			recording.enable("simplylearn.OpenAIRequest");
+			recording.start();
+
+			PipelineEvents.record(
+							() -> new PipelineEvents.OpenAIRequestEvent("podcast", null, 1200, 300, 4000),
+							event -> Mono.just("{\"segments\": []}").doOnNext(json -> event.responseChars = json.length()))
+					.contextWrite(PipelineEvents.conversionType("podcast"))
+					.contextWrite(Context.of(JobContext.class, new JobContext(jobId)))
+					.block();
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+				.filter(e -> e.getEventType().getName().equals("simplylearn.OpenAIRequest"))
+				.toList();
+
+		assertEquals(1, events.size());
+		RecordedEvent event = events.get(0);
+		assertEquals(jobId.toString(), event.getString("jobId"));
+		assertEquals("podcast", event.getString("conversionType"));
+		assertEquals("ok", event.getString("outcome"));
+		assertEquals(1200, event.getInt("promptChars"));
+		assertEquals(16, event.getInt("responseChars"));
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptCompactorTest {
+
+	@Test
+	void keepsNumberedHeadingsAndLabels() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 1; i <= 4; i++) {
+			text.append("Chapter ").append(i).append("\n\n")
+					.append("Example:\nCells divide by mitosis.\n")
+					.append("Answer: True\n\n")
+					.append("Step ").append(i).append("\n\n");
+		}
+
+		String compacted = PromptCompactor.compact(text.toString());
+
+		for (int i = 1; i <= 4; i++) {
+			assertTrue(compacted.contains("Chapter " + i));
+			assertTrue(compacted.contains("Step " + i));
+		}
+		assertTrue(compacted.contains("Example:"));
+		assertTrue(compacted.contains("Answer: True"));
+	}
+
+	@Test
+	void removesRunningHeadersAndPageNumbersAtPageBreaks() {
+		String[] bodies = {"Cells divide.", "Mitosis has four phases.", "Meiosis halves chromosomes.", "DNA replicates first."};
+
+		StringBuilder text = new StringBuilder();
+		for (int page = 1; page <= 4; page++) {
+			if (page > 1) text.append('\f');
+			text.append("Biology 101 — Unit ").append(page + 2).append("\n\n")
+					.append(bodies[page - 1]).append("\n\n")
+					.append("- ").append(page).append(" -\n");
+		}
+
+		String compacted = PromptCompactor.compact(text.toString());
+
+		assertFalse(compacted.contains("Biology 101"));
+		assertFalse(compacted.contains("- 3 -"));
+		assertTrue(compacted.contains("Meiosis halves chromosomes."));
+	}
+
+	@Test
+	void removesEvenlySpacedRepeatsWithoutPageBreaks() {
+		StringBuilder text = new StringBuilder();
+		for (int page = 1; page <= 3; page++) {
+			text.append("Intro to Cells\n");
+			for (int line = 0; line < 30; line++) {
+				text.append("Line ").append(line).append(" of page ").append(page).append(".\n");
+			}
+			text.append("Page ").append(page).append('\n');
+		}
+
+		String compacted = PromptCompactor.compact(text.toString());
+
+		assertFalse(compacted.contains("Intro to Cells"));
+		assertFalse(compacted.contains("Page 2\n"));
+		assertTrue(compacted.contains("Line 5 of page 2."));
+	}
+
+	@Test
+	void keepsBareNumbersInTheBody() {
+		String text = "The Berlin Wall fell in\n1999\nNo, it was\n1989\nThe answer is\n42\nand again\n42\n";
+
+		String compacted = PromptCompactor.compact(text);
+
+		assertTrue(compacted.contains("1999"));
+		assertTrue(compacted.contains("1989"));
+		assertTrue(compacted.contains("42"));
+	}
+}
@@ -0,0 +1,81 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.polly.model.PollyException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProviderLimitsTest {
+
+	@Test
+	void openAIRateLimitCarriesRetryAfter() {
+		HttpHeaders seconds = new HttpHeaders();
+		seconds.add("Retry-After", "2");
+		HttpHeaders millis = new HttpHeaders();
+		millis.add("Retry-After", "2");
+		millis.add("retry-after-ms", "750");
+
+		AdaptiveLimiter.Failure bySeconds = ProviderLimits.classifyOpenAI(openAIError(429, seconds));
+		AdaptiveLimiter.Failure byMillis = ProviderLimits.classifyOpenAI(openAIError(429, millis));
+
+		assertEquals(AdaptiveLimiter.Kind.THROTTLED, bySeconds.kind());
+		assertEquals(Duration.ofSeconds(2), bySeconds.retryAfter());
+		assertEquals(Duration.ofMillis(750), byMillis.retryAfter());
+
+		assertEquals(AdaptiveLimiter.Kind.TRANSIENT, ProviderLimits.classifyOpenAI(openAIError(503, new HttpHeaders())).kind());
+		assertEquals(AdaptiveLimiter.Kind.FATAL, ProviderLimits.classifyOpenAI(openAIError(400, new HttpHeaders())).kind());
+	}
+
+	@Test
+	void pollyThrottlingCarriesRetryAfter() {
+		PollyException throttled = (PollyException) PollyException.builder()
+				.statusCode(400)
+				.awsErrorDetails(AwsErrorDetails.builder()
+						.errorCode("ThrottlingException")
+						.sdkHttpResponse(SdkHttpResponse.builder().statusCode(400).putHeader("Retry-After", "3").build())
+						.build())
+				.build();
+
+		AdaptiveLimiter.Failure failure = ProviderLimits.classifyPolly(new CompletionException(throttled));
+
+		assertEquals(AdaptiveLimiter.Kind.THROTTLED, failure.kind());
+		assertEquals(Duration.ofSeconds(3), failure.retryAfter());
+
+		AdaptiveLimiter.Failure noHint = ProviderLimits.classifyPolly(PollyException.builder().statusCode(429).build());
+		assertEquals(AdaptiveLimiter.Kind.THROTTLED, noHint.kind());
+		assertNull(noHint.retryAfter());
+	}
+
+	@Test
+	void retriesStopAtConfiguredMaxAttempts() {
+		ProviderLimits limits = new ProviderLimits(1_000, 10_000_000, 8, 1_000, 10_000_000, 8,
+				3, Duration.ofMillis(1), Duration.ofMillis(5));
+		AtomicInteger attempts = new AtomicInteger();
+
+		WebClientResponseException error = assertThrows(WebClientResponseException.class, () -> limits.openAI()
+				.call(1, () -> {
+					attempts.incrementAndGet();
+					return Mono.<String>error(openAIError(503, new HttpHeaders()));
+				})
+				.block(Duration.ofSeconds(5)));
+
+		assertEquals(503, error.getStatusCode().value());
+		assertEquals(3, attempts.get());
+	}
+
+	private static WebClientResponseException openAIError(int status, HttpHeaders headers) {
+		return WebClientResponseException.create(HttpStatusCode.valueOf(status), "error", headers, new byte[0], null, null);
+	}
+}
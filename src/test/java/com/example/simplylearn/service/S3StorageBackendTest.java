@@ -0,0 +1,370 @@
+package com.example.simplylearn.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the real S3 client against an in-process S3 stand-in (path-style, like a local MinIO)
+class S3StorageBackendTest {
+
+	private static final int PART = 64 * 1024;
+
+	@TempDir
+	Path dir;
+
+	private S3StandIn s3;
+	private S3StorageBackend backend;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		s3 = new S3StandIn();
+		backend = new S3StorageBackend("media", "us-east-1", s3.endpoint(), true, "test", "test-secret",
+				DataSize.ofBytes(PART), DataSize.ofBytes(2 * PART), 3);
+	}
+
+	@AfterEach
+	void tearDown() {
+		backend.close();
+		s3.stop();
+	}
+
+	@Test
+	void smallFilesGoUpAndDownInOneRequest() throws Exception {
+		byte[] content = bytes(PART);
+		Path source = Files.write(dir.resolve("notes.txt"), content);
+
+		backend.put("uploads/notes.txt", source);
+		Path target = dir.resolve("copy/notes.txt");
+		backend.download("uploads/notes.txt", target);
+
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertEquals(List.of("PUT /media/uploads/notes.txt", "HEAD /media/uploads/notes.txt", "GET /media/uploads/notes.txt"),
+				s3.requests());
+		try (InputStream in = backend.open("uploads/notes.txt")) {
+			assertArrayEquals(content, in.readAllBytes());
+		}
+	}
+
+	@Test
+	void largeFileIsUploadedInPartsAndDownloadedInRanges() throws Exception {
+		// Four whole parts and a short last one
+		byte[] content = bytes(4 * PART + 1234);
+		Path source = Files.write(dir.resolve("lecture.mp4"), content);
+
+		backend.put("converted/lecture.mp4", source);
+
+		assertArrayEquals(content, s3.object("media/converted/lecture.mp4"));
+		assertEquals(Set.of(1, 2, 3, 4, 5), s3.partsSeen());
+		assertEquals(List.of(PART, PART, PART, PART, 1234), s3.partSizes());
+		assertTrue(s3.openUploads().isEmpty());
+
+		Path target = dir.resolve("copy/lecture.mp4");
+		backend.download("converted/lecture.mp4", target);
+
+		assertArrayEquals(content, Files.readAllBytes(target));
+		List<String> ranges = List.of(
+				"bytes=0-65535", "bytes=65536-131071", "bytes=131072-196607", "bytes=196608-262143", "bytes=262144-263377");
+		assertEquals(Set.copyOf(ranges), Set.copyOf(s3.rangesRequested()));
+		assertEquals(ranges.size(), s3.rangesRequested().size());
+	}
+
+	@Test
+	void failedPartAbortsTheMultipartUpload() throws Exception {
+		Path source = Files.write(dir.resolve("lecture.mp4"), bytes(3 * PART));
+		s3.failPart(2);
+
+		S3Exception e = assertThrows(S3Exception.class, () -> backend.put("converted/lecture.mp4", source));
+
+		assertEquals(400, e.statusCode());
+		assertTrue(s3.requests().stream().anyMatch(r -> r.startsWith("DELETE /media/converted/lecture.mp4?uploadId=")));
+		assertTrue(s3.openUploads().isEmpty());
+		assertFalse(backend.exists("converted/lecture.mp4"));
+	}
+
+	@Test
+	void streamIsSpooledAndTheSpoolRemoved() throws Exception {
+		byte[] content = bytes(3 * PART + 7);
+		Set<Path> spoolsBefore = spools();
+
+		backend.put("uploads/entry.pdf", new ByteArrayInputStream(content), content.length);
+
+		assertArrayEquals(content, s3.object("media/uploads/entry.pdf"));
+		assertEquals(4, s3.partsSeen().size());
+		assertEquals(spoolsBefore, spools());
+	}
+
+	@Test
+	void existsAndDelete() throws Exception {
+		backend.put("uploads/a.txt", Files.write(dir.resolve("a.txt"), bytes(10)));
+
+		assertTrue(backend.exists("uploads/a.txt"));
+		backend.delete("uploads/a.txt");
+		assertFalse(backend.exists("uploads/a.txt"));
+	}
+
+	private static byte[] bytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static Set<Path> spools() throws IOException {
+		try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+			return files.filter(file -> file.getFileName().toString().startsWith("s3-put-")).collect(Collectors.toSet());
+		}
+	}
+
+	// ======================
+	// S3 STAND-IN
+	// ======================
+
+	/**
+	 * Just enough of the S3 REST API for S3StorageBackend: objects (ranged GET included) and
+	 * multipart uploads. Keys are "bucket/key"; bodies sent aws-chunked are decoded.
+	 */
+	static final class S3StandIn {
+
+		private final HttpServer server;
+		private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+		private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+		private final List<String> requests = new CopyOnWriteArrayList<>();
+		private final List<String> ranges = new CopyOnWriteArrayList<>();
+		private final Map<Integer, Integer> parts = new ConcurrentHashMap<>();
+		private volatile int failingPart = -1;
+
+		S3StandIn() throws IOException {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.setExecutor(Executors.newFixedThreadPool(8));
+			server.createContext("/", exchange -> {
+				try (exchange) {
+					handle(exchange);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			});
+			server.start();
+		}
+
+		String endpoint() {
+			return "http://127.0.0.1:" + server.getAddress().getPort();
+		}
+
+		void stop() {
+			server.stop(0);
+		}
+
+		void failPart(int part) {
+			failingPart = part;
+		}
+
+		byte[] object(String key) {
+			return objects.get(key);
+		}
+
+		Set<String> openUploads() {
+			return uploads.keySet();
+		}
+
+		Set<Integer> partsSeen() {
+			return parts.keySet();
+		}
+
+		List<Integer> partSizes() {
+			return new TreeMap<>(parts).values().stream().toList();
+		}
+
+		// Method and path (plus the uploadId of multipart calls), in arrival order
+		List<String> requests() {
+			return requests;
+		}
+
+		List<String> rangesRequested() {
+			return ranges;
+		}
+
+		private void handle(HttpExchange exchange) throws IOException {
+
+			String method = exchange.getRequestMethod();
+			String key = exchange.getRequestURI().getPath().substring(1);
+			Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+
+			requests.add(method + " /" + key + (query.containsKey("uploadId") ? "?uploadId=" + query.get("uploadId") : ""));
+
+			switch (method) {
+				case "PUT" -> {
+					byte[] body = body(exchange);
+					if (query.containsKey("partNumber")) {
+						int part = Integer.parseInt(query.get("partNumber"));
+						if (part == failingPart) {
+							error(exchange, 400, "InvalidPart", "Part " + part + " rejected");
+							return;
+						}
+						uploads.get(query.get("uploadId")).put(part, body);
+						parts.put(part, body.length);
+					} else {
+						objects.put(key, body);
+					}
+					// The SDK checks a PutObject's ETag against the MD5 of what it sent
+					exchange.getResponseHeaders().set("ETag", "\"" + md5(body) + "\"");
+					exchange.sendResponseHeaders(200, -1);
+				}
+				case "POST" -> {
+					body(exchange);
+					if (query.containsKey("uploads")) {
+						String uploadId = UUID.randomUUID().toString();
+						uploads.put(uploadId, new ConcurrentHashMap<>());
+						xml(exchange, "<InitiateMultipartUploadResult><Bucket>" + bucket(key) + "</Bucket><Key>"
+								+ objectKey(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+					} else {
+						Map<Integer, byte[]> uploaded = uploads.remove(query.get("uploadId"));
+						ByteArrayOutputStream whole = new ByteArrayOutputStream();
+						for (byte[] part : new TreeMap<>(uploaded).values()) whole.write(part);
+						objects.put(key, whole.toByteArray());
+						xml(exchange, "<CompleteMultipartUploadResult><Bucket>" + bucket(key) + "</Bucket><Key>"
+								+ objectKey(key) + "</Key><ETag>\"done\"</ETag></CompleteMultipartUploadResult>");
+					}
+				}
+				case "DELETE" -> {
+					if (query.containsKey("uploadId")) {
+						uploads.remove(query.get("uploadId"));
+					} else {
+						objects.remove(key);
+					}
+					exchange.sendResponseHeaders(204, -1);
+				}
+				case "HEAD" -> {
+					byte[] content = objects.get(key);
+					if (content == null) {
+						exchange.sendResponseHeaders(404, -1);
+						return;
+					}
+					exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+					exchange.sendResponseHeaders(200, -1);
+				}
+				case "GET" -> {
+					byte[] content = objects.get(key);
+					if (content == null) {
+						error(exchange, 404, "NoSuchKey", key);
+						return;
+					}
+					String range = exchange.getRequestHeaders().getFirst("Range");
+					if (range == null) {
+						exchange.sendResponseHeaders(200, content.length);
+						exchange.getResponseBody().write(content);
+						return;
+					}
+					ranges.add(range);
+					String[] bounds = range.substring("bytes=".length()).split("-");
+					int start = Integer.parseInt(bounds[0]);
+					int end = Math.min(content.length - 1, Integer.parseInt(bounds[1]));
+					exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+					exchange.sendResponseHeaders(206, end - start + 1);
+					exchange.getResponseBody().write(content, start, end - start + 1);
+				}
+				default -> exchange.sendResponseHeaders(405, -1);
+			}
+		}
+
+		// Signed streaming uploads arrive as "<hex size>;chunk-signature=...\r\n<data>\r\n" chunks
+		private static byte[] body(HttpExchange exchange) throws IOException {
+			byte[] raw = exchange.getRequestBody().readAllBytes();
+			String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+			if (sha == null || !sha.startsWith("STREAMING-")) return raw;
+
+			ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			int at = 0;
+			while (at < raw.length) {
+				int lineEnd = indexOf(raw, at);
+				String header = new String(raw, at, lineEnd - at, StandardCharsets.US_ASCII);
+				int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+				if (size == 0) break;
+				decoded.write(raw, lineEnd + 2, size);
+				at = lineEnd + 2 + size + 2;
+			}
+			return decoded.toByteArray();
+		}
+
+		private static String md5(byte[] body) {
+			try {
+				return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(body));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private static int indexOf(byte[] raw, int from) {
+			for (int i = from; i < raw.length - 1; i++) {
+				if (raw[i] == '\r' && raw[i + 1] == '\n') return i;
+			}
+			return raw.length;
+		}
+
+		private static void xml(HttpExchange exchange, String body) throws IOException {
+			byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/xml");
+			exchange.sendResponseHeaders(200, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		}
+
+		private static void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+			byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>"
+					+ message + "</Message></Error>").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/xml");
+			exchange.sendResponseHeaders(status, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		}
+
+		private static Map<String, String> query(String raw) {
+			Map<String, String> query = new HashMap<>();
+			if (raw == null) return query;
+			for (String pair : raw.split("&")) {
+				String[] kv = pair.split("=", 2);
+				query.put(kv[0], kv.length > 1 ? kv[1] : "");
+			}
+			return query;
+		}
+
+		private static String bucket(String key) {
+			return key.substring(0, key.indexOf('/'));
+		}
+
+		private static String objectKey(String key) {
+			return key.substring(key.indexOf('/') + 1);
+		}
+	}
+}
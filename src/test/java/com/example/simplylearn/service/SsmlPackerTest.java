@@ -0,0 +1,112 @@
+package com.example.simplylearn.service;
+
+import com.example.simplylearn.service.SsmlPacker.Part;
+import com.example.simplylearn.service.SsmlPacker.Pause;
+import com.example.simplylearn.service.SsmlPacker.Request;
+import com.example.simplylearn.service.SsmlPacker.Speech;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SsmlPackerTest {
+
+	@Test
+	void packsOneVoiceWithInlineBreaks() {
+		List<Part> parts = List.of(
+				new Pause(900),
+				new Speech("Matthew", "One & two."),
+				new Pause(300),
+				new Speech("Matthew", "Three."),
+				new Pause(300));
+
+		List<Request> requests = SsmlPacker.pack(parts, 3000);
+
+		assertEquals(1, requests.size());
+		assertEquals("Matthew", requests.get(0).voice());
+		assertEquals(5, requests.get(0).parts());
+		assertEquals("<speak><prosody rate=\"medium\"><break time=\"900ms\"/>One &amp; two."
+				+ "<break time=\"300ms\"/>Three.<break time=\"300ms\"/></prosody></speak>", requests.get(0).ssml());
+	}
+
+	@Test
+	void voiceChangeEndsRequestWithTrailingPause() {
+		List<Part> parts = List.of(
+				new Speech("Ruth", "Hi."),
+				new Pause(250),
+				new Speech("Ruth", "Welcome."),
+				new Pause(250),
+				new Speech("Joanna", "Thanks."),
+				new Pause(250));
+
+		List<Request> requests = SsmlPacker.pack(parts, 3000);
+
+		assertEquals(2, requests.size());
+		assertTrue(requests.get(0).ssml().endsWith("Welcome.<break time=\"250ms\"/></prosody></speak>"));
+		assertEquals("Joanna", requests.get(1).voice());
+		assertEquals(6, requests.stream().mapToInt(Request::parts).sum());
+		assertEquals(6, SsmlPacker.unpacked(parts).size());
+	}
+
+	@Test
+	void staysWithinLimit() {
+		List<Part> parts = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			parts.add(new Speech("Danielle", "x".repeat(95)));
+			parts.add(new Pause(400));
+		}
+
+		List<Request> requests = SsmlPacker.pack(parts, 3000);
+
+		assertTrue(requests.size() > 1 && requests.size() < 10);
+		assertTrue(requests.stream().allMatch(r -> r.ssml().length() <= 3000));
+		assertEquals(200, requests.stream().mapToInt(Request::parts).sum());
+	}
+
+	@Test
+	void splitsOverLongLineAtSentenceEnds() {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			line.append("Sentence ").append(i).append(" compares <this> & that, then moves on. ");
+		}
+		List<Part> parts = List.of(
+				new Pause(25_000),
+				new Speech("Matthew", line.toString()),
+				new Pause(300),
+				new Speech("Matthew", "Done."));
+
+		List<Request> requests = SsmlPacker.pack(parts, 1000);
+
+		assertTrue(requests.size() > 3);
+		assertTrue(requests.stream().allMatch(r -> r.ssml().length() <= 1000));
+		assertTrue(requests.stream().allMatch(r -> "Matthew".equals(r.voice())));
+		assertEquals(4, requests.stream().mapToInt(Request::parts).sum());
+		for (Request request : requests.subList(0, requests.size() - 1)) {
+			assertTrue(request.ssml().endsWith("on.</prosody></speak>"), request.ssml());
+		}
+	}
+
+	@Test
+	void splitsAtSpacesWithoutSentences() {
+		String text = SsmlPacker.escapeXml("word & ".repeat(500).strip());
+
+		List<String> pieces = SsmlPacker.split(text, 200);
+
+		assertTrue(pieces.size() > 1);
+		assertTrue(pieces.stream().allMatch(p -> p.length() <= 200 && (p.endsWith("word") || p.endsWith("&amp;"))));
+		assertEquals(text, String.join(" ", pieces));
+		assertEquals(List.of("a".repeat(10), "&amp;" + "b".repeat(5)), SsmlPacker.split("a".repeat(10) + "&amp;" + "b".repeat(5), 12));
+	}
+
+	@Test
+	void pausesAloneStayPauses() {
+		List<Request> requests = SsmlPacker.pack(List.of(new Pause(800), new Pause(250)), 3000);
+
+		assertEquals(1, requests.size());
+		assertTrue(requests.get(0).pauseOnly());
+		assertEquals("<speak><break time=\"1050ms\"/></speak>", requests.get(0).ssml());
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageServiceTest {
+
+	@TempDir
+	Path webRoot;
+
+	@TempDir
+	Path workerRoot;
+
+	@Test
+	void nodesShareFilesThroughTheBackend() throws Exception {
+		StorageBackend backend = new InMemoryStorageBackend();
+		StorageService web = new StorageService(backend, new BlobCompression(true, 3), webRoot.toString());
+		StorageService worker = new StorageService(backend, new BlobCompression(true, 3), workerRoot.toString());
+
+		String stored = web.store(new MockMultipartFile("files", "notes.txt", "text/plain", "cell biology".getBytes()));
+
+		// The worker never saw the upload locally
+		assertEquals("cell biology", worker.readAsString(stored));
+
+		Files.writeString(worker.resolveConverted("out.txt"), "summary");
+		worker.publishConverted("out.txt");
+
+		assertEquals("summary", Files.readString(web.fetchConverted("out.txt")));
+	}
+
+	@Test
+	void textIsCompressedAndMediaIsNot() throws Exception {
+		StorageService storage = new StorageService(new LocalStorageBackend(webRoot.toString()), new BlobCompression(true, 3), webRoot.toString());
+		String text = "Mitochondria are the powerhouse of the cell. ".repeat(200);
+
+		String notes = storage.store(new MockMultipartFile("files", "notes.txt", "text/plain", text.getBytes()));
+		String audio = storage.store(new MockMultipartFile("files", "lecture.mp3", "audio/mpeg", text.getBytes()));
+
+		assertTrue(Files.size(storage.resolve(notes)) < text.length() / 10);
+		assertEquals(text.length(), Files.size(storage.resolve(audio)));
+		assertEquals(text, storage.readAsString(notes));
+	}
+
+	@Test
+	void missingFileFailsOnLocalBackend() throws Exception {
+		StorageService storage = new StorageService(new LocalStorageBackend(webRoot.toString()), new BlobCompression(true, 3), webRoot.toString());
+
+		assertThrows(FileNotFoundException.class, () -> storage.fetch("nope.txt"));
+	}
+
+	@Test
+	void chunksAreWrittenInPlaceAndHashed() throws Exception {
+		StorageService storage = new StorageService(new LocalStorageBackend(webRoot.toString()), new BlobCompression(true, 3), webRoot.toString());
+		byte[] content = "Photosynthesis turns light into chemical energy. ".repeat(5000).getBytes();
+		Path part = webRoot.resolve("session.part");
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+		long first = storage.writeChunk(part, 0, new ByteArrayInputStream(content, 0, 100_000), content.length, digest);
+		long second = storage.writeChunk(part, first, new ByteArrayInputStream(content, 100_000, content.length - 100_000),
+				content.length - first, digest);
+
+		assertEquals(content.length, first + second);
+		assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest.digest());
+
+		String stored = storage.storeUpload(part, "notes.txt");
+		assertEquals(new String(content), storage.readAsString(stored));
+		assertTrue(Files.notExists(part));
+	}
+
+	@Test
+	void chunkPastDeclaredSizeIsRejected() throws Exception {
+		StorageService storage = new StorageService(new LocalStorageBackend(webRoot.toString()), new BlobCompression(true, 3), webRoot.toString());
+
+		assertThrows(IllegalArgumentException.class, () -> storage.writeChunk(webRoot.resolve("session.part"), 0,
+				new ByteArrayInputStream(new byte[11]), 10, MessageDigest.getInstance("SHA-256")));
+	}
+}
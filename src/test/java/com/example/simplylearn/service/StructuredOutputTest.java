@@ -0,0 +1,82 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructuredOutputTest {
+
+	@Test
+	void parsesScenes() {
+		StructuredOutput.Document video = StructuredOutput.parse("video", """
+				{"scenes": [
+				  {"narration": "Plants make their own food.", "illustration": "A leaf in sunlight"},
+				  {"narration": "Chlorophyll absorbs light.", "illustration": "Green pigment close-up"}
+				]}
+				""");
+
+		assertTrue(video.isValid());
+		assertEquals(2, video.items(StructuredOutput.Scene.class).size());
+		assertEquals("Chlorophyll absorbs light.", video.items(StructuredOutput.Scene.class).get(1).narration());
+	}
+
+	@Test
+	void cutOffResponseKeepsCompleteItems() {
+		StructuredOutput.Document slides = StructuredOutput.parse("slideshow", """
+				{"slides": [
+				  {"title": "Cells", "bullets": ["Basic unit of life", "Have a membrane", "Contain DNA"], "image": "A cell"},
+				  {"title": "Organelles", "bullets": ["Nucleus", "Mitoch""");
+
+		assertFalse(slides.complete());
+		assertEquals(1, slides.items().size());
+		assertTrue(slides.invalidItems().isEmpty());
+	}
+
+	@Test
+	void flagsOnlyTheBrokenItems() {
+		StructuredOutput.Document podcast = StructuredOutput.parse("podcast", """
+				{"segments": [
+				  {"lines": [{"speaker": "A", "text": "Welcome."}, {"speaker": "B", "text": "Hi!"}]},
+				  {"lines": []},
+				  {"lines": [{"speaker": "C", "text": "Who am I?"}]}
+				]}
+				""");
+
+		assertTrue(podcast.complete());
+		assertEquals(List.of(1, 2), podcast.invalidItems());
+	}
+
+	@Test
+	void bulletCountMatchesThePrompt() {
+		StructuredOutput.Slide three = new StructuredOutput.Slide("Cells", List.of("a", "b", "c"), "A cell");
+		StructuredOutput.Slide five = new StructuredOutput.Slide("Cells", List.of("a", "b", "c", "d", "e"), "A cell");
+		StructuredOutput.Slide two = new StructuredOutput.Slide("Cells", List.of("a", "b"), "A cell");
+		StructuredOutput.Slide six = new StructuredOutput.Slide("Cells", List.of("a", "b", "c", "d", "e", "f"), "A cell");
+
+		assertTrue(three.problems().isEmpty());
+		assertTrue(five.problems().isEmpty());
+		assertEquals(List.of("bullets must have 3 to 5 entries"), two.problems());
+		assertEquals(List.of("bullets must have 3 to 5 entries"), six.problems());
+	}
+
+	@Test
+	void repairReplacesItemsInPlace() {
+		StructuredOutput.Document summary = StructuredOutput.parse("summary",
+				"{\"paragraphs\": [{\"text\": \"First.\"}, {\"text\": \"\"}, {\"text\": \"Third.\"}]}");
+
+		List<StructuredOutput.Item> fixed = StructuredOutput.parseRepair("summary",
+				"{\"items\": [{\"text\": \"Second.\"}]}");
+
+		StructuredOutput.Document repaired = summary.replace(summary.invalidItems(), fixed);
+
+		assertTrue(repaired.isValid());
+		assertEquals("Second.", repaired.items(StructuredOutput.Paragraph.class).get(1).text());
+
+		// Round trip through the cache format
+		assertEquals(repaired, StructuredOutput.parse("summary", repaired.toJson()));
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.simplylearn.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.Disposable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VideoServiceTest {
+
+	@TempDir
+	Path dir;
+
+	// Stands in for ffmpeg: starts a child that outlives the shell unless the tree is killed.
+	// The last argument is runFFmpeg's output file; here it receives the child's pid.
+	private List<String> hangingCommand(Path pidFile) {
+		return List.of("sh", "-c", "sleep 60 & echo $! > \"$0\"; wait", pidFile.toString());
+	}
+
+	@Test
+	void timeoutKillsTheProcessTreeWithItsOwnMessage() throws Exception {
+		Path pidFile = dir.resolve("child.pid");
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, () ->
+				VideoService.runFFmpeg(hangingCommand(pidFile), dir.resolve("ffmpeg.log"), Duration.ofMillis(500)).block());
+
+		assertTrue(e.getMessage().startsWith("ffmpeg timed out after PT0.5S"), e.getMessage());
+		assertChildKilled(pidFile);
+	}
+
+	@Test
+	void cancellingKillsTheProcessTree() throws Exception {
+		Path pidFile = dir.resolve("child.pid");
+
+		Disposable running = VideoService.runFFmpeg(hangingCommand(pidFile), dir.resolve("ffmpeg.log"), Duration.ofMinutes(1))
+				.subscribe();
+		waitFor(pidFile);
+		running.dispose();
+
+		assertChildKilled(pidFile);
+	}
+
+	@Test
+	void stageTimeoutLeavesInnerTimeoutsAlone() {
+		// ffmpeg's own timeout fires first: its message survives the stage wrapper
+		IllegalStateException inner = assertThrows(IllegalStateException.class, () ->
+				ConversionService.withTimeout("video", Duration.ofHours(1),
+						VideoService.runFFmpeg(hangingCommand(dir.resolve("pid")), dir.resolve("ffmpeg.log"), Duration.ofMillis(300))).block());
+		assertTrue(inner.getMessage().startsWith("ffmpeg timed out"), inner.getMessage());
+
+		IllegalStateException stage = assertThrows(IllegalStateException.class, () ->
+				ConversionService.withTimeout("video", Duration.ofMillis(300),
+						VideoService.runFFmpeg(hangingCommand(dir.resolve("pid2")), dir.resolve("ffmpeg2.log"), Duration.ofHours(1))).block());
+		assertEquals("Stage 'video' timed out after PT0.3S", stage.getMessage());
+	}
+
+	private static void waitFor(Path pidFile) throws InterruptedException {
+		for (int i = 0; i < 100 && !(Files.exists(pidFile) && pidFile.toFile().length() > 0); i++) {
+			Thread.sleep(50);
+		}
+	}
+
+	private static void assertChildKilled(Path pidFile) throws Exception {
+		waitFor(pidFile);
+		long pid = Long.parseLong(Files.readString(pidFile).trim());
+		for (int i = 0; i < 100 && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false); i++) {
+			Thread.sleep(50);
+		}
+		assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "child " + pid + " still running");
+	}
+
+	@Test
+	void joinsSceneSegmentListsIntoOnePlaylist() {
+		List<VideoService.HlsSegment> segments = new ArrayList<>(VideoService.readSegments(List.of(
+				"#EXTM3U", "#EXT-X-VERSION:3", "#EXT-X-TARGETDURATION:7",
+				"#EXTINF:6.000000,", "scene-000-000.ts",
+				"#EXTINF:2.400000,", "scene-000-001.ts",
+				"#EXT-X-ENDLIST")));
+		segments.addAll(VideoService.readSegments(List.of("#EXTINF:6.800000,", "scene-001-000.ts")));
+
+		String playlist = VideoService.playlist(segments);
+
+		assertEquals(3, segments.size());
+		assertTrue(playlist.contains("#EXT-X-TARGETDURATION:7\n"));
+		assertTrue(playlist.contains("#EXTINF:2.400,\nscene-000-001.ts\n#EXTINF:6.800,\nscene-001-000.ts\n"));
+		assertTrue(playlist.endsWith("#EXT-X-ENDLIST\n"));
+	}
+
+	@Test
+	void hlsDirectorySitsBesideVideo() {
+		assertEquals(Path.of("/tmp/converted/abc-hls"), VideoService.hlsDirectory(Path.of("/tmp/converted/abc.mp4")));
+	}
+}